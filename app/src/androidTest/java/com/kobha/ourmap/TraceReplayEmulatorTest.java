@@ -0,0 +1,99 @@
+package com.kobha.ourmap;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Replays a recorded trace through the driver pipeline into the Realtime Database emulator and
+ * watches the customer's node from a second client, so the report's latency is a real round
+ * trip through the server. Skipped unless the emulator host is passed in, e.g.
+ * <pre>
+ *   firebase emulators:start --only database
+ *   ./gradlew connectedAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.firebaseEmulatorHost=10.0.2.2
+ * </pre>
+ * Optional arguments: {@code firebaseEmulatorPort} (9000) and {@code traceSpeed} (10x).
+ */
+@RunWith(AndroidJUnit4.class)
+public class TraceReplayEmulatorTest {
+
+    private static final String TAG = "TraceReplay";
+
+    @Test
+    public void replay_cityDriveThroughDatabaseEmulator() throws Exception {
+        Bundle args = InstrumentationRegistry.getArguments();
+        String host = args.getString("firebaseEmulatorHost");
+        assumeTrue("firebaseEmulatorHost not set", host != null);
+        int port = Integer.parseInt(args.getString("firebaseEmulatorPort", "9000"));
+        double speed = Double.parseDouble(args.getString("traceSpeed", "10"));
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp driverApp = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), "replay-driver");
+        FirebaseApp watcherApp = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), "replay-watcher");
+        FirebaseDatabase driverDb = FirebaseDatabase.getInstance(driverApp);
+        FirebaseDatabase watcherDb = FirebaseDatabase.getInstance(watcherApp);
+        driverDb.useEmulator(host, port);
+        watcherDb.useEmulator(host, port);
+
+        LocationTrace trace;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/traces/city_drive.csv"), StandardCharsets.UTF_8))) {
+            trace = LocationTrace.read(reader);
+        }
+
+        MultiPathWriter writer = new FirebaseMultiPathWriter(driverDb.getReference());
+        LocationTrace.Fix first = trace.fixes().get(0);
+        writer.updateChildren(new RideStateMachine("c1", RideState.OFFERED).accept("d1", "d1@example.com", "Driver",
+                first.lat, first.lng, Collections.singletonList("d1")), null);
+
+        ReplayReport report = new ReplayReport();
+        ValueEventListener watcher = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                RideResponse response = RideResponse.fromValue(snapshot.getValue());
+                if (response != null && response.hasPosition()) report.onDelivered(response.driverLat, response.driverLng);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "watcher cancelled: " + error.getMessage());
+            }
+        };
+        watcherDb.getReference("rideResponses/c1").addValueEventListener(watcher);
+
+        LocationPublisher publisher = new LocationPublisher("d1", writer);
+        publisher.setAssignedCustomer("c1");
+        DriverLocationPipeline pipeline = new DriverLocationPipeline(publisher, new SamplingPolicy(SamplingPolicy.Role.DRIVER));
+        TraceReplayer.replay(trace, speed, pipeline, report);
+
+        // Let the last writes make it round.
+        for (int i = 0; i < 50 && report.getDeliveries() < report.getWrites(); i++) Thread.sleep(100);
+        watcherDb.getReference("rideResponses/c1").removeEventListener(watcher);
+
+        Log.i(TAG, "city_drive @" + speed + "x: " + report);
+        assertTrue(report.toString(), report.getDeliveries() > 0);
+        assertTrue(report.toString(), report.getWrites() * 2 < report.getFixes());
+    }
+}
@@ -1,7 +1,5 @@
 package com.kobha.ourmap;
 
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
 
 import androidx.annotation.NonNull;
@@ -13,12 +11,9 @@ import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Looper;
+import android.view.View;
 import android.widget.Toast;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 import com.firebase.geofire.GeoFire;
 import com.firebase.geofire.GeoLocation;
 import com.google.android.gms.location.FusedLocationProviderClient;
@@ -26,14 +21,11 @@ import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 import com.google.firebase.auth.FirebaseAuth;
@@ -45,8 +37,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CustomerMapActivity extends FragmentActivity implements OnMapReadyCallback {
 
@@ -58,13 +52,35 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
     private FusedLocationProviderClient fusedLocationClient;
     private LocationRequest locationRequest;
     private LocationCallback locationCallback;
+    private final SamplingPolicy samplingPolicy = new SamplingPolicy(SamplingPolicy.Role.CUSTOMER);
+    private SamplingPolicy.Plan samplingPlan;
+    private boolean locationUpdatesStarted;
+    private final LocationStage locationStage = new LocationStage();
+    private final double[] estimate = new double[3];
+    // Snapping to the route only makes sense once the customer is in the car on it.
+    private boolean onTrip;
+    private RouteSnapper driverSnapper;
+    private final double[] driverPosition = new double[2];
 
     private DatabaseReference customerLocationRef;
     private GeoFire geoFire;
     private String customerId;
 
-    private Marker pickupMarker, dropMarker, driverMarker;
+    private MarkerLayer markerLayer;
+    private DriverMarkerAnimator driverAnimator;
+    private String announcedDriverEmail;
+    private boolean cameraCentered;
     private Polyline routePolyline;
+    private GeocodingService geocodingService;
+    private PlaceAutocomplete placeAutocomplete;
+    private RouteCache<RouteLevels> routeCache;
+    private RouteLevels routeLevels;
+    private int shownRouteLevel = -1;
+    private final ExecutorService routeExecutor = Executors.newSingleThreadExecutor();
+
+    private MultiPathWriter writer;
+    private RideDispatcher rideDispatcher;
+    private RideStore rideStore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -77,9 +93,22 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
             customerId = user.getUid();
             customerLocationRef = FirebaseDatabase.getInstance().getReference("locations/Customers");
             geoFire = new GeoFire(customerLocationRef);
+            writer = new FirebaseMultiPathWriter();
+            if (!getResources().getBoolean(R.bool.server_dispatch)) {
+                rideDispatcher = new RideDispatcher(writer);
+            }
+            RideSync rideSync = RideSync.get(this, customerId);
+            rideStore = rideSync.getStore();
         }
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        geocodingService = new GeocodingService(this);
+        placeAutocomplete = new PlaceAutocomplete(this, geocodingService.getCache());
+        placeAutocomplete.load(getString(R.string.places_poi_url));
+        placeAutocomplete.attach(binding.etPickup);
+        placeAutocomplete.attach(binding.etDrop);
+        routeCache = new RouteCache<>(new File(getCacheDir(), "routes"),
+                encoded -> RouteLevels.build(PolylineCodec.decode(encoded)));
 
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
                 .findFragmentById(R.id.customer_map);
@@ -103,41 +132,38 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
                 return;
             }
 
-            Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-            try {
-                List<Address> pickupList = geocoder.getFromLocationName(pickup, 1);
-                List<Address> dropList = geocoder.getFromLocationName(drop, 1);
-
-                if (pickupList.isEmpty() || dropList.isEmpty()) {
-                    Toast.makeText(this, "Invalid locations", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                Address pickupAddress = pickupList.get(0);
-                Address dropAddress = dropList.get(0);
+            binding.btnRequestRide.setEnabled(false);
+            geocodingService.resolvePair(pickup, drop, new GeocodingService.PairCallback() {
+                @Override
+                public void onResolved(LatLng pickupLatLng, LatLng dropLatLng) {
+                    binding.btnRequestRide.setEnabled(true);
+                    if (isDestroyed()) return;
 
-                LatLng pickupLatLng = new LatLng(pickupAddress.getLatitude(), pickupAddress.getLongitude());
-                LatLng dropLatLng = new LatLng(dropAddress.getLatitude(), dropAddress.getLongitude());
+                    if (routePolyline != null) routePolyline.remove();
+                    removeDriver();
+                    placeAutocomplete.recordUse(pickup, pickupLatLng.latitude, pickupLatLng.longitude);
+                    placeAutocomplete.recordUse(drop, dropLatLng.latitude, dropLatLng.longitude);
 
-                // Remove previous markers
-                if (pickupMarker != null) pickupMarker.remove();
-                if (dropMarker != null) dropMarker.remove();
-                if (routePolyline != null) routePolyline.remove();
+                    markerLayer.show(MarkerLayer.PICKUP, pickupLatLng, "Pickup");
+                    markerLayer.show(MarkerLayer.DROP, dropLatLng, "Drop");
+                    mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(pickupLatLng, 15));
 
-                pickupMarker = mMap.addMarker(new MarkerOptions().position(pickupLatLng).title("Pickup"));
-                dropMarker = mMap.addMarker(new MarkerOptions().position(dropLatLng).title("Drop"));
-                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(pickupLatLng, 15));
+                    sendRideRequestToDriver(pickupLatLng.latitude, pickupLatLng.longitude, dropLatLng.latitude, dropLatLng.longitude);
+                    drawRouteBetween(pickupLatLng, dropLatLng);
 
-                sendRideRequestToDriver(pickupLatLng.latitude, pickupLatLng.longitude, dropLatLng.latitude, dropLatLng.longitude);
-                drawRouteBetween(pickupLatLng, dropLatLng);
-
-                Toast.makeText(this, "Ride Requested", Toast.LENGTH_SHORT).show();
+                    Toast.makeText(CustomerMapActivity.this, "Ride Requested", Toast.LENGTH_SHORT).show();
+                }
 
-            } catch (IOException e) {
-                Toast.makeText(this, "Geocoding error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            }
+                @Override
+                public void onFailed(String message) {
+                    binding.btnRequestRide.setEnabled(true);
+                    Toast.makeText(CustomerMapActivity.this, message, Toast.LENGTH_SHORT).show();
+                }
+            });
         });
 
+        binding.btnCancelRide.setOnClickListener(v -> cancelRide());
+
         binding.btnUseCurrentLocation.setOnClickListener(v -> {
             if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                     != PackageManager.PERMISSION_GRANTED) {
@@ -156,8 +182,7 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
                             binding.etPickup.setText(locationStr);
 
                             LatLng userLatLng = new LatLng(lat, lng);
-                            mMap.clear();
-                            mMap.addMarker(new MarkerOptions().position(userLatLng).title("You are here"));
+                            markerLayer.show(MarkerLayer.SELF, userLatLng, "You are here");
                             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(userLatLng, 15));
 
                             if (geoFire != null && customerId != null) {
@@ -171,16 +196,96 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
     private void sendRideRequestToDriver(double pickupLat, double pickupLng, double dropLat, double dropLng) {
         if (customerId == null) return;
 
+        RideRecord record = new RideRecord(customerId, null, RideState.PENDING,
+                pickupLat, pickupLng, dropLat, dropLng, System.currentTimeMillis());
+        rideStore.saveRide(record);
+        // Not journaled: a request replayed after a restart would reopen a ride the customer may
+        // have long given up on. The client library still holds it while offline.
+        writer.updateChildren(RideStateMachine.request(customerId, pickupLat, pickupLng, dropLat, dropLng), error -> {
+            if (error == null) return;
+            rideStore.saveRide(record.withState(RideState.CANCELLED, System.currentTimeMillis()));
+            resampleLocation();
+            updateCancelButton();
+            Toast.makeText(CustomerMapActivity.this, "Request failed: " + error, Toast.LENGTH_SHORT).show();
+        });
+        resampleLocation();
+        updateCancelButton();
+        // With server dispatch the pending request is all it needs.
+        if (rideDispatcher == null) return;
+        // Offers go out directly: replaying them after a restart would offer a stale ride.
+        rideDispatcher.dispatch(customerId, pickupLat, pickupLng, dropLat, dropLng, new RideDispatcher.Listener() {
+            @Override
+            public void onOffered(int driverCount) {
+                Toast.makeText(CustomerMapActivity.this,
+                        "Ride offered to " + driverCount + " nearby driver(s)", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onNoDriversFound() {
+                Toast.makeText(CustomerMapActivity.this, "No drivers nearby", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(String message) {
+                Toast.makeText(CustomerMapActivity.this, "Dispatch failed: " + message, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Cancels the open ride from the status the database has, which may be ahead of the local
+     * record, withdrawing the offers it lists if no driver has it yet.
+     */
+    private void cancelRide() {
+        RideRecord saved = rideStore.getRide(customerId);
+        if (saved == null || saved.state.isTerminal()) return;
+
+        binding.btnCancelRide.setEnabled(false);
         DatabaseReference requestRef = FirebaseDatabase.getInstance().getReference("rideRequests").child(customerId);
+        requestRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                RideRequest request = RideRequest.fromValue(snapshot.getValue());
+                if (request == null || request.status.isTerminal()) {
+                    binding.btnCancelRide.setEnabled(true);
+                    onRideCancelled(saved);
+                    return;
+                }
+                RideStateMachine ride = new RideStateMachine(customerId, request.status);
+                writer.updateChildren(ride.cancel(request.offeredTo), error -> {
+                    binding.btnCancelRide.setEnabled(true);
+                    if (error != null) {
+                        Toast.makeText(CustomerMapActivity.this, "Cancel failed: " + error, Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    onRideCancelled(saved);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                binding.btnCancelRide.setEnabled(true);
+                Toast.makeText(CustomerMapActivity.this, "Cancel failed: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
-        Map<String, Object> request = new HashMap<>();
-        request.put("pickup_lat", pickupLat);
-        request.put("pickup_lng", pickupLng);
-        request.put("drop_lat", dropLat);
-        request.put("drop_lng", dropLng);
-        request.put("status", "pending");
+    private void onRideCancelled(RideRecord saved) {
+        rideStore.saveRide(saved.withState(RideState.CANCELLED, System.currentTimeMillis()));
+        resampleLocation();
+        updateCancelButton();
+        if (isDestroyed()) return;
+        setOnTrip(false);
+        removeDriver();
+        if (markerLayer != null) markerLayer.retainOnly(MarkerLayer.SELF);
+        if (routePolyline != null) routePolyline.remove();
+        routePolyline = null;
+        Toast.makeText(this, "Ride cancelled", Toast.LENGTH_SHORT).show();
+    }
 
-        requestRef.setValue(request);
+    private void updateCancelButton() {
+        RideRecord saved = rideStore != null ? rideStore.getRide(customerId) : null;
+        binding.btnCancelRide.setVisibility(saved != null && !saved.state.isTerminal() ? View.VISIBLE : View.GONE);
     }
 
     private void listenToAssignedDriver() {
@@ -190,22 +295,35 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
         responseRef.addValueEventListener(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (!snapshot.exists()) return;
+                RideResponse response = RideResponse.fromValue(snapshot.getValue());
+                if (response == null || driverAnimator == null) return;
 
-                String driverName = snapshot.child("driverName").getValue(String.class);
-                String driverEmail = snapshot.child("driverEmail").getValue(String.class);
-                Double driverLat = snapshot.child("driver_lat").getValue(Double.class);
-                Double driverLng = snapshot.child("driver_lng").getValue(Double.class);
+                saveResponse(response);
 
-                if (driverEmail != null && driverLat != null && driverLng != null) {
-                    LatLng driverLocation = new LatLng(driverLat, driverLng);
-
-                    if (driverMarker != null) driverMarker.remove();
-                    driverMarker = mMap.addMarker(new MarkerOptions().position(driverLocation).title("Driver: " + driverName));
+                setOnTrip(response.status == RideState.IN_PROGRESS);
+                if (response.status != null && response.status.isTerminal()) {
+                    removeDriver();
+                    return;
+                }
 
-                    Toast.makeText(CustomerMapActivity.this,
-                            "Driver assigned: " + driverName + "\nEmail: " + driverEmail,
-                            Toast.LENGTH_LONG).show();
+                String driverName = response.driverName;
+                String driverEmail = response.driverEmail;
+                if (driverEmail != null && response.hasPosition()) {
+                    if (onTrip && driverSnapper != null) {
+                        driverSnapper.snap(response.driverLat, response.driverLng, driverPosition);
+                    } else {
+                        driverPosition[0] = response.driverLat;
+                        driverPosition[1] = response.driverLng;
+                    }
+                    driverAnimator.onSample(driverPosition[0], driverPosition[1], "Driver: " + driverName);
+
+                    // Position updates arrive every few seconds; only announce the assignment once.
+                    if (!driverEmail.equals(announcedDriverEmail)) {
+                        announcedDriverEmail = driverEmail;
+                        Toast.makeText(CustomerMapActivity.this,
+                                "Driver assigned: " + driverName + "\nEmail: " + driverEmail,
+                                Toast.LENGTH_LONG).show();
+                    }
                 }
             }
 
@@ -214,15 +332,66 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
         });
     }
 
+    private void removeDriver() {
+        if (driverAnimator != null) driverAnimator.remove();
+        announcedDriverEmail = null;
+    }
+
+    private void saveResponse(RideResponse response) {
+        RideRecord saved = rideStore.getRide(customerId);
+        if (saved == null || response.status == null) return;
+
+        if (response.status != saved.state || !response.driverId.equals(saved.driverId)) {
+            rideStore.saveRide(saved.withDriver(response.driverId, response.status, System.currentTimeMillis()));
+            resampleLocation();
+            updateCancelButton();
+        }
+    }
+
+    private void setOnTrip(boolean trip) {
+        if (trip == onTrip) return;
+        onTrip = trip;
+        locationStage.setRoute(trip && routeLevels != null ? routeLevels.full() : null);
+    }
+
+    /** Redraws an unfinished ride from the local store, so a restart doesn't come back blank. */
+    private void restoreActiveRide() {
+        if (rideStore == null) return;
+        RideRecord saved = rideStore.getRide(customerId);
+        if (saved == null || saved.state.isTerminal()) return;
+        updateCancelButton();
+
+        LatLng pickup = new LatLng(saved.pickupLat, saved.pickupLng);
+        LatLng drop = new LatLng(saved.dropLat, saved.dropLng);
+        markerLayer.show(MarkerLayer.PICKUP, pickup, "Pickup");
+        markerLayer.show(MarkerLayer.DROP, drop, "Drop");
+        mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(pickup, 15));
+        cameraCentered = true;
+        drawRouteBetween(pickup, drop);
+    }
+
     private void drawRouteBetween(LatLng origin, LatLng destination) {
+        String key = routeCache.key(origin.latitude, origin.longitude, destination.latitude, destination.longitude);
+        routeExecutor.execute(() -> {
+            RouteLevels cached = routeCache.get(key, System.currentTimeMillis());
+            runOnUiThread(() -> {
+                if (cached != null) {
+                    showRoute(cached);
+                } else {
+                    fetchRoute(origin, destination, key);
+                }
+            });
+        });
+    }
+
+    private void fetchRoute(LatLng origin, LatLng destination, String cacheKey) {
         String apiKey = getString(R.string.google_maps_key);
         String url = "https://maps.googleapis.com/maps/api/directions/json?origin=" +
                 origin.latitude + "," + origin.longitude +
                 "&destination=" + destination.latitude + "," + destination.longitude +
                 "&key=" + apiKey;
 
-        RequestQueue queue = Volley.newRequestQueue(this);
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
+        NetworkStack.get(this).getJson(url, this,
                 response -> {
                     try {
                         JSONArray routes = response.getJSONArray("routes");
@@ -230,69 +399,110 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
                             JSONObject overviewPolyline = routes.getJSONObject(0).getJSONObject("overview_polyline");
                             String encodedPoints = overviewPolyline.getString("points");
 
-                            List<LatLng> decodedPath = decodePoly(encodedPoints);
-
-                            if (routePolyline != null) routePolyline.remove();
-                            routePolyline = mMap.addPolyline(new PolylineOptions()
-                                    .addAll(decodedPath)
-                                    .width(10)
-                                    .color(Color.BLUE)
-                                    .geodesic(true));
+                            routeExecutor.execute(() -> {
+                                RouteLevels route;
+                                try {
+                                    route = routeCache.put(cacheKey, encodedPoints, System.currentTimeMillis());
+                                } catch (RuntimeException e) {
+                                    // A malformed polyline, say; the executor would swallow it.
+                                    runOnUiThread(() -> Toast.makeText(this, "Route parsing failed", Toast.LENGTH_SHORT).show());
+                                    return;
+                                }
+                                runOnUiThread(() -> showRoute(route));
+                            });
                         }
                     } catch (JSONException e) {
                         Toast.makeText(this, "Route parsing failed", Toast.LENGTH_SHORT).show();
                     }
                 },
                 error -> Toast.makeText(this, "Failed to fetch route", Toast.LENGTH_SHORT).show());
+    }
+
+    private void showRoute(RouteLevels route) {
+        if (isDestroyed()) return;
+
+        routeLevels = route;
+        driverSnapper = new RouteSnapper(route.full());
+        if (onTrip) locationStage.setRoute(route.full());
+        shownRouteLevel = route.levelFor(mMap.getCameraPosition().zoom);
 
-        queue.add(request);
+        if (routePolyline != null) routePolyline.remove();
+        routePolyline = mMap.addPolyline(new PolylineOptions()
+                .addAll(toLatLngs(route.path(shownRouteLevel)))
+                .width(10)
+                .color(Color.BLUE)
+                .geodesic(true));
     }
 
-    private List<LatLng> decodePoly(String encoded) {
-        List<LatLng> poly = new ArrayList<>();
-        int index = 0, len = encoded.length();
-        int lat = 0, lng = 0;
-
-        while (index < len) {
-            int b, shift = 0, result = 0;
-            do{b=encoded.charAt(index++)-63;result|=(b & 0x1f) << shift; shift += 5; }
-            while (b >= 0x20);
-            int dlat = ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
-            lat += dlat;
-
-            shift = 0; result = 0;
-            do { b = encoded.charAt(index++) - 63; result |= (b & 0x1f) << shift; shift += 5; }
-            while (b >= 0x20);
-            int dlng = ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
-            lng += dlng;
-
-            poly.add(new LatLng(lat / 1E5, lng / 1E5));
+    /** Swaps in the simplified copy of the route that matches the new zoom, if it changed. */
+    private void onCameraIdle() {
+        if (routeLevels == null || routePolyline == null) return;
+
+        int level = routeLevels.levelFor(mMap.getCameraPosition().zoom);
+        if (level != shownRouteLevel) {
+            shownRouteLevel = level;
+            routePolyline.setPoints(toLatLngs(routeLevels.path(level)));
         }
+    }
 
-        return poly;
+    private static List<LatLng> toLatLngs(PolylinePath path) {
+        List<LatLng> points = new ArrayList<>(path.size());
+        for (int i = 0; i < path.size(); i++) {
+            points.add(new LatLng(path.lat(i), path.lng(i)));
+        }
+        return points;
     }
 
     private void setupLocationRequest() {
-        locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 5000)
-                .setMinUpdateIntervalMillis(2000)
-                .build();
+        updateSamplingInputs();
+        samplingPlan = samplingPolicy.plan();
+        locationRequest = LocationRequests.build(samplingPlan);
+        locationStage.setMaxAccuracyMeters(samplingPlan.accuracy.worstFixMeters);
+    }
+
+    private void updateSamplingInputs() {
+        RideRecord ride = rideStore != null ? rideStore.getRide(customerId) : null;
+        samplingPolicy.setRideState(ride != null ? ride.state : null);
+        LocationRequests.updateBattery(this, null, samplingPolicy);
+    }
+
+    /** Re-requests updates if the ride or battery moved the customer to a different plan. */
+    private void resampleLocation() {
+        updateSamplingInputs();
+        SamplingPolicy.Plan plan = samplingPolicy.plan();
+        if (plan.equals(samplingPlan)) return;
+        samplingPlan = plan;
+        locationRequest = LocationRequests.build(plan);
+        locationStage.setMaxAccuracyMeters(plan.accuracy.worstFixMeters);
+        if (locationUpdatesStarted) {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            startLocationUpdates();
+        }
     }
 
     private void setupLocationCallback() {
         locationCallback = new LocationCallback() {
             @Override
             public void onLocationResult(@NonNull LocationResult locationResult) {
-                for (Location location : locationResult.getLocations()) {
-                    double lat = location.getLatitude();
-                    double lng = location.getLongitude();
+                Location location = locationResult.getLastLocation();
+                if (location == null) return;
+                if (!locationStage.process(location.getLatitude(), location.getLongitude(),
+                        location.hasAccuracy() ? location.getAccuracy() : Double.NaN, location.getTime(), estimate)) {
+                    return;
+                }
+
+                double lat = estimate[0];
+                double lng = estimate[1];
 
-                    LatLng userLatLng = new LatLng(lat, lng);
-                    mMap.addMarker(new MarkerOptions().position(userLatLng).title("You are here"));
+                LatLng userLatLng = new LatLng(lat, lng);
+                markerLayer.show(MarkerLayer.SELF, userLatLng, "You are here");
+                if (!cameraCentered) {
                     mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(userLatLng, 15));
+                    cameraCentered = true;
+                }
 
-                    if (geoFire != null && customerId != null) {
-                        geoFire.setLocation(customerId, new GeoLocation(lat, lng));
-                    }
+                if (geoFire != null && customerId != null) {
+                    geoFire.setLocation(customerId, new GeoLocation(lat, lng));
                 }
             }
         };
@@ -307,11 +517,16 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
             return;
         }
         fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+        locationUpdatesStarted = true;
     }
 
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
+        markerLayer = new MarkerLayer(googleMap);
+        mMap.setOnCameraIdleListener(this::onCameraIdle);
+        driverAnimator = new DriverMarkerAnimator(googleMap);
+        restoreActiveRide();
 
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -343,6 +558,13 @@ public class CustomerMapActivity extends FragmentActivity implements OnMapReadyC
         if (fusedLocationClient != null && locationCallback != null) {
             fusedLocationClient.removeLocationUpdates(locationCallback);
         }
+        if (driverAnimator != null) {
+            driverAnimator.stop();
+        }
+        routeExecutor.shutdown();
+        geocodingService.shutdown();
+        placeAutocomplete.shutdown();
+        NetworkStack.get(this).cancelAll(this);
     }
 }
 
@@ -0,0 +1,254 @@
+package com.kobha.ourmap;
+
+import android.annotation.SuppressLint;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+/**
+ * Foreground service that owns the driver's location updates, so the driver stays
+ * dispatchable with the screen off or the app in the background.
+ *
+ * Fixes are delivered on a dedicated HandlerThread and handed to a {@link DriverLocationPipeline},
+ * which filters them and publishes through the shared {@link LocationPublisher}; the main
+ * thread never sees a raw fix. How often and how precisely to sample is left to a {@link SamplingPolicy},
+ * fed from the same thread with every fix, the driver's active ride and the battery; updates
+ * are re-requested only when its plan changes. Idle plans let the provider batch fixes; every
+ * fix of a batch goes through the filter, and only the newest estimate is published. The
+ * screen, when visible, gets the latest position through {@link Listener}, coalesced to at
+ * most one pending main-thread callback. Going offline, or the service going away, takes the
+ * driver out of locations/Drivers, so dispatch doesn't keep offering them rides.
+ */
+public class DriverLocationService extends Service {
+
+    public interface Listener {
+        /** Called on the main thread. */
+        void onFix(double lat, double lng);
+    }
+
+    private static final String CHANNEL_ID = "driver_location";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String ACTION_STOP = "com.kobha.ourmap.action.STOP_LOCATION";
+    private static final String ACTION_RIDE_CHANGED = "com.kobha.ourmap.action.RIDE_CHANGED";
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static Listener listener;
+    private static boolean running;
+    private static boolean fixPosted;
+    private static double latestLat;
+    private static double latestLng;
+
+    private HandlerThread locationThread;
+    private FusedLocationProviderClient fusedLocationClient;
+    private Handler locationHandler;
+    private LocationPublisher publisher;
+    private RideStore rideStore;
+    private String driverId;
+    private final SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+    private SamplingPolicy.Plan requestedPlan;
+    private DriverLocationPipeline pipeline;
+    private volatile boolean destroyed;
+
+    private final BroadcastReceiver batteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Delivered on locationThread.
+            LocationRequests.updateBattery(context, intent, policy);
+            applyPlan();
+        }
+    };
+
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            // Runs on locationThread. A batch can hold many fixes; all of them feed the filter,
+            // and only the newest estimate is published.
+            boolean accepted = false;
+            for (Location location : result.getLocations()) {
+                accepted |= pipeline.onFix(location.getLatitude(), location.getLongitude(),
+                        location.hasAccuracy() ? location.getAccuracy() : Double.NaN,
+                        location.hasSpeed() ? location.getSpeed() : Double.NaN, location.getTime());
+            }
+            if (!accepted) return;
+
+            pipeline.publish();
+            deliverToScreen(pipeline.getLat(), pipeline.getLng());
+            applyPlan();
+        }
+    };
+
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, DriverLocationService.class));
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, DriverLocationService.class));
+    }
+
+    /** Tells a running service that the assigned ride or its state changed, so it can resample. */
+    public static void onRideChanged(Context context) {
+        if (!running) return;
+        Intent intent = new Intent(context, DriverLocationService.class).setAction(ACTION_RIDE_CHANGED);
+        context.startService(intent);
+    }
+
+    /** Main thread only. Pass null to stop receiving fixes. */
+    public static void setListener(Listener l) {
+        listener = l;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        running = true;
+        locationThread = new HandlerThread("driver-location", Process.THREAD_PRIORITY_BACKGROUND);
+        locationThread.start();
+        locationHandler = new Handler(locationThread.getLooper());
+        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        startForegroundCompat();
+
+        String action = intent != null ? intent.getAction() : null;
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (ACTION_STOP.equals(action)) {
+            // Started just to stop, e.g. after the process was killed: the node may still be there.
+            if (publisher == null && user != null) RideSync.get(this, user.getUid()).getLocationPublisher().goOffline();
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        if (user == null) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        if (publisher == null) {
+            RideSync sync = RideSync.get(this, user.getUid());
+            publisher = sync.getLocationPublisher();
+            pipeline = new DriverLocationPipeline(publisher, policy);
+            rideStore = sync.getStore();
+            driverId = user.getUid();
+            // The sticky battery broadcast is delivered right away, which also makes the first request.
+            registerReceiver(batteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED), null, locationHandler);
+            locationHandler.post(this::updateRideState);
+        } else if (ACTION_RIDE_CHANGED.equals(action)) {
+            locationHandler.post(this::updateRideState);
+        }
+        return START_STICKY;
+    }
+
+    /** locationThread only. */
+    private void updateRideState() {
+        RideRecord ride = rideStore.activeRide();
+        policy.setRideState(ride != null && driverId.equals(ride.driverId) ? ride.state : null);
+        applyPlan();
+    }
+
+    /** locationThread only. */
+    @SuppressLint("MissingPermission") // The screen only starts the service once the permission is granted.
+    private void applyPlan() {
+        SamplingPolicy.Plan plan = policy.plan();
+        if (destroyed || plan.equals(requestedPlan)) return;
+        requestedPlan = plan;
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        try {
+            fusedLocationClient.requestLocationUpdates(LocationRequests.build(plan), locationCallback,
+                    locationThread.getLooper());
+        } catch (SecurityException e) {
+            stopSelf();
+        }
+    }
+
+    private static void deliverToScreen(double lat, double lng) {
+        synchronized (DriverLocationService.class) {
+            latestLat = lat;
+            latestLng = lng;
+            if (fixPosted) return;
+            fixPosted = true;
+        }
+        mainHandler.post(() -> {
+            double fixLat;
+            double fixLng;
+            synchronized (DriverLocationService.class) {
+                fixLat = latestLat;
+                fixLng = latestLng;
+                fixPosted = false;
+            }
+            if (listener != null) listener.onFix(fixLat, fixLng);
+        });
+    }
+
+    private void startForegroundCompat() {
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && manager.getNotificationChannel(CHANNEL_ID) == null) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Driver location",
+                    NotificationManager.IMPORTANCE_LOW));
+        }
+
+        PendingIntent open = PendingIntent.getActivity(this, 0,
+                new Intent(this, DriverMapActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 1,
+                new Intent(this, DriverLocationService.class).setAction(ACTION_STOP), PendingIntent.FLAG_IMMUTABLE);
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle("You're online")
+                .setContentText("Sharing your location so riders can find you")
+                .setContentIntent(open)
+                .addAction(0, "Go offline", stop)
+                .setOngoing(true)
+                .build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        destroyed = true;
+        if (publisher != null) unregisterReceiver(batteryReceiver);
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        // After any fix already queued on the thread, so none of them puts the driver back.
+        if (publisher != null) locationHandler.post(publisher::goOffline);
+        locationThread.quitSafely();
+        running = false;
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
@@ -1,8 +1,7 @@
 package com.kobha.ourmap;
 
-import android.location.Location;
+import android.os.Build;
 import android.os.Bundle;
-import android.os.Looper;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.view.View;
@@ -13,9 +12,6 @@ import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.FragmentActivity;
 
-import com.firebase.geofire.GeoFire;
-import com.firebase.geofire.GeoLocation;
-import com.google.android.gms.location.*;
 import com.google.android.gms.maps.*;
 import com.google.android.gms.maps.model.*;
 import com.google.firebase.auth.FirebaseAuth;
@@ -24,22 +20,42 @@ import com.google.firebase.database.*;
 
 import com.kobha.ourmap.databinding.ActivityDriverMapBinding;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DriverMapActivity extends FragmentActivity implements OnMapReadyCallback {
 
+    private static final int LOCATION_PERMISSION_REQUEST_CODE = 101;
+
     private GoogleMap mMap;
+    private MarkerLayer markerLayer;
+    private boolean cameraCentered;
     private ActivityDriverMapBinding binding;
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationCallback locationCallback;
-    private LocationRequest locationRequest;
-
     private String driverId;
-    private GeoFire geoFire;
-
-    private boolean rideAccepted = false;
-    private String assignedCustomerId;
+    private LocationPublisher locationPublisher;
+    private RideStore rideStore;
+    private SyncQueue rideWriter;
+    /** For accepting, which must not outlive this process: see {@link #acceptRide}. */
+    private final MultiPathWriter acceptWriter = new FirebaseMultiPathWriter();
+
+    /** The ride this driver is on, null while free; set only by compare-and-set from null. */
+    private final AtomicReference<RideStateMachine> currentRide = new AtomicReference<>();
+    /** Open offers, nearest first; main thread only. Accepting one takes it out first, so it goes once. */
+    private final RideInbox inbox = new RideInbox();
+    private final Runnable expireOffers = this::expireOffers;
+    /**
+     * Only the dispatch server moves an unanswered offer on. Offers made by a customer's phone
+     * stay open until withdrawn, or the ride would be left offered with nobody seeing it.
+     */
+    private boolean expireOffersLocally;
+    /** Database clock minus ours, for comparing with offer stamps. */
+    private volatile long serverTimeOffsetMillis;
+    private RideRecord currentRecord;
+    /** Follows the current ride's status, so a cancellation by the customer ends it here too. */
+    private DatabaseReference rideStatusRef;
+    private ValueEventListener rideStatusListener;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,94 +71,195 @@ public class DriverMapActivity extends FragmentActivity implements OnMapReadyCal
         }
 
         driverId = user.getUid();
-        DatabaseReference driverLocationRef = FirebaseDatabase.getInstance().getReference("locations/Drivers");
-        geoFire = new GeoFire(driverLocationRef);
-
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        setupLocationRequest();
-        setupLocationCallback();
+        RideSync rideSync = RideSync.get(this, driverId);
+        locationPublisher = rideSync.getLocationPublisher();
+        rideStore = rideSync.getStore();
+        rideWriter = rideSync.getQueue();
+        expireOffersLocally = getResources().getBoolean(R.bool.server_dispatch);
 
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager().findFragmentById(R.id.driver_map);
         if (mapFragment != null) {
             mapFragment.getMapAsync(this);
         }
 
+        binding.btnNextRequest.setOnClickListener(v -> {
+            inbox.selectNext();
+            showOffers();
+        });
+        restoreActiveRide();
+        listenToServerTime();
         listenToRideRequests();
     }
 
-    private void setupLocationRequest() {
-        locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 3000)
-                .setMinUpdateIntervalMillis(1500)
-                .build();
+    private void listenToServerTime() {
+        FirebaseDatabase.getInstance().getReference(".info/serverTimeOffset")
+                .addValueEventListener(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Long offset = snapshot.getValue(Long.class);
+                        serverTimeOffsetMillis = offset != null ? offset : 0;
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                    }
+                });
+    }
+
+    private long serverNow() {
+        return System.currentTimeMillis() + serverTimeOffsetMillis;
     }
 
-    private void setupLocationCallback() {
-        locationCallback = new LocationCallback() {
+    /** Puts an unfinished ride from the local store back on screen before the database answers. */
+    private void restoreActiveRide() {
+        RideRecord saved = rideStore.activeRide();
+        if (saved == null || !driverId.equals(saved.driverId) || saved.state == RideState.PENDING
+                || saved.state == RideState.OFFERED) {
+            return;
+        }
+        if (!currentRide.compareAndSet(null, new RideStateMachine(saved.customerId, saved.state))) return;
+        currentRecord = saved;
+        locationPublisher.setAssignedCustomer(saved.customerId);
+
+        binding.btnAcceptRide.setVisibility(View.VISIBLE);
+        binding.btnAcceptRide.setOnClickListener(v -> advanceRide());
+        showRideStep(saved.state);
+        listenToRideStatus(currentRide.get());
+    }
+
+    private void listenToRideStatus(RideStateMachine ride) {
+        stopListeningToRideStatus();
+        rideStatusRef = FirebaseDatabase.getInstance().getReference("rideRequests")
+                .child(ride.getCustomerId()).child("status");
+        rideStatusListener = new ValueEventListener() {
             @Override
-            public void onLocationResult(@NonNull LocationResult locationResult) {
-               // if (locationResult == null) return;
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                onRideStatus(ride, snapshot.getValue(String.class));
+            }
 
-                for (Location location : locationResult.getLocations()) {
-                    double lat = location.getLatitude();
-                    double lng = location.getLongitude();
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        };
+        rideStatusRef.addValueEventListener(rideStatusListener);
+    }
 
-                    LatLng latLng = new LatLng(lat, lng);
-                    mMap.clear();
-                    mMap.addMarker(new MarkerOptions().position(latLng).title("Driver Location"));
-                    mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 15));
+    private void stopListeningToRideStatus() {
+        if (rideStatusRef != null) rideStatusRef.removeEventListener(rideStatusListener);
+        rideStatusRef = null;
+        rideStatusListener = null;
+    }
 
-                    geoFire.setLocation(driverId, new GeoLocation(lat, lng));
+    /**
+     * Steps this phone took may not have reached the database yet, so an older status is not
+     * taken back; a later one is, and one that takes the ride away from this driver ends it.
+     */
+    private void onRideStatus(RideStateMachine ride, String wireName) {
+        if (currentRide.get() != ride) return;
+        RideState observed;
+        try {
+            observed = wireName != null ? RideState.fromWireName(wireName) : RideState.CANCELLED;
+        } catch (IllegalArgumentException e) {
+            return;
+        }
 
-                    if (rideAccepted && assignedCustomerId != null) {
-                        updateDriverLocationForCustomer(lat, lng);
-                    }
-                }
+        if (observed.isTerminal() || observed == RideState.PENDING || observed == RideState.OFFERED) {
+            ride.sync(observed);
+            if (currentRecord != null) {
+                currentRecord = currentRecord.withState(observed.isTerminal() ? observed : RideState.CANCELLED,
+                        System.currentTimeMillis());
+                rideStore.saveRide(currentRecord);
             }
-        };
+            onRideFinished(ride, observed == RideState.COMPLETED ? "Ride completed" : "Ride cancelled by the customer");
+        } else if (observed.ordinal() > ride.getState().ordinal()) {
+            ride.sync(observed);
+            if (currentRecord != null) {
+                currentRecord = currentRecord.withState(observed, System.currentTimeMillis());
+                rideStore.saveRide(currentRecord);
+            }
+            showRideStep(observed);
+            DriverLocationService.onRideChanged(this);
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // The service publishes; the screen only follows along while it is visible.
+        DriverLocationService.setListener((lat, lng) -> {
+            inbox.setDriverPosition(lat, lng);
+            if (markerLayer != null) {
+                LatLng latLng = new LatLng(lat, lng);
+                markerLayer.show(MarkerLayer.SELF, latLng, "Driver Location");
+                followCamera(latLng);
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        DriverLocationService.setListener(null);
+        super.onStop();
+    }
+
+    private void followCamera(LatLng latLng) {
+        if (!cameraCentered) {
+            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 15));
+            cameraCentered = true;
+        } else if (!mMap.getProjection().getVisibleRegion().latLngBounds.contains(latLng)) {
+            mMap.animateCamera(CameraUpdateFactory.newLatLng(latLng));
+        }
     }
 
     private void startLocationUpdates() {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, 101);
+            requestLocationPermission();
             return;
         }
-        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+        DriverLocationService.start(this);
+    }
+
+    private void requestLocationPermission() {
+        String[] permissions = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? new String[]{Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.POST_NOTIFICATIONS}
+                : new String[]{Manifest.permission.ACCESS_FINE_LOCATION};
+        ActivityCompat.requestPermissions(this, permissions, LOCATION_PERMISSION_REQUEST_CODE);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
+                                           @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == LOCATION_PERMISSION_REQUEST_CODE
+                && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED) {
+            if (mMap != null) mMap.setMyLocationEnabled(true);
+            startLocationUpdates();
+        }
     }
 
     private void listenToRideRequests() {
-        DatabaseReference rideRequestsRef = FirebaseDatabase.getInstance().getReference("rideRequests");
-        Query pendingRidesQuery = rideRequestsRef.orderByChild("status").equalTo("pending");
+        DatabaseReference offersRef = FirebaseDatabase.getInstance().getReference("driverOffers").child(driverId);
 
-        pendingRidesQuery.addChildEventListener(new ChildEventListener() {
+        offersRef.addChildEventListener(new ChildEventListener() {
             @Override
             public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                if (rideAccepted) return;
-
-                String customerId = snapshot.getKey();
-                Double pickupLat = snapshot.child("pickup_lat").getValue(Double.class);
-                Double pickupLng = snapshot.child("pickup_lng").getValue(Double.class);
-                Double dropLat = snapshot.child("drop_lat").getValue(Double.class);
-                Double dropLng = snapshot.child("drop_lng").getValue(Double.class);
-
-                if (pickupLat != null && pickupLng != null && dropLat != null && dropLng != null) {
-                    assignedCustomerId = customerId;
-
-                    LatLng pickup = new LatLng(pickupLat, pickupLng);
-                    LatLng drop = new LatLng(dropLat, dropLng);
+                onOffer(snapshot);
+            }
 
-                    mMap.clear();
-                    mMap.addMarker(new MarkerOptions().position(pickup).title("Pickup Location").icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN)));
-                    mMap.addMarker(new MarkerOptions().position(drop).title("Drop Location").icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                onOffer(snapshot);
+            }
 
-                    binding.btnAcceptRide.setVisibility(View.VISIBLE);
-                    binding.btnAcceptRide.setOnClickListener(v -> acceptRideWithTransaction(customerId));
-                }
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                // The offer was withdrawn or another driver took the ride: gone at once.
+                String customerId = snapshot.getKey();
+                if (customerId != null && inbox.remove(customerId) != null) showOffers();
             }
 
-            @Override public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
-            @Override public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
             @Override public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
             @Override public void onCancelled(@NonNull DatabaseError error) {
                 Toast.makeText(DriverMapActivity.this, "Failed to load ride requests.", Toast.LENGTH_SHORT).show();
@@ -150,82 +267,211 @@ public class DriverMapActivity extends FragmentActivity implements OnMapReadyCal
         });
     }
 
-    private void acceptRideWithTransaction(String customerId) {
-        DatabaseReference requestRef = FirebaseDatabase.getInstance().getReference("rideRequests").child(customerId);
-        requestRef.child("status").runTransaction(new Transaction.Handler() {
-            @NonNull
-            @Override
-            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
-                String currentStatus = currentData.getValue(String.class);
-                if ("pending".equals(currentStatus)) {
-                    currentData.setValue("accepted");
-                    return Transaction.success(currentData);
-                }
-                return Transaction.abort();
-            }
+    private void onOffer(DataSnapshot snapshot) {
+        String customerId = snapshot.getKey();
+        if (customerId == null) return;
+        RideOffer offer = RideOffer.fromValue(snapshot.getValue());
+        if (offer == null) {
+            if (inbox.remove(customerId) != null) showOffers();
+            return;
+        }
+        inbox.put(customerId, offer, serverNow());
+        scheduleExpiry();
+        showOffers();
+    }
 
-            @Override
-            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot currentData) {
-                if (committed) {
-                    proceedWithRideAcceptance(customerId);
+    /**
+     * Server offers expire on the server, counted from when they were written; this covers
+     * withdrawals that don't arrive.
+     */
+    private void scheduleExpiry() {
+        if (!expireOffersLocally) return;
+        View root = binding.getRoot();
+        root.removeCallbacks(expireOffers);
+        long next = inbox.nextExpiryMillis(OfferManager.DEFAULT_TIMEOUT_MILLIS);
+        if (next != Long.MAX_VALUE) root.postDelayed(expireOffers, Math.max(0, next - serverNow()));
+    }
+
+    private void expireOffers() {
+        if (!expireOffersLocally) return;
+        if (inbox.expire(serverNow(), OfferManager.DEFAULT_TIMEOUT_MILLIS) > 0) showOffers();
+        scheduleExpiry();
+    }
+
+    /** Shows the selected offer on the map, and only that one; nothing while on a ride. */
+    private void showOffers() {
+        if (currentRide.get() != null) return;
+        RideInbox.Entry selected = inbox.selected();
+        if (selected == null) {
+            if (markerLayer != null) markerLayer.retainOnly(MarkerLayer.SELF);
+            binding.btnAcceptRide.setVisibility(View.GONE);
+            binding.btnNextRequest.setVisibility(View.GONE);
+            return;
+        }
+
+        String customerId = selected.customerId;
+        RideOffer offer = selected.offer;
+        LatLng pickup = new LatLng(offer.pickupLat, offer.pickupLng);
+        LatLng drop = new LatLng(offer.dropLat, offer.dropLng);
+        if (markerLayer != null) {
+            markerLayer.show(MarkerLayer.PICKUP, pickup, "Pickup Location", BitmapDescriptorFactory.HUE_GREEN);
+            markerLayer.show(MarkerLayer.DROP, drop, "Drop Location", BitmapDescriptorFactory.HUE_RED);
+        }
+
+        binding.btnAcceptRide.setVisibility(View.VISIBLE);
+        binding.btnAcceptRide.setText("Accept Ride");
+        binding.btnAcceptRide.setOnClickListener(v -> acceptRide(customerId, offer.offeredTo, pickup, drop));
+
+        int others = inbox.size() - 1;
+        binding.btnNextRequest.setVisibility(others > 0 ? View.VISIBLE : View.GONE);
+        binding.btnNextRequest.setText("Next (" + others + " more)");
+    }
+
+    private void acceptRide(String customerId, List<String> offeredTo, LatLng pickup, LatLng drop) {
+        if (currentRide.get() != null) {
+            Toast.makeText(this, "Finish the current ride first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (!locationPublisher.hasFix()) {
+            Toast.makeText(this, "Waiting for a GPS fix...", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Out of the inbox first: it can be accepted once, and not after it expired.
+        RideInbox.Entry entry = inbox.remove(customerId);
+        if (entry == null) return;
+
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        String email = user != null ? user.getEmail() : null;
+        String name = user != null && user.getDisplayName() != null ? user.getDisplayName() : "Driver";
+
+        // Database rules only let the status leave "offered" once, so a losing driver's update is rejected.
+        RideStateMachine ride = new RideStateMachine(customerId, RideState.OFFERED);
+        Map<String, Object> updates = ride.accept(driverId, email, name,
+                locationPublisher.getLastFixLat(), locationPublisher.getLastFixLng(), offeredTo);
+
+        binding.btnAcceptRide.setEnabled(false);
+        // Accepting races other drivers, so unlike later steps it waits for the server's answer,
+        // and it isn't journaled: replayed after a restart it would hand this driver a ride
+        // nothing on the phone knows about, possibly long after the offer went away.
+        acceptWriter.updateChildren(updates, error -> {
+            binding.btnAcceptRide.setEnabled(true);
+            if (error != null) {
+                if (error.startsWith(MultiPathWriter.PERMISSION_DENIED)) {
+                    Toast.makeText(DriverMapActivity.this, "Ride already accepted", Toast.LENGTH_SHORT).show();
                 } else {
-                    Toast.makeText(DriverMapActivity.this, "Ride already accepted or failed", Toast.LENGTH_SHORT).show();
+                    // The write didn't get through, so the offer still stands; a withdrawal that
+                    // came meanwhile still wins, the rules reject accepting it.
+                    if (inbox.get(customerId) == null) inbox.put(customerId, entry.offer, serverNow());
+                    scheduleExpiry();
+                    Toast.makeText(DriverMapActivity.this, "Couldn't accept, try again: " + error, Toast.LENGTH_SHORT).show();
                 }
+                showOffers();
+                return;
+            }
+            ride.onCommitted(RideState.ACCEPTED);
+            if (!currentRide.compareAndSet(null, ride)) {
+                // Another ride got here while this one was on its way. The database already has
+                // this driver on it, so hand it back rather than leave the customer waiting.
+                acceptWriter.updateChildren(ride.cancel(Collections.<String>emptyList()), null);
+                Toast.makeText(DriverMapActivity.this, "Already on a ride; released this one", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            currentRecord = new RideRecord(customerId, driverId, RideState.ACCEPTED,
+                    pickup.latitude, pickup.longitude, drop.latitude, drop.longitude, System.currentTimeMillis());
+            rideStore.saveRide(currentRecord);
+            // Other offers may have come and gone on screen while this one was on its way.
+            if (markerLayer != null) {
+                markerLayer.show(MarkerLayer.PICKUP, pickup, "Pickup Location", BitmapDescriptorFactory.HUE_GREEN);
+                markerLayer.show(MarkerLayer.DROP, drop, "Drop Location", BitmapDescriptorFactory.HUE_RED);
             }
+            onRideAccepted(ride);
         });
     }
 
-    private void proceedWithRideAcceptance(String customerId) {
-        rideAccepted = true;
-        assignedCustomerId = customerId;
-
-        DatabaseReference responseRef = FirebaseDatabase.getInstance().getReference("rideResponses").child(customerId);
-        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+    private void onRideAccepted(RideStateMachine ride) {
+        locationPublisher.setAssignedCustomer(ride.getCustomerId());
+        binding.btnAcceptRide.setVisibility(View.VISIBLE);
+        binding.btnNextRequest.setVisibility(View.GONE);
+        DriverLocationService.onRideChanged(this);
 
-        if (user != null) {
-            String email = user.getEmail();
-            String name = user.getDisplayName() != null ? user.getDisplayName() : "Driver";
+        Toast.makeText(this, "Ride accepted. Moving to pickup...", Toast.LENGTH_SHORT).show();
+        showRideStep(RideState.ACCEPTED);
+        binding.btnAcceptRide.setOnClickListener(v -> advanceRide());
+        listenToRideStatus(ride);
+    }
 
-            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
-                    ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-                return;
-            }
+    private void showRideStep(RideState state) {
+        switch (state) {
+            case ACCEPTED: binding.btnAcceptRide.setText("Arrived"); break;
+            case ARRIVING: binding.btnAcceptRide.setText("Start Ride"); break;
+            case IN_PROGRESS: binding.btnAcceptRide.setText("Complete Ride"); break;
+            default: break;
+        }
+    }
 
-            fusedLocationClient.getLastLocation().addOnSuccessListener(location -> {
-                if (location != null) {
-                    double driverLat = location.getLatitude();
-                    double driverLng = location.getLongitude();
+    private void advanceRide() {
+        RideStateMachine ride = currentRide.get();
+        if (ride == null) return;
 
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("driverEmail", email);
-                    response.put("driverName", name);
-                    response.put("driver_lat", driverLat);
-                    response.put("driver_lng", driverLng);
-                    response.put("status", "accepted");
+        RideState next;
+        switch (ride.getState()) {
+            case ACCEPTED: next = RideState.ARRIVING; break;
+            case ARRIVING: next = RideState.IN_PROGRESS; break;
+            case IN_PROGRESS: next = RideState.COMPLETED; break;
+            default: return;
+        }
 
-                    responseRef.setValue(response);
-                    Toast.makeText(this, "Ride accepted. Moving to pickup...", Toast.LENGTH_SHORT).show();
-                }
-            });
+        // The step is journaled before it is sent, so the screen moves on right away even with
+        // no signal; the queue delivers it in order once the connection is back.
+        Map<String, Object> updates = ride.advance(next);
+        rideWriter.updateChildren(updates, error -> {
+            if (error != null) {
+                Toast.makeText(DriverMapActivity.this, "Update rejected: " + error, Toast.LENGTH_SHORT).show();
+            }
+        });
+        ride.onCommitted(next);
+        if (currentRecord != null) {
+            currentRecord = currentRecord.withState(next, System.currentTimeMillis());
+            rideStore.saveRide(currentRecord);
         }
 
-        binding.btnAcceptRide.setVisibility(View.GONE);
+        if (next == RideState.COMPLETED) {
+            onRideFinished(ride, "Ride completed");
+        } else {
+            showRideStep(next);
+            DriverLocationService.onRideChanged(this);
+        }
     }
 
-    private void updateDriverLocationForCustomer(double lat, double lng) {
-        DatabaseReference responseRef = FirebaseDatabase.getInstance().getReference("rideResponses").child(assignedCustomerId);
-        responseRef.child("driver_lat").setValue(lat);
-        responseRef.child("driver_lng").setValue(lng);
+    private void onRideFinished(RideStateMachine ride, String message) {
+        if (!currentRide.compareAndSet(ride, null)) return;
+        stopListeningToRideStatus();
+        currentRecord = null;
+        locationPublisher.setAssignedCustomer(null);
+        DriverLocationService.onRideChanged(this);
+
+        if (markerLayer != null) markerLayer.retainOnly(MarkerLayer.SELF);
+        binding.btnAcceptRide.setVisibility(View.GONE);
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+        // Offers that came in during the ride and are still open.
+        expireOffers();
+        showOffers();
     }
 
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
+        markerLayer = new MarkerLayer(googleMap);
+        if (currentRecord != null) {
+            markerLayer.show(MarkerLayer.PICKUP, new LatLng(currentRecord.pickupLat, currentRecord.pickupLng),
+                    "Pickup Location", BitmapDescriptorFactory.HUE_GREEN);
+            markerLayer.show(MarkerLayer.DROP, new LatLng(currentRecord.dropLat, currentRecord.dropLng),
+                    "Drop Location", BitmapDescriptorFactory.HUE_RED);
+        }
 
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, 101);
+            requestLocationPermission();
             return;
         }
 
@@ -236,8 +482,12 @@ public class DriverMapActivity extends FragmentActivity implements OnMapReadyCal
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (fusedLocationClient != null && locationCallback != null) {
-            fusedLocationClient.removeLocationUpdates(locationCallback);
+        if (binding != null) binding.getRoot().removeCallbacks(expireOffers);
+        stopListeningToRideStatus();
+        // Leaving the screen with no ride means going offline; otherwise the service keeps the
+        // driver dispatchable (or the ride tracked) in the background.
+        if (isFinishing() && currentRide.get() == null) {
+            DriverLocationService.stop(this);
         }
     }
 }
@@ -0,0 +1,84 @@
+package com.kobha.ourmap;
+
+import android.view.Choreographer;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+/**
+ * Renders the assigned driver with one reused Marker, moved every display frame along the
+ * track from {@link DriverMotionModel}. Frames are only requested while the marker is moving.
+ */
+public class DriverMarkerAnimator implements Choreographer.FrameCallback {
+
+    private final GoogleMap map;
+    private final DriverMotionModel model = new DriverMotionModel();
+    private final double[] frame = new double[3];
+
+    private Marker marker;
+    private boolean running;
+
+    public DriverMarkerAnimator(GoogleMap map) {
+        this.map = map;
+    }
+
+    /** Must be called on the main thread, like every other map call. */
+    public void onSample(double lat, double lng, String title) {
+        model.onSample(lat, lng, nowMillis());
+
+        if (marker == null) {
+            marker = map.addMarker(new MarkerOptions()
+                    .position(new LatLng(lat, lng))
+                    .title(title)
+                    .flat(true)
+                    .anchor(0.5f, 0.5f));
+        } else if (title != null && !title.equals(marker.getTitle())) {
+            marker.setTitle(title);
+        }
+
+        if (!running) {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (marker == null) {
+            running = false;
+            return;
+        }
+
+        boolean moving = model.positionAt(frameTimeNanos / 1_000_000, frame);
+        marker.setPosition(new LatLng(frame[0], frame[1]));
+        marker.setRotation((float) frame[2]);
+
+        if (moving) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            running = false;
+        }
+    }
+
+    public void stop() {
+        Choreographer.getInstance().removeFrameCallback(this);
+        running = false;
+    }
+
+    /** Takes the marker off the map; the next sample starts a new track. */
+    public void remove() {
+        stop();
+        model.reset();
+        if (marker != null) {
+            marker.remove();
+            marker = null;
+        }
+    }
+
+    // Same clock as Choreographer's frameTimeNanos.
+    private static long nowMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
@@ -0,0 +1,35 @@
+package com.kobha.ourmap;
+
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.Map;
+
+public class FirebaseMultiPathWriter implements MultiPathWriter {
+
+    private final DatabaseReference rootRef;
+
+    public FirebaseMultiPathWriter() {
+        this(FirebaseDatabase.getInstance().getReference());
+    }
+
+    public FirebaseMultiPathWriter(DatabaseReference rootRef) {
+        this.rootRef = rootRef;
+    }
+
+    @Override
+    public void updateChildren(Map<String, Object> updates, Callback callback) {
+        rootRef.updateChildren(updates, (error, ref) -> {
+            if (callback != null) {
+                if (error == null) {
+                    callback.onComplete(null);
+                } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                    callback.onComplete(PERMISSION_DENIED + ": " + error.getMessage());
+                } else {
+                    callback.onComplete(error.getMessage());
+                }
+            }
+        });
+    }
+}
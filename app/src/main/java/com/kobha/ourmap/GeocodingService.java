@@ -0,0 +1,94 @@
+package com.kobha.ourmap;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves typed addresses to coordinates on background threads. Coordinates typed as
+ * "lat, lng" and addresses already in the {@link GeocodeCache} never reach the Geocoder.
+ * Results are delivered on the main thread.
+ */
+public class GeocodingService {
+
+    public interface PairCallback {
+        void onResolved(LatLng pickup, LatLng drop);
+        void onFailed(String message);
+    }
+
+    private final Geocoder geocoder;
+    private final GeocodeCache cache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public GeocodingService(Context context) {
+        geocoder = new Geocoder(context.getApplicationContext(), Locale.getDefault());
+        cache = new GeocodeCache(new File(context.getFilesDir(), "geocode_cache.tsv"));
+    }
+
+    public GeocodeCache getCache() {
+        return cache;
+    }
+
+    /** Looks up both addresses in parallel and reports once both are known. */
+    public void resolvePair(String pickup, String drop, PairCallback callback) {
+        LatLng[] results = new LatLng[2];
+        String[] errors = new String[1];
+        AtomicInteger remaining = new AtomicInteger(2);
+
+        String[] queries = {pickup, drop};
+        for (int i = 0; i < 2; i++) {
+            int slot = i;
+            executor.execute(() -> {
+                try {
+                    results[slot] = lookup(queries[slot]);
+                } catch (IOException e) {
+                    errors[0] = "Geocoding error: " + e.getMessage();
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    mainHandler.post(() -> {
+                        if (results[0] != null && results[1] != null) {
+                            callback.onResolved(results[0], results[1]);
+                        } else {
+                            callback.onFailed(errors[0] != null ? errors[0] : "Invalid locations");
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /** Blocking lookup; returns null when the address can't be found. */
+    LatLng lookup(String query) throws IOException {
+        double[] coordinates = GeocodeCache.parseCoordinates(query);
+        if (coordinates == null) {
+            coordinates = cache.get(query);
+        }
+        if (coordinates != null) {
+            return new LatLng(coordinates[0], coordinates[1]);
+        }
+
+        List<Address> addresses = geocoder.getFromLocationName(query, 1);
+        if (addresses == null || addresses.isEmpty()) return null;
+
+        Address address = addresses.get(0);
+        cache.put(query, address.getLatitude(), address.getLongitude());
+        return new LatLng(address.getLatitude(), address.getLongitude());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.kobha.ourmap;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.Priority;
+
+/** Turns a {@link SamplingPolicy.Plan} into a fused-provider request, and feeds it battery state. */
+public final class LocationRequests {
+
+    private LocationRequests() {
+    }
+
+    public static LocationRequest build(SamplingPolicy.Plan plan) {
+        return new LocationRequest.Builder(priority(plan.accuracy), plan.intervalMillis)
+                .setMinUpdateIntervalMillis(plan.minIntervalMillis)
+                .setMinUpdateDistanceMeters(plan.minDistanceMeters)
+                .setMaxUpdateDelayMillis(plan.maxDelayMillis)
+                .build();
+    }
+
+    /** Reads the sticky battery broadcast; also accepts one delivered to a receiver. */
+    public static void updateBattery(Context context, Intent batteryChanged, SamplingPolicy policy) {
+        Intent intent = batteryChanged != null ? batteryChanged
+                : context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (intent == null) return;
+
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        if (level < 0 || scale <= 0) return;
+
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+        policy.setBattery(level * 100 / scale, charging);
+    }
+
+    private static int priority(SamplingPolicy.Accuracy accuracy) {
+        switch (accuracy) {
+            case HIGH: return Priority.PRIORITY_HIGH_ACCURACY;
+            case LOW_POWER: return Priority.PRIORITY_LOW_POWER;
+            default: return Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.kobha.ourmap;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps one Marker per key and moves it in place, instead of clearing the map and adding new
+ * markers on every update. Calls that don't change anything never reach the map.
+ */
+public class MarkerLayer {
+
+    public static final String SELF = "self";
+    public static final String PICKUP = "pickup";
+    public static final String DROP = "drop";
+
+    private final GoogleMap map;
+    private final Map<String, Marker> markers = new HashMap<>();
+
+    public MarkerLayer(GoogleMap map) {
+        this.map = map;
+    }
+
+    public Marker show(String key, LatLng position, String title) {
+        return show(key, position, title, Float.NaN);
+    }
+
+    public Marker show(String key, LatLng position, String title, float hue) {
+        Marker marker = markers.get(key);
+        if (marker == null) {
+            MarkerOptions options = new MarkerOptions().position(position).title(title);
+            if (!Float.isNaN(hue)) {
+                options.icon(BitmapDescriptorFactory.defaultMarker(hue));
+            }
+            marker = map.addMarker(options);
+            if (marker != null) {
+                markers.put(key, marker);
+            }
+            return marker;
+        }
+
+        if (!marker.getPosition().equals(position)) {
+            marker.setPosition(position);
+        }
+        if (title != null && !title.equals(marker.getTitle())) {
+            marker.setTitle(title);
+        }
+        return marker;
+    }
+
+    public Marker get(String key) {
+        return markers.get(key);
+    }
+
+    public void remove(String key) {
+        Marker marker = markers.remove(key);
+        if (marker != null) {
+            marker.remove();
+        }
+    }
+
+    /** Removes every marker except the given keys. */
+    public void retainOnly(String... keys) {
+        Iterator<Map.Entry<String, Marker>> it = markers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Marker> entry = it.next();
+            if (!contains(keys, entry.getKey())) {
+                entry.getValue().remove();
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Marker marker : markers.values()) {
+            marker.remove();
+        }
+        markers.clear();
+    }
+
+    private static boolean contains(String[] keys, String key) {
+        for (String k : keys) {
+            if (k.equals(key)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,114 @@
+package com.kobha.ourmap;
+
+import android.content.Context;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
+import com.android.volley.toolbox.JsonObjectRequest;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * App-wide HTTP stack: one Volley RequestQueue with a small fixed thread pool and an HTTP disk
+ * cache, created on first use and kept for the life of the process.
+ *
+ * Identical GETs issued while one is already in flight share that request. Callers pass a tag
+ * (usually the Activity) and call {@link #cancelAll(Object)} from onDestroy, which drops their
+ * callbacks and cancels the underlying request once nobody is waiting for it. The tag stays with
+ * the caller's callbacks, not the Volley request, since a shared request serves several callers.
+ */
+public final class NetworkStack {
+
+    private static final int THREAD_POOL_SIZE = 2;
+    private static final int DISK_CACHE_BYTES = 5 * 1024 * 1024;
+
+    private static NetworkStack instance;
+
+    private final RequestQueue queue;
+    private final Map<String, InFlight> inFlight = new HashMap<>();
+
+    private NetworkStack(Context appContext) {
+        File cacheDir = new File(appContext.getCacheDir(), "http");
+        queue = new RequestQueue(new DiskBasedCache(cacheDir, DISK_CACHE_BYTES),
+                new BasicNetwork(new HurlStack()), THREAD_POOL_SIZE);
+        queue.start();
+    }
+
+    public static synchronized NetworkStack get(Context context) {
+        if (instance == null) {
+            instance = new NetworkStack(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public RequestQueue getQueue() {
+        return queue;
+    }
+
+    public synchronized void getJson(String url, Object tag,
+                                     Response.Listener<JSONObject> listener,
+                                     Response.ErrorListener errorListener) {
+        InFlight pending = inFlight.get(url);
+        if (pending != null) {
+            pending.waiters.add(new Waiter(tag, listener, errorListener));
+            return;
+        }
+
+        InFlight request = new InFlight();
+        request.waiters.add(new Waiter(tag, listener, errorListener));
+        request.request = new JsonObjectRequest(Request.Method.GET, url, null,
+                response -> {
+                    for (Waiter waiter : finish(url)) waiter.listener.onResponse(response);
+                },
+                error -> {
+                    for (Waiter waiter : finish(url)) waiter.errorListener.onErrorResponse(error);
+                });
+        inFlight.put(url, request);
+        queue.add(request.request);
+    }
+
+    public synchronized void cancelAll(Object tag) {
+        Iterator<InFlight> it = inFlight.values().iterator();
+        while (it.hasNext()) {
+            InFlight request = it.next();
+            request.waiters.removeIf(waiter -> waiter.tag == tag);
+            if (request.waiters.isEmpty()) {
+                request.request.cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized List<Waiter> finish(String url) {
+        InFlight request = inFlight.remove(url);
+        return request != null ? request.waiters : new ArrayList<>();
+    }
+
+    private static final class InFlight {
+        final List<Waiter> waiters = new ArrayList<>();
+        Request<JSONObject> request;
+    }
+
+    private static final class Waiter {
+        final Object tag;
+        final Response.Listener<JSONObject> listener;
+        final Response.ErrorListener errorListener;
+
+        Waiter(Object tag, Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
+            this.tag = tag;
+            this.listener = listener;
+            this.errorListener = errorListener;
+        }
+    }
+}
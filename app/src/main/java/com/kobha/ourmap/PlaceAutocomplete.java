@@ -0,0 +1,234 @@
+package com.kobha.ourmap;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
+import android.widget.Filter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Type-ahead suggestions for the pickup and drop fields.
+ *
+ * Every keystroke is answered from a local {@link PlaceIndex} filled with the addresses the
+ * user has already ridden from or to (the {@link GeocodeCache}) and an optional city POI file.
+ * Only when the local index has too few matches and typing pauses does a remote Geocoder
+ * lookup run; its results go into the index too, so the same prefix never goes remote twice.
+ * Picking a suggestion stores its coordinates in the geocode cache, so requesting the ride
+ * needs no geocoding at all.
+ */
+public class PlaceAutocomplete {
+
+    public static final int MAX_SUGGESTIONS = 5;
+    public static final long REMOTE_DEBOUNCE_MILLIS = 400;
+    public static final int REMOTE_MIN_CHARS = 3;
+
+    private static final String POI_FILE = "places.tsv";
+    private static final long POI_REFRESH_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final double REMOTE_WEIGHT = 0;
+
+    private final Context appContext;
+    private final GeocodeCache geocodeCache;
+    private final Geocoder geocoder;
+    private final PlaceIndex index = new PlaceIndex();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<String> remoteQueried = ConcurrentHashMap.newKeySet();
+
+    public PlaceAutocomplete(Context context, GeocodeCache geocodeCache) {
+        this.appContext = context.getApplicationContext();
+        this.geocodeCache = geocodeCache;
+        this.geocoder = new Geocoder(appContext, Locale.getDefault());
+    }
+
+    /** Fills the index from history and the POI file, refreshing the file if {@code poiUrl} is set. */
+    public void load(String poiUrl) {
+        executor.execute(() -> {
+            for (GeocodeCache.Entry entry : geocodeCache.entries()) {
+                index.add(entry.address, entry.lat, entry.lng, PlaceIndex.HISTORY_WEIGHT);
+            }
+
+            File poiFile = new File(appContext.getFilesDir(), POI_FILE);
+            if (poiUrl != null && !poiUrl.isEmpty()
+                    && System.currentTimeMillis() - poiFile.lastModified() > POI_REFRESH_MILLIS) {
+                download(poiUrl, poiFile);
+            }
+            if (poiFile.exists()) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(poiFile), StandardCharsets.UTF_8))) {
+                    index.addAll(reader);
+                } catch (IOException ignored) {
+                    // History and remote lookups still work without the POI file.
+                }
+            }
+        });
+    }
+
+    public void attach(AutoCompleteTextView view) {
+        SuggestionAdapter adapter = new SuggestionAdapter(view.getContext());
+        view.setAdapter(adapter);
+        view.setThreshold(1);
+        view.setOnItemClickListener((parent, v, position, id) -> {
+            PlaceIndex.Place place = adapter.getItem(position);
+            if (place != null) {
+                recordUse(place.name, place.lat, place.lng);
+            }
+        });
+
+        Runnable remoteLookup = () -> lookupRemote(view, adapter, view.getText().toString());
+        view.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mainHandler.removeCallbacks(remoteLookup);
+                if (view.hasFocus() && s.length() >= REMOTE_MIN_CHARS) {
+                    mainHandler.postDelayed(remoteLookup, REMOTE_DEBOUNCE_MILLIS);
+                }
+            }
+        });
+    }
+
+    /** Called once an address has actually been used for a ride, so it ranks first next time. */
+    public void recordUse(String address, double lat, double lng) {
+        if (GeocodeCache.parseCoordinates(address) != null) return;
+        executor.execute(() -> {
+            index.add(address, lat, lng, PlaceIndex.HISTORY_WEIGHT);
+            geocodeCache.put(address, lat, lng);
+        });
+    }
+
+    public void shutdown() {
+        mainHandler.removeCallbacksAndMessages(null);
+        executor.shutdownNow();
+    }
+
+    private void lookupRemote(AutoCompleteTextView view, SuggestionAdapter adapter, String query) {
+        if (GeocodeCache.parseCoordinates(query) != null) return;
+        String key = GeocodeCache.normalize(query);
+        if (!remoteQueried.add(key)) return;
+
+        executor.execute(() -> {
+            List<PlaceIndex.Place> local = new ArrayList<>();
+            index.search(query, MAX_SUGGESTIONS, local);
+            if (local.size() >= MAX_SUGGESTIONS) return;
+
+            List<Address> addresses;
+            try {
+                addresses = geocoder.getFromLocationName(query, MAX_SUGGESTIONS);
+            } catch (IOException e) {
+                remoteQueried.remove(key);
+                return;
+            }
+            if (addresses == null || addresses.isEmpty()) return;
+            for (Address address : addresses) {
+                String name = address.getMaxAddressLineIndex() >= 0
+                        ? address.getAddressLine(0) : address.getFeatureName();
+                if (name != null) {
+                    index.add(name, address.getLatitude(), address.getLongitude(), REMOTE_WEIGHT);
+                }
+            }
+
+            mainHandler.post(() -> {
+                if (view.hasFocus() && query.equals(view.getText().toString())) {
+                    adapter.getFilter().filter(query, view);
+                }
+            });
+        });
+    }
+
+    private static void download(String url, File target) {
+        File tmp = new File(target.getPath() + ".tmp");
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) return;
+            try (InputStream in = connection.getInputStream(); OutputStream out = new FileOutputStream(tmp)) {
+                byte[] buffer = new byte[16 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            tmp.delete();
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    /** The filter runs on the widget's worker thread; an index lookup is a few microseconds. */
+    private final class SuggestionAdapter extends ArrayAdapter<PlaceIndex.Place> {
+
+        private final Filter filter = new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence constraint) {
+                List<PlaceIndex.Place> matches = new ArrayList<>();
+                if (constraint != null) {
+                    index.search(constraint, MAX_SUGGESTIONS, matches);
+                }
+                FilterResults results = new FilterResults();
+                results.values = matches;
+                results.count = matches.size();
+                return results;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void publishResults(CharSequence constraint, FilterResults results) {
+                setNotifyOnChange(false);
+                clear();
+                addAll((List<PlaceIndex.Place>) results.values);
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public CharSequence convertResultToString(Object resultValue) {
+                return ((PlaceIndex.Place) resultValue).name;
+            }
+        };
+
+        SuggestionAdapter(Context context) {
+            super(context, android.R.layout.simple_dropdown_item_1line);
+        }
+
+        @Override
+        public Filter getFilter() {
+            return filter;
+        }
+    }
+}
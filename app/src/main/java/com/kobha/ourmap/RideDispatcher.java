@@ -0,0 +1,94 @@
+package com.kobha.ourmap;
+
+import androidx.annotation.NonNull;
+
+import com.firebase.geofire.GeoFire;
+import com.firebase.geofire.GeoLocation;
+import com.firebase.geofire.GeoQuery;
+import com.firebase.geofire.GeoQueryEventListener;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.Map;
+
+/**
+ * Offers a new ride request to the closest drivers only, instead of every online driver
+ * picking it up from a broadcast "status == pending" query.
+ *
+ * Candidates come from a GeoFire radius query over locations/Drivers around the pickup and are
+ * kept in a {@link DriverSpatialIndex}. The radius grows as {@link DispatchPolicy} says until
+ * enough drivers are found, then the nearest ones get a driverOffers/{driverId}/{customerId}
+ * node through {@link RideStateMachine#offer}.
+ */
+public class RideDispatcher {
+
+    public interface Listener {
+        void onOffered(int driverCount);
+        void onNoDriversFound();
+        void onError(String message);
+    }
+
+    private final MultiPathWriter writer;
+    private final GeoFire driverGeoFire;
+
+    public RideDispatcher(MultiPathWriter writer) {
+        this.writer = writer;
+        driverGeoFire = new GeoFire(FirebaseDatabase.getInstance().getReference("locations/Drivers"));
+    }
+
+    public void dispatch(String customerId, double pickupLat, double pickupLng,
+                         double dropLat, double dropLng, Listener listener) {
+        DriverSpatialIndex candidates = new DriverSpatialIndex();
+        GeoQuery query = driverGeoFire.queryAtLocation(new GeoLocation(pickupLat, pickupLng),
+                DispatchPolicy.INITIAL_RADIUS_KM);
+
+        query.addGeoQueryEventListener(new GeoQueryEventListener() {
+            @Override
+            public void onKeyEntered(String key, GeoLocation location) {
+                candidates.update(key, location.latitude, location.longitude);
+            }
+
+            @Override
+            public void onKeyExited(String key) {
+                candidates.remove(key);
+            }
+
+            @Override
+            public void onKeyMoved(String key, GeoLocation location) {
+                candidates.update(key, location.latitude, location.longitude);
+            }
+
+            @Override
+            public void onGeoQueryReady() {
+                double nextRadius = DispatchPolicy.nextRadiusKm(query.getRadius(), candidates.size());
+                if (nextRadius > 0) {
+                    query.setRadius(nextRadius);
+                    return;
+                }
+                query.removeAllListeners();
+
+                DriverSpatialIndex.Result nearest = new DriverSpatialIndex.Result(DispatchPolicy.MAX_OFFERS);
+                Map<String, Object> offers = DispatchPolicy.offers(customerId, candidates, nearest,
+                        pickupLat, pickupLng, dropLat, dropLng);
+                if (offers == null) {
+                    listener.onNoDriversFound();
+                    return;
+                }
+                int offered = nearest.size();
+                writer.updateChildren(offers, error -> {
+                    if (error != null) {
+                        listener.onError(error);
+                    } else {
+                        listener.onOffered(offered);
+                    }
+                });
+            }
+
+            @Override
+            public void onGeoQueryError(@NonNull DatabaseError error) {
+                query.removeAllListeners();
+                listener.onError(error.getMessage());
+            }
+        });
+    }
+}
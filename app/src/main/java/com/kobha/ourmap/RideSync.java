@@ -0,0 +1,51 @@
+package com.kobha.ourmap;
+
+import android.content.Context;
+
+import java.io.File;
+
+/**
+ * Process-wide {@link RideStore}, {@link SyncQueue} and {@link LocationPublisher} for the
+ * signed-in user, so the screens and the location service share one journal and one publisher,
+ * and an Activity restart doesn't resend writes that are still in flight. Pending writes from an earlier run are replayed when it is created.
+ */
+public final class RideSync {
+
+    private static RideSync instance;
+
+    private final String ownerId;
+    private final RideStore store;
+    private final SyncQueue queue;
+    private LocationPublisher locationPublisher;
+
+    private RideSync(Context appContext, String ownerId) {
+        this.ownerId = ownerId;
+        this.store = new RideStore(new File(appContext.getFilesDir(), "rides-" + ownerId + ".journal"));
+        this.queue = new SyncQueue(store, new FirebaseMultiPathWriter(), ownerId);
+        queue.replayPending();
+    }
+
+    public static synchronized RideSync get(Context context, String ownerId) {
+        if (instance == null || !instance.ownerId.equals(ownerId)) {
+            if (instance != null) instance.store.close();
+            instance = new RideSync(context.getApplicationContext(), ownerId);
+        }
+        return instance;
+    }
+
+    public RideStore getStore() {
+        return store;
+    }
+
+    public SyncQueue getQueue() {
+        return queue;
+    }
+
+    /** Shared by the driver screen and {@link DriverLocationService}, created on first use. */
+    public synchronized LocationPublisher getLocationPublisher() {
+        if (locationPublisher == null) {
+            locationPublisher = new LocationPublisher(ownerId, new FirebaseMultiPathWriter());
+        }
+        return locationPublisher;
+    }
+}
@@ -0,0 +1,134 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One surge batch of 1,000 requests, costs being pickup distance in meters. "dense" has every
+ * pair against 1,000 drivers; "sparse" only each request's 20 nearest of them. "worker" is the
+ * matrix {@link DispatchWorker} builds: 3,000 drivers on the road, each request's 20 nearest, a
+ * couple of which already let it pass and are forbidden, and only the drivers some request can
+ * reach as columns.
+ */
+@State(Scope.Benchmark)
+public class BatchMatcherBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int CANDIDATES = DispatchWorker.CANDIDATES;
+    private static final int DECLINED = 2;
+
+    @Param({"dense", "sparse", "worker"})
+    String shape;
+
+    private double[] costs;
+    private int cols;
+    private int[][] candidateCols;
+    private double[][] candidateCosts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        int drivers = shape.equals("worker") ? 3 * ROWS : ROWS;
+        double[] requestLat = new double[ROWS];
+        double[] requestLng = new double[ROWS];
+        double[] driverLat = new double[drivers];
+        double[] driverLng = new double[drivers];
+        for (int i = 0; i < ROWS; i++) {
+            requestLat[i] = 12.9716 + (random.nextDouble() - 0.5) * 0.2;
+            requestLng[i] = 77.5946 + (random.nextDouble() - 0.5) * 0.2;
+        }
+        for (int i = 0; i < drivers; i++) {
+            driverLat[i] = 12.9716 + (random.nextDouble() - 0.5) * 0.2;
+            driverLng[i] = 77.5946 + (random.nextDouble() - 0.5) * 0.2;
+        }
+
+        double[][] distances = new double[ROWS][drivers];
+        for (int r = 0; r < ROWS; r++) {
+            for (int d = 0; d < drivers; d++) {
+                distances[r][d] = GeoMath.distanceMeters(requestLat[r], requestLng[r], driverLat[d], driverLng[d]);
+            }
+        }
+
+        if (shape.equals("dense")) {
+            cols = drivers;
+            costs = new double[ROWS * cols];
+            for (int r = 0; r < ROWS; r++) System.arraycopy(distances[r], 0, costs, r * cols, cols);
+        } else {
+            // Each request's nearest drivers, the way the worker numbers them: columns in order of
+            // first appearance, and declined candidates left out.
+            Map<Integer, Integer> columnOf = new HashMap<>();
+            int[][] nearest = new int[ROWS][];
+            for (int r = 0; r < ROWS; r++) {
+                nearest[r] = nearest(distances[r], CANDIDATES);
+                int declined = shape.equals("worker") ? DECLINED : 0;
+                for (int i = declined; i < CANDIDATES; i++) {
+                    int d = nearest[r][i];
+                    if (!columnOf.containsKey(d)) columnOf.put(d, columnOf.size());
+                }
+            }
+            cols = columnOf.size();
+            costs = new double[ROWS * cols];
+            Arrays.fill(costs, BatchMatcher.NO_EDGE);
+            for (int r = 0; r < ROWS; r++) {
+                int declined = shape.equals("worker") ? DECLINED : 0;
+                for (int i = declined; i < CANDIDATES; i++) {
+                    int d = nearest[r][i];
+                    costs[r * cols + columnOf.get(d)] = distances[r][d];
+                }
+            }
+        }
+
+        candidateCols = new int[ROWS][];
+        candidateCosts = new double[ROWS][];
+        for (int r = 0; r < ROWS; r++) {
+            int finite = 0;
+            for (int c = 0; c < cols; c++) {
+                if (costs[r * cols + c] != BatchMatcher.NO_EDGE) finite++;
+            }
+            candidateCols[r] = new int[finite];
+            candidateCosts[r] = new double[finite];
+            int i = 0;
+            for (int c = 0; c < cols; c++) {
+                if (costs[r * cols + c] == BatchMatcher.NO_EDGE) continue;
+                candidateCols[r][i] = c;
+                candidateCosts[r][i++] = costs[r * cols + c];
+            }
+        }
+    }
+
+    /** Indexes of the {@code k} smallest values, in index order, so the declined ones are random. */
+    private static int[] nearest(double[] values, int k) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] indexes = new int[k];
+        int found = 0;
+        for (int i = 0; i < values.length && found < k; i++) {
+            if (values[i] <= sorted[k - 1]) indexes[found++] = i;
+        }
+        return indexes;
+    }
+
+    @Benchmark
+    public BatchMatcher.Assignment hungarian() {
+        return BatchMatcher.solve(costs, ROWS, cols, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public BatchMatcher.Assignment greedy() {
+        return BatchMatcher.greedy(costs, ROWS, cols);
+    }
+
+    /** Greedy straight from the candidate lists, as the worker does for batches past its matrix limit. */
+    @Benchmark
+    public BatchMatcher.Assignment sparseGreedy() {
+        return BatchMatcher.greedy(candidateCols, candidateCosts, cols);
+    }
+}
@@ -0,0 +1,66 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * One ride through the dispatch server's worker: the pending request is offered, accepted
+ * and completed, so the drivers it held are free again for the next one. Writes complete
+ * immediately; this is the worker's own cost per ride, not the database's.
+ */
+@State(Scope.Thread)
+public class DispatchWorkerBenchmark {
+
+    private static final int PICKUPS = 256;
+
+    @Param({"1000", "10000"})
+    int drivers;
+
+    private DispatchWorker worker;
+    private final RideRequest[] pending = new RideRequest[PICKUPS];
+    private final RideRequest[] completed = new RideRequest[PICKUPS];
+    private String[] driverIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        worker = new DispatchWorker((updates, callback) -> {
+            if (callback != null) callback.onComplete(null);
+        }, DriverScorer.DEFAULT);
+        driverIds = new String[drivers];
+        for (int i = 0; i < drivers; i++) {
+            driverIds[i] = "driver" + i;
+            worker.onDriverLocation(driverIds[i], 12.9716 + (random.nextDouble() - 0.5) * 0.3,
+                    77.5946 + (random.nextDouble() - 0.5) * 0.3);
+        }
+        for (int i = 0; i < PICKUPS; i++) {
+            double lat = 12.9716 + (random.nextDouble() - 0.5) * 0.3;
+            double lng = 77.5946 + (random.nextDouble() - 0.5) * 0.3;
+            pending[i] = RideRequest.pending(lat, lng, 12.9716, 77.5946);
+            completed[i] = new RideRequest(lat, lng, 12.9716, 77.5946, RideState.COMPLETED, null,
+                    Collections.<String>emptyList());
+        }
+    }
+
+    @Benchmark
+    public long offerAcceptComplete() {
+        int i = next++ & (PICKUPS - 1);
+        RideRequest request = pending[i];
+        worker.onRideRequest("customer", request, next);
+        String driverId = driverIds[next % drivers];
+        worker.onRideRequest("customer", new RideRequest(request.pickupLat, request.pickupLng,
+                request.dropLat, request.dropLng, RideState.ACCEPTED, driverId,
+                Collections.<String>emptyList()), next);
+        worker.onRideRequest("customer", completed[i], next);
+        // Drains the timer's cancelled offer timeouts.
+        worker.tick(next);
+        return worker.getOffersWritten();
+    }
+}
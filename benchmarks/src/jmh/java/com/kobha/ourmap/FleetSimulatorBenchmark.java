@@ -0,0 +1,31 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Two simulated minutes of a 200-driver fleet in a 3 km radius, once per dispatch mode: what
+ * dispatch, acceptance races and the rules check cost end to end. The match latency, abort rate
+ * and database load of a run are in the returned {@link FleetReport}. Broadcast fans every
+ * request out to every driver, so keep the fleet small or it runs out of heap.
+ */
+@State(Scope.Thread)
+public class FleetSimulatorBenchmark {
+
+    @Param({"NEAREST", "BROADCAST"})
+    FleetSimulator.DispatchMode dispatchMode;
+
+    @Benchmark
+    public FleetReport twoMinutes() {
+        FleetSimulator.Config config = new FleetSimulator.Config();
+        config.drivers = 200;
+        config.customers = 100;
+        config.areaRadiusMeters = 3_000;
+        config.requestsPerSecond = 0.5;
+        config.durationMillis = 2 * 60_000;
+        config.dispatchMode = dispatchMode;
+        return new FleetSimulator(config).run();
+    }
+}
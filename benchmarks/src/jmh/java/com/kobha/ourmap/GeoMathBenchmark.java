@@ -0,0 +1,43 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/** Haversine distance and GeoFire geohashes, cycling through a fixed set of points in a city. */
+@State(Scope.Thread)
+public class GeoMathBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private final double[] lats = new double[POINTS];
+    private final double[] lngs = new double[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 12.9716 + (random.nextDouble() - 0.5) * 0.2;
+            lngs[i] = 77.5946 + (random.nextDouble() - 0.5) * 0.2;
+        }
+    }
+
+    @Benchmark
+    public double distanceMeters() {
+        int i = next;
+        int j = (i + 1) & (POINTS - 1);
+        next = j;
+        return GeoMath.distanceMeters(lats[i], lngs[i], lats[j], lngs[j]);
+    }
+
+    @Benchmark
+    public String geoHash() {
+        int i = next;
+        next = (i + 1) & (POINTS - 1);
+        return GeoMath.geoHash(lats[i], lngs[i], GeoMath.GEOFIRE_HASH_PRECISION);
+    }
+}
@@ -0,0 +1,56 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * One driver fix through the location stage and the publisher, on a synthetic noisy drive along
+ * a route with stops: raw fixes published as they come, filtered, and filtered then snapped to
+ * the route. The drive starts over with a fresh stage when it runs out.
+ */
+@State(Scope.Thread)
+public class LocationStageBenchmark {
+
+    private static final int ROUTE_POINTS = 2_000;
+    private static final int FIXES = 20_000;
+
+    @Param({"raw", "filtered", "snapped"})
+    String stage;
+
+    private PolylinePath route;
+    private List<LocationTrace.Fix> fixes;
+    private final double[] out = new double[3];
+    private LocationStage locationStage;
+    private LocationPublisher publisher;
+    /** Paths written, so the publisher's updates aren't optimized away. */
+    private long paths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        route = SyntheticTraces.route(1, ROUTE_POINTS);
+        fixes = SyntheticTraces.stopAndGo(route, FIXES, 10, 1).fixes();
+        startDrive();
+    }
+
+    private void startDrive() {
+        next = 0;
+        publisher = new LocationPublisher("d1", (updates, callback) -> paths += updates.size());
+        locationStage = stage.equals("raw") ? null : new LocationStage();
+        if (stage.equals("snapped")) locationStage.setRoute(route);
+    }
+
+    @Benchmark
+    public boolean fix() {
+        if (next == fixes.size()) startDrive();
+        LocationTrace.Fix fix = fixes.get(next++);
+        if (locationStage == null) return publisher.publish(fix.lat, fix.lng, fix.timeMillis);
+        return locationStage.process(fix.lat, fix.lng, fix.accuracyMeters, fix.timeMillis, out)
+                && publisher.publish(out[0], out[1], fix.timeMillis);
+    }
+}
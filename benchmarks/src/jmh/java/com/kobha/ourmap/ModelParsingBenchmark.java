@@ -0,0 +1,83 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turning a snapshot's {@code getValue()} into the ride models. The inputs are shaped the way
+ * the Firebase client hands them over: maps of Double, Long, String and List values.
+ */
+@State(Scope.Benchmark)
+public class ModelParsingBenchmark {
+
+    private Object requestValue;
+    private Object offerValue;
+    private Object responseValue;
+    private Object locationValue;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> offeredTo = new HashMap<>();
+        offeredTo.put("driverA", true);
+        offeredTo.put("driverB", true);
+        offeredTo.put("driverC", true);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("pickup_lat", 12.9716);
+        request.put("pickup_lng", 77.5946);
+        request.put("drop_lat", 12.9352);
+        request.put("drop_lng", 77.6245);
+        request.put("status", RideState.OFFERED.wireName());
+        request.put("offered_to", offeredTo);
+        requestValue = request;
+
+        Map<String, Object> offer = new HashMap<>();
+        offer.put("pickup_lat", 12.9716);
+        offer.put("pickup_lng", 77.5946);
+        offer.put("drop_lat", 12.9352);
+        offer.put("drop_lng", 77.6245);
+        offer.put("distance_m", 1250L);
+        offer.put("offered_to", offeredTo);
+        offerValue = offer;
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("driverId", "driverA");
+        response.put("driverEmail", "driver@example.com");
+        response.put("driverName", "Driver A");
+        response.put("driver_lat", 12.9701);
+        response.put("driver_lng", 77.5912);
+        response.put("status", RideState.IN_PROGRESS.wireName());
+        responseValue = response;
+
+        Map<String, Object> location = new HashMap<>();
+        location.put("g", "tdr1wxyp9f");
+        location.put("l", Arrays.<Object>asList(12.9701, 77.5912));
+        locationValue = location;
+    }
+
+    @Benchmark
+    public RideRequest rideRequest() {
+        return RideRequest.fromValue(requestValue);
+    }
+
+    @Benchmark
+    public RideOffer rideOffer() {
+        return RideOffer.fromValue(offerValue);
+    }
+
+    @Benchmark
+    public RideResponse rideResponse() {
+        return RideResponse.fromValue(responseValue);
+    }
+
+    @Benchmark
+    public DriverLocation driverLocation() {
+        return DriverLocation.fromValue(locationValue);
+    }
+}
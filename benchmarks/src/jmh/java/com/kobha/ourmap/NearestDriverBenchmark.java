@@ -0,0 +1,90 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Picking the drivers to offer a ride to: the grid index against checking the distance to
+ * every driver, as GeoFire key events did before.
+ */
+@State(Scope.Thread)
+public class NearestDriverBenchmark {
+
+    private static final int QUERIES = 256;
+    private static final double RADIUS_METERS = DispatchPolicy.MAX_RADIUS_KM * 1000;
+
+    @Param({"1000", "10000"})
+    int drivers;
+
+    private final DriverSpatialIndex index = new DriverSpatialIndex();
+    private final DriverSpatialIndex.Result result = new DriverSpatialIndex.Result(DispatchPolicy.MAX_OFFERS);
+    private final double[] queryLats = new double[QUERIES];
+    private final double[] queryLngs = new double[QUERIES];
+    private String[] ids;
+    private double[] lats;
+    private double[] lngs;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        ids = new String[drivers];
+        lats = new double[drivers];
+        lngs = new double[drivers];
+        for (int i = 0; i < drivers; i++) {
+            ids[i] = "driver" + i;
+            lats[i] = 12.9716 + (random.nextDouble() - 0.5) * 0.3;
+            lngs[i] = 77.5946 + (random.nextDouble() - 0.5) * 0.3;
+            index.update(ids[i], lats[i], lngs[i]);
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            queryLats[i] = 12.9716 + (random.nextDouble() - 0.5) * 0.3;
+            queryLngs[i] = 77.5946 + (random.nextDouble() - 0.5) * 0.3;
+        }
+    }
+
+    @Benchmark
+    public DriverSpatialIndex.Result spatialIndex() {
+        int q = nextQuery();
+        index.nearest(queryLats[q], queryLngs[q], RADIUS_METERS, result);
+        return result;
+    }
+
+    @Benchmark
+    public String[] linearScan() {
+        int q = nextQuery();
+        String[] best = new String[DispatchPolicy.MAX_OFFERS];
+        double[] bestDistances = new double[DispatchPolicy.MAX_OFFERS];
+        int found = 0;
+        for (int i = 0; i < drivers; i++) {
+            double d = GeoMath.distanceMeters(queryLats[q], queryLngs[q], lats[i], lngs[i]);
+            if (d > RADIUS_METERS || (found == best.length && d >= bestDistances[found - 1])) continue;
+            int at = found < best.length ? found++ : found - 1;
+            while (at > 0 && bestDistances[at - 1] > d) {
+                best[at] = best[at - 1];
+                bestDistances[at] = bestDistances[at - 1];
+                at--;
+            }
+            best[at] = ids[i];
+            bestDistances[at] = d;
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int moveDriver() {
+        int i = next++ % drivers;
+        lats[i] += 0.0001;
+        index.update(ids[i], lats[i], lngs[i]);
+        return i;
+    }
+
+    private int nextQuery() {
+        return next++ & (QUERIES - 1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The offer manager with tens of thousands of offers outstanding, their deadlines spread over
+ * one timeout. {@link #offerAndAccept} is a ride offered and taken on top of those;
+ * {@link #advanceTick} moves the clock one timer tick, expiring the offers due in it and
+ * re-offering them to the next candidate. Exhausted rides start over, so the load stays level.
+ */
+@State(Scope.Thread)
+public class OfferManagerBenchmark {
+
+    private static final long TICK_MILLIS = 100;
+    private static final long TIMEOUT_MILLIS = OfferManager.DEFAULT_TIMEOUT_MILLIS;
+
+    @Param({"10000", "50000"})
+    int outstanding;
+
+    private HashedWheelTimer timer;
+    private OfferManager manager;
+    private final List<List<String>> candidates = new ArrayList<>();
+    private long now;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        timer = new HashedWheelTimer(TICK_MILLIS, 512);
+        manager = new OfferManager(timer, TIMEOUT_MILLIS, new OfferManager.Listener() {
+            @Override
+            public boolean onOffer(String rideId, String driverId, String previousDriverId, long nowMillis) {
+                return true;
+            }
+
+            @Override
+            public void onExhausted(String rideId, String lastDriverId, long nowMillis) {
+                manager.start(rideId, candidates.get(0), nowMillis);
+            }
+        });
+        Random random = new Random(1);
+        for (int i = 0; i < 64; i++) {
+            List<String> list = new ArrayList<>();
+            for (int c = 0; c < 5; c++) list.add("driver" + random.nextInt(10_000));
+            candidates.add(list);
+        }
+        timer.advance(0);
+        for (int i = 0; i < outstanding; i++) {
+            long startedAt = i * TIMEOUT_MILLIS / outstanding;
+            timer.advance(startedAt);
+            manager.start("ride" + i, candidates.get(i & 63), startedAt);
+        }
+        now = TIMEOUT_MILLIS;
+    }
+
+    @Benchmark
+    public boolean offerAndAccept() {
+        List<String> list = candidates.get(next++ & 63);
+        String rideId = "extra" + (next & 1023);
+        // Drains the cancelled timeouts now and then, as the worker's tick would.
+        if ((next & 1023) == 0) timer.advance(now);
+        manager.start(rideId, list, now);
+        return manager.accept(rideId, list.get(0));
+    }
+
+    @Benchmark
+    public int advanceTick() {
+        now += TICK_MILLIS;
+        return timer.advance(now);
+    }
+}
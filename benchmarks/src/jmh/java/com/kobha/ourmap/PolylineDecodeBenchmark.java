@@ -0,0 +1,73 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Decoding a Directions overview polyline: the buffer-based codec against the old decodePoly. */
+@State(Scope.Benchmark)
+public class PolylineDecodeBenchmark {
+
+    @Param({"200", "5000"})
+    int points;
+
+    private String encoded;
+    private PolylinePath buffer;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        PolylinePath path = new PolylinePath(points);
+        double lat = 12.9716, lng = 77.5946;
+        for (int i = 0; i < points; i++) {
+            lat += (random.nextDouble() - 0.5) * 0.001;
+            lng += (random.nextDouble() - 0.5) * 0.001;
+            path.add(lat, lng);
+        }
+        encoded = PolylineCodec.encode(path);
+        buffer = new PolylinePath(points);
+    }
+
+    @Benchmark
+    public PolylinePath decodeIntoReusedBuffer() {
+        return PolylineCodec.decode(encoded, buffer);
+    }
+
+    @Benchmark
+    public PolylinePath decode() {
+        return PolylineCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public List<double[]> legacyDecodePoly() {
+        return decodePoly(encoded);
+    }
+
+    /** Same algorithm and allocation pattern as the old CustomerMapActivity.decodePoly. */
+    private static List<double[]> decodePoly(String encoded) {
+        List<double[]> poly = new ArrayList<>();
+        int index = 0, len = encoded.length();
+        int lat = 0, lng = 0;
+
+        while (index < len) {
+            int b, shift = 0, result = 0;
+            do { b = encoded.charAt(index++) - 63; result |= (b & 0x1f) << shift; shift += 5; }
+            while (b >= 0x20);
+            lat += ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
+
+            shift = 0; result = 0;
+            do { b = encoded.charAt(index++) - 63; result |= (b & 0x1f) << shift; shift += 5; }
+            while (b >= 0x20);
+            lng += ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
+
+            poly.add(new double[]{lat / 1E5, lng / 1E5});
+        }
+        return poly;
+    }
+}
@@ -0,0 +1,50 @@
+package com.kobha.ourmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Building the multi-path updates for each ride transition. */
+@State(Scope.Thread)
+public class RideStateMachineBenchmark {
+
+    private static final List<String> DRIVERS = Arrays.asList("driverA", "driverB", "driverC");
+    private static final double[] DISTANCES = {450, 1200, 1900};
+
+    @Benchmark
+    public Map<String, Object> request() {
+        return RideStateMachine.request("customer", 12.9716, 77.5946, 12.9352, 77.6245);
+    }
+
+    @Benchmark
+    public Map<String, Object> offer() {
+        return new RideStateMachine("customer", RideState.PENDING)
+                .offer(DRIVERS, DISTANCES, 12.9716, 77.5946, 12.9352, 77.6245);
+    }
+
+    @Benchmark
+    public Map<String, Object> accept() {
+        return new RideStateMachine("customer", RideState.OFFERED)
+                .accept("driverA", "driver@example.com", "Driver A", 12.9701, 77.5912, DRIVERS);
+    }
+
+    /** Request through completion, committing each step as the driver screen does. */
+    @Benchmark
+    public int fullRide() {
+        int paths = RideStateMachine.request("customer", 12.9716, 77.5946, 12.9352, 77.6245).size();
+        RideStateMachine ride = new RideStateMachine("customer", RideState.PENDING);
+        paths += ride.offer(DRIVERS, DISTANCES, 12.9716, 77.5946, 12.9352, 77.6245).size();
+        ride.onCommitted(RideState.OFFERED);
+        paths += ride.accept("driverA", "driver@example.com", "Driver A", 12.9701, 77.5912, DRIVERS).size();
+        ride.onCommitted(RideState.ACCEPTED);
+        for (RideState next : new RideState[]{RideState.ARRIVING, RideState.IN_PROGRESS, RideState.COMPLETED}) {
+            paths += ride.advance(next).size();
+            ride.onCommitted(next);
+        }
+        return paths;
+    }
+}
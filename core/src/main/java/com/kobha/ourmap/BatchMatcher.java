@@ -0,0 +1,269 @@
+package com.kobha.ourmap;
+
+import java.util.Arrays;
+
+/**
+ * Min-cost assignment of rides (rows) to drivers (columns), for matching a whole window of
+ * requests at once instead of first come, first served.
+ *
+ * {@link #solve} runs the Hungarian algorithm with row-by-row augmentation (O(n^2 m)), which is
+ * exact. It checks its time budget after every row; once over budget the rows assigned so far
+ * are kept and the rest are filled in by {@link #greedy}, so a surge never blows the dispatch
+ * window. Pairs that can't be matched cost {@link #NO_EDGE}; rows or columns left without a
+ * partner are unassigned.
+ *
+ * Costs are a row-major {@code rows * cols} array, except for the sparse {@link #greedy(int[][],
+ * double[][], int)}, which takes each row's candidate columns and their costs.
+ */
+public final class BatchMatcher {
+
+    public static final double NO_EDGE = Double.POSITIVE_INFINITY;
+
+    public static final class Assignment {
+        private final int[] colForRow;
+        private final double totalCost;
+        private final int matched;
+        private final boolean optimal;
+
+        Assignment(int[] colForRow, double totalCost, int matched, boolean optimal) {
+            this.colForRow = colForRow;
+            this.totalCost = totalCost;
+            this.matched = matched;
+            this.optimal = optimal;
+        }
+
+        /** The column matched to {@code row}, or -1. */
+        public int colForRow(int row) {
+            return colForRow[row];
+        }
+
+        public int rows() {
+            return colForRow.length;
+        }
+
+        public int matched() {
+            return matched;
+        }
+
+        /** Sum of the matched pairs' costs. */
+        public double totalCost() {
+            return totalCost;
+        }
+
+        /** False when the budget ran out and part of the assignment is greedy. */
+        public boolean isOptimal() {
+            return optimal;
+        }
+    }
+
+    private BatchMatcher() {
+    }
+
+    /** Minimum total cost with as many pairs as possible, or greedy for what the budget didn't cover. */
+    public static Assignment solve(double[] costs, int rows, int cols, long budgetNanos) {
+        checkSize(costs, rows, cols);
+        long startNanos = System.nanoTime();
+        int[] colForRow = new int[rows];
+        Arrays.fill(colForRow, -1);
+        boolean complete;
+        if (rows <= cols) {
+            complete = hungarian(costs, rows, cols, startNanos, budgetNanos, colForRow) == rows;
+        } else {
+            // The augmentation needs rows <= cols; solve the transpose and turn it back.
+            double[] transposed = new double[costs.length];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) transposed[c * rows + r] = costs[r * cols + c];
+            }
+            int[] rowForCol = new int[cols];
+            Arrays.fill(rowForCol, -1);
+            complete = hungarian(transposed, cols, rows, startNanos, budgetNanos, rowForCol) == cols;
+            for (int c = 0; c < cols; c++) {
+                if (rowForCol[c] >= 0) colForRow[rowForCol[c]] = c;
+            }
+        }
+        return complete ? total(costs, cols, colForRow, true) : fillGreedy(costs, rows, cols, colForRow);
+    }
+
+    /** Cheapest pairs first until no row or column is left; fast, and usually close. */
+    public static Assignment greedy(double[] costs, int rows, int cols) {
+        checkSize(costs, rows, cols);
+        int[] colForRow = new int[rows];
+        Arrays.fill(colForRow, -1);
+        return fillGreedy(costs, rows, cols, colForRow);
+    }
+
+    /**
+     * {@link #greedy} for rows that each list only their candidate columns and costs, for batches
+     * whose dense matrix would be too large to build.
+     */
+    public static Assignment greedy(int[][] candidateCols, double[][] candidateCosts, int cols) {
+        int rows = candidateCols.length;
+        int pairs = 0;
+        for (int[] row : candidateCols) pairs += row.length;
+
+        // As in fillGreedy, with the row and the index into it in place of a dense cell.
+        long[] keys = new long[pairs];
+        int open = 0;
+        int[] rowOf = new int[pairs];
+        int[] indexOf = new int[pairs];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < candidateCols[r].length; i++) {
+                double cost = candidateCosts[r][i];
+                if (cost == NO_EDGE) continue;
+                rowOf[open] = r;
+                indexOf[open] = i;
+                int bits = Float.floatToIntBits((float) cost);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                keys[open] = ((long) bits << 32) | open;
+                open++;
+            }
+        }
+        Arrays.sort(keys, 0, open);
+
+        int[] colForRow = new int[rows];
+        Arrays.fill(colForRow, -1);
+        boolean[] colTaken = new boolean[cols];
+        double total = 0;
+        int matched = 0;
+        for (int k = 0; k < open; k++) {
+            int pair = (int) keys[k];
+            int r = rowOf[pair];
+            int c = candidateCols[r][indexOf[pair]];
+            if (colForRow[r] >= 0 || colTaken[c]) continue;
+            colForRow[r] = c;
+            colTaken[c] = true;
+            total += candidateCosts[r][indexOf[pair]];
+            matched++;
+        }
+        return new Assignment(colForRow, total, matched, false);
+    }
+
+    /**
+     * Row-by-row Hungarian with potentials, for {@code n <= m}. Fills {@code colForRow} for the
+     * rows it got to within the budget and returns how many that was.
+     */
+    private static int hungarian(double[] costs, int n, int m, long startNanos, long budgetNanos,
+                                 int[] colForRow) {
+        // Forbidden pairs get a cost high enough that using one is never worth it.
+        double maxFinite = 0;
+        for (double cost : costs) {
+            if (cost != NO_EDGE && cost > maxFinite) maxFinite = cost;
+        }
+        double forbidden = (maxFinite + 1) * (n + 1);
+
+        // 1-based, with column 0 as the virtual start of each augmenting path.
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] rowOfCol = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        int done = 0;
+        while (done < n && System.nanoTime() - startNanos <= budgetNanos) {
+            rowOfCol[0] = ++done;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = rowOfCol[j0];
+                int base = (i0 - 1) * m - 1;
+                double ui0 = u[i0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) continue;
+                    double cost = costs[base + j];
+                    double cur = (cost == NO_EDGE ? forbidden : cost) - ui0 - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[rowOfCol[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (rowOfCol[j0] != 0);
+            do {
+                int j1 = way[j0];
+                rowOfCol[j0] = rowOfCol[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        for (int j = 1; j <= m; j++) {
+            int row = rowOfCol[j];
+            // Forbidden pairs only complete the matching; drop them.
+            if (row != 0 && costs[(row - 1) * m + j - 1] != NO_EDGE) colForRow[row - 1] = j - 1;
+        }
+        return done;
+    }
+
+    /** Greedily matches the rows and columns {@code colForRow} leaves open. */
+    private static Assignment fillGreedy(double[] costs, int rows, int cols, int[] colForRow) {
+        boolean[] rowTaken = new boolean[rows];
+        boolean[] colTaken = new boolean[cols];
+        for (int r = 0; r < rows; r++) {
+            if (colForRow[r] >= 0) {
+                rowTaken[r] = true;
+                colTaken[colForRow[r]] = true;
+            }
+        }
+
+        // One long per open pair, cost (as sortable float bits) above the pair's index, so a
+        // primitive sort orders them by cost.
+        long[] keys = new long[16];
+        int open = 0;
+        for (int r = 0; r < rows; r++) {
+            if (rowTaken[r]) continue;
+            for (int c = 0; c < cols; c++) {
+                double cost = costs[r * cols + c];
+                if (cost == NO_EDGE || colTaken[c]) continue;
+                if (open == keys.length) keys = Arrays.copyOf(keys, open * 2);
+                int bits = Float.floatToIntBits((float) cost);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                keys[open++] = ((long) bits << 32) | (r * cols + c);
+            }
+        }
+        Arrays.sort(keys, 0, open);
+
+        for (int i = 0; i < open; i++) {
+            int pair = (int) keys[i];
+            int r = pair / cols;
+            int c = pair % cols;
+            if (rowTaken[r] || colTaken[c]) continue;
+            colForRow[r] = c;
+            rowTaken[r] = true;
+            colTaken[c] = true;
+        }
+        return total(costs, cols, colForRow, false);
+    }
+
+    private static Assignment total(double[] costs, int cols, int[] colForRow, boolean optimal) {
+        double total = 0;
+        int matched = 0;
+        for (int r = 0; r < colForRow.length; r++) {
+            if (colForRow[r] < 0) continue;
+            total += costs[r * cols + colForRow[r]];
+            matched++;
+        }
+        return new Assignment(colForRow, total, matched, optimal);
+    }
+
+    private static void checkSize(double[] costs, int rows, int cols) {
+        if (rows < 0 || cols < 0 || costs.length != rows * cols) {
+            throw new IllegalArgumentException("Expected " + rows + " x " + cols + " costs, got " + costs.length);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Who a new ride request is offered to, independent of how candidates are found: the radius
+ * grows until enough drivers are in range, then the nearest few get an offer. Shared by
+ * {@link RideDispatcher}, which finds candidates with GeoFire, and the fleet simulator.
+ */
+public final class DispatchPolicy {
+
+    public static final int MAX_OFFERS = 3;
+    public static final double INITIAL_RADIUS_KM = 2.0;
+    public static final double MAX_RADIUS_KM = 16.0;
+
+    private DispatchPolicy() {
+    }
+
+    /** Radius to search next after {@code found} drivers turned up within {@code radiusKm}, or 0 to stop. */
+    public static double nextRadiusKm(double radiusKm, int found) {
+        if (found >= MAX_OFFERS || radiusKm >= MAX_RADIUS_KM) return 0;
+        return Math.min(radiusKm * 2, MAX_RADIUS_KM);
+    }
+
+    /**
+     * Offer writes for the nearest drivers in {@code candidates}, at most {@code nearest.capacity()}
+     * of them, or null if nobody is within range. The chosen drivers are left in {@code nearest}.
+     */
+    public static Map<String, Object> offers(String customerId, DriverSpatialIndex candidates,
+                                             DriverSpatialIndex.Result nearest,
+                                             double pickupLat, double pickupLng, double dropLat, double dropLng) {
+        candidates.nearest(pickupLat, pickupLng, MAX_RADIUS_KM * 1000, nearest);
+        if (nearest.size() == 0) return null;
+
+        List<String> driverIds = new ArrayList<>(nearest.size());
+        double[] distances = new double[nearest.size()];
+        for (int i = 0; i < nearest.size(); i++) {
+            driverIds.add(nearest.driverId(i));
+            distances[i] = nearest.distanceMeters(i);
+        }
+        RideStateMachine ride = new RideStateMachine(customerId, RideState.PENDING);
+        return ride.offer(driverIds, distances, pickupLat, pickupLng, dropLat, dropLng);
+    }
+}
@@ -0,0 +1,512 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Central dispatch, for running on a server instead of on every customer's phone.
+ *
+ * Fed the driver positions under locations/Drivers and every change under rideRequests, it
+ * keeps the drivers in a {@link DriverSpatialIndex}. When a request turns pending, the nearest
+ * {@link #CANDIDATES} drivers are ranked with a {@link DriverScorer} and an {@link OfferManager}
+ * offers the ride to them one at a time, best first. Each offer is a multi-path update built by
+ * {@link RideStateMachine#offer} that also withdraws the previous driver's; the database rules
+ * only accept it while the request is pending or offered, so a ride cancelled or accepted in the
+ * meantime is never offered again.
+ *
+ * A driver holding an offer or on a ride is left out of other searches. An offer nobody accepts
+ * within {@link #OFFER_TIMEOUT_MILLIS} moves on to the next candidate; when they have all let it
+ * pass, the request goes back to pending and is retried after {@link #RETRY_MILLIS} with drivers
+ * who haven't seen it yet. Callers drive timeouts and retries with {@link #tick}. A ride found
+ * already offered that this worker isn't offering, such as one left over from before a restart,
+ * gets the same timeout and is then withdrawn and dispatched afresh.
+ *
+ * With a batch window, pending requests aren't offered one by one as they come in. They collect
+ * over the window and are matched together with the free drivers by {@link BatchMatcher}, one
+ * driver per ride, for the lowest total score; the matched driver gets the first offer and the
+ * ride's other candidates follow. Under surge that cuts average pickup distance against first
+ * come, first served. The matcher falls back to greedy past {@link #MATCH_BUDGET_NANOS}, and a
+ * batch whose cost matrix would exceed {@link #MAX_MATCH_CELLS} is matched greedily from the
+ * start, without building the matrix.
+ *
+ * Methods are synchronized. Everything is in memory and a dispatch takes microseconds, so a
+ * single instance keeps up with thousands of requests a minute.
+ */
+public class DispatchWorker {
+
+    public static final int CANDIDATES = 20;
+    /** How long each driver has to accept before the next candidate gets the offer. */
+    public static final long OFFER_TIMEOUT_MILLIS = OfferManager.DEFAULT_TIMEOUT_MILLIS;
+    /** How soon a request with no driver in range, or nobody taking it, is looked at again. */
+    public static final long RETRY_MILLIS = 10_000;
+    public static final long MATCH_BUDGET_NANOS = 500_000_000L;
+    /** Largest cost matrix a batch builds, rides times reachable drivers; 8 MB of doubles. */
+    public static final int MAX_MATCH_CELLS = 1_000_000;
+    private static final long TIMER_TICK_MILLIS = 100;
+
+    private static final class Ride {
+        final String customerId;
+        RideRequest request;
+        /** Pickup distance of each candidate in the running offer sequence. */
+        final Map<String, Double> distances = new HashMap<>();
+        /** The candidate holding the offer, once it has been written. */
+        String offeredTo;
+        /** Drivers who let an offer for this request time out. */
+        final Set<String> declined = new HashSet<>();
+        String driverId;
+        /** When to look for drivers again. */
+        long deadlineMillis;
+        /** Updates of ours on their way; their echoes must not trigger another dispatch. */
+        int writes;
+        /** The next pending is our own withdrawal, not a fresh request. */
+        boolean expired;
+        /** Drivers holding an offer this worker didn't make, and when to take it back. */
+        List<String> inherited;
+        HashedWheelTimer.Timeout inheritedTimeout;
+
+        Ride(String customerId) {
+            this.customerId = customerId;
+        }
+    }
+
+    private final MultiPathWriter writer;
+    private final DriverScorer scorer;
+    private final long batchWindowMillis;
+    private long nextBatchMillis;
+    private final DriverSpatialIndex drivers = new DriverSpatialIndex();
+    private final Map<String, DriverProfile> profiles = new HashMap<>();
+    private final Map<String, Ride> rides = new HashMap<>();
+    /** driverId -> customerId of the ride the driver is offered or assigned. */
+    private final Map<String, String> heldBy = new HashMap<>();
+    private final DriverSpatialIndex.Result pool = new DriverSpatialIndex.Result(CANDIDATES);
+    private final DriverSpatialIndex.Result ranked = new DriverSpatialIndex.Result(CANDIDATES);
+    private final HashedWheelTimer timer = new HashedWheelTimer(TIMER_TICK_MILLIS, 512);
+    private final OfferManager offers = new OfferManager(timer, OFFER_TIMEOUT_MILLIS, new OfferManager.Listener() {
+        @Override
+        public boolean onOffer(String rideId, String driverId, String previousDriverId, long nowMillis) {
+            return offer(rideId, driverId, previousDriverId);
+        }
+
+        @Override
+        public void onExhausted(String rideId, String lastDriverId, long nowMillis) {
+            exhausted(rideId, lastDriverId, nowMillis);
+        }
+    });
+
+    private long offersWritten;
+    private long assigned;
+    private long expiredOffers;
+    private long noDriverFound;
+    private long rejectedWrites;
+    private long batches;
+    private long greedyBatches;
+
+    public DispatchWorker(MultiPathWriter writer, DriverScorer scorer) {
+        this(writer, scorer, 0);
+    }
+
+    /** {@code batchWindowMillis} of 0 offers every request as soon as it is pending. */
+    public DispatchWorker(MultiPathWriter writer, DriverScorer scorer, long batchWindowMillis) {
+        this.writer = writer;
+        this.scorer = scorer;
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    // ---- drivers ----
+
+    public synchronized void onDriverLocation(String driverId, double lat, double lng) {
+        drivers.update(driverId, lat, lng);
+        drivers.setAvailable(driverId, !heldBy.containsKey(driverId));
+    }
+
+    public synchronized void onDriverRemoved(String driverId) {
+        drivers.remove(driverId);
+    }
+
+    public synchronized void onDriverRating(String driverId, double rating) {
+        profile(driverId).setRating(rating);
+    }
+
+    // ---- requests ----
+
+    /** {@code request} is the new value of rideRequests/{customerId}, null if it was removed. */
+    public synchronized void onRideRequest(String customerId, RideRequest request, long nowMillis) {
+        Ride ride = rides.get(customerId);
+        if (request == null || request.status.isTerminal()) {
+            if (ride != null) {
+                stopOffers(ride, null);
+                if (ride.driverId != null) release(ride.driverId, customerId);
+                rides.remove(customerId);
+            }
+            return;
+        }
+
+        if (ride == null) {
+            ride = new Ride(customerId);
+            rides.put(customerId, ride);
+        }
+        ride.request = request;
+
+        switch (request.status) {
+            case PENDING:
+                if (ride.expired) {
+                    // The echo of our own withdrawal; tick retries it.
+                    ride.expired = false;
+                    return;
+                }
+                if (ride.writes > 0) return;
+                // A new request from the customer: start over.
+                ride.declined.clear();
+                if (ride.driverId != null) release(ride.driverId, customerId);
+                ride.driverId = null;
+                stopOffers(ride, null);
+                if (batchWindowMillis > 0) {
+                    ride.deadlineMillis = nowMillis;
+                } else {
+                    dispatch(ride, nowMillis);
+                }
+                break;
+            case OFFERED:
+                // Our own offer, unless nobody here is offering it.
+                if (ride.writes == 0 && ride.driverId == null && ride.inherited == null
+                        && !offers.isOffering(customerId)) {
+                    inherit(ride, nowMillis);
+                }
+                break;
+            default:
+                if (request.driverId == null || request.driverId.equals(ride.driverId)) return;
+                ride.driverId = request.driverId;
+                assigned++;
+                if (ride.distances.containsKey(ride.driverId)) profile(ride.driverId).onAccepted();
+                offers.accept(customerId, ride.driverId);
+                stopOffers(ride, ride.driverId);
+                hold(ride.driverId, customerId);
+        }
+    }
+
+    /**
+     * Moves timed-out offers on and retries requests that found no driver; with a batch window,
+     * also matches the requests collected since the last batch once the window is over. Call
+     * from one thread.
+     */
+    public void tick(long nowMillis) {
+        // Outside the lock: expired offers call back in through the listener.
+        timer.advance(nowMillis);
+        synchronized (this) {
+            List<Ride> batch = new ArrayList<>();
+            for (Ride ride : rides.values()) {
+                if (ride.writes > 0 || ride.driverId != null || nowMillis < ride.deadlineMillis
+                        || ride.request.status != RideState.PENDING || offers.isOffering(ride.customerId)) {
+                    continue;
+                }
+                if (batchWindowMillis > 0) {
+                    batch.add(ride);
+                } else {
+                    dispatch(ride, nowMillis);
+                }
+            }
+            if (!batch.isEmpty() && nowMillis >= nextBatchMillis) {
+                nextBatchMillis = nowMillis + batchWindowMillis;
+                match(batch, nowMillis);
+            }
+        }
+    }
+
+    private void dispatch(Ride ride, long nowMillis) {
+        RideRequest request = ride.request;
+        drivers.nearest(request.pickupLat, request.pickupLng, DispatchPolicy.MAX_RADIUS_KM * 1000, pool);
+        ranked.clear();
+        ride.distances.clear();
+        for (int i = 0; i < pool.size(); i++) {
+            String driverId = pool.driverId(i);
+            if (ride.declined.contains(driverId)) continue;
+            double score = scorer.score(pool.distanceMeters(i), profile(driverId));
+            if (score < Double.POSITIVE_INFINITY) {
+                ranked.offer(driverId, score);
+                ride.distances.put(driverId, pool.distanceMeters(i));
+            }
+        }
+        if (ranked.size() == 0) {
+            noDriverFound++;
+            ride.deadlineMillis = nowMillis + RETRY_MILLIS;
+            return;
+        }
+
+        List<String> candidates = new ArrayList<>(ranked.size());
+        for (int i = 0; i < ranked.size(); i++) candidates.add(ranked.driverId(i));
+        offers.start(ride.customerId, candidates, nowMillis);
+    }
+
+    /**
+     * Holds the drivers of an offer made elsewhere, typically by this worker before a restart,
+     * and withdraws it if none of them has accepted within {@link #OFFER_TIMEOUT_MILLIS}.
+     */
+    private void inherit(Ride ride, long nowMillis) {
+        ride.inherited = new ArrayList<>(ride.request.offeredTo);
+        for (String driverId : ride.inherited) hold(driverId, ride.customerId);
+        String customerId = ride.customerId;
+        ride.inheritedTimeout = timer.schedule(now -> withdrawInherited(customerId, now),
+                OFFER_TIMEOUT_MILLIS, nowMillis);
+    }
+
+    private synchronized void withdrawInherited(String customerId, long nowMillis) {
+        Ride ride = rides.get(customerId);
+        if (ride == null || ride.inherited == null) return;
+        List<String> holders = ride.inherited;
+        ride.inherited = null;
+        ride.inheritedTimeout = null;
+        if (ride.driverId != null || ride.request.status != RideState.OFFERED) return;
+
+        Map<String, Object> updates = new RideStateMachine(customerId, RideState.OFFERED)
+                .advance(RideState.PENDING);
+        updates.put("rideRequests/" + customerId + "/offered_to", null);
+        for (String driverId : holders) {
+            updates.put("driverOffers/" + driverId + "/" + customerId, null);
+            withdrawn(ride, driverId);
+        }
+        ride.expired = true;
+        ride.deadlineMillis = nowMillis;
+        write(ride, updates, false);
+    }
+
+    /** One driver per ride, for the lowest total score over the whole batch. */
+    private void match(List<Ride> batch, long nowMillis) {
+        Map<String, Integer> columnOf = new HashMap<>();
+        List<String> columns = new ArrayList<>();
+        int[][] candidateColumns = new int[batch.size()][];
+        double[][] candidateScores = new double[batch.size()][];
+        double[][] candidateDistances = new double[batch.size()][];
+
+        for (int r = 0; r < batch.size(); r++) {
+            Ride ride = batch.get(r);
+            drivers.nearest(ride.request.pickupLat, ride.request.pickupLng, DispatchPolicy.MAX_RADIUS_KM * 1000, pool);
+            // Only drivers the ride can actually get become columns.
+            int reachable = 0;
+            int[] columnsOfRow = new int[pool.size()];
+            double[] scores = new double[pool.size()];
+            double[] distances = new double[pool.size()];
+            for (int i = 0; i < pool.size(); i++) {
+                String driverId = pool.driverId(i);
+                if (ride.declined.contains(driverId)) continue;
+                double score = scorer.score(pool.distanceMeters(i), profile(driverId));
+                if (score == BatchMatcher.NO_EDGE) continue;
+                Integer column = columnOf.get(driverId);
+                if (column == null) {
+                    column = columns.size();
+                    columnOf.put(driverId, column);
+                    columns.add(driverId);
+                }
+                columnsOfRow[reachable] = column;
+                scores[reachable] = score;
+                distances[reachable] = pool.distanceMeters(i);
+                reachable++;
+            }
+            candidateColumns[r] = Arrays.copyOf(columnsOfRow, reachable);
+            candidateScores[r] = Arrays.copyOf(scores, reachable);
+            candidateDistances[r] = Arrays.copyOf(distances, reachable);
+        }
+
+        int cols = columns.size();
+        BatchMatcher.Assignment assignment;
+        if ((long) batch.size() * cols <= MAX_MATCH_CELLS) {
+            double[] costs = new double[batch.size() * cols];
+            Arrays.fill(costs, BatchMatcher.NO_EDGE);
+            for (int r = 0; r < batch.size(); r++) {
+                for (int i = 0; i < candidateColumns[r].length; i++) {
+                    costs[r * cols + candidateColumns[r][i]] = candidateScores[r][i];
+                }
+            }
+            assignment = BatchMatcher.solve(costs, batch.size(), cols, MATCH_BUDGET_NANOS);
+        } else {
+            assignment = BatchMatcher.greedy(candidateColumns, candidateScores, cols);
+        }
+        batches++;
+        if (!assignment.isOptimal()) greedyBatches++;
+
+        for (int r = 0; r < batch.size(); r++) {
+            Ride ride = batch.get(r);
+            int column = assignment.colForRow(r);
+            if (column < 0) {
+                // Nobody left for this one; it goes into the next batch.
+                noDriverFound++;
+                ride.deadlineMillis = nowMillis + batchWindowMillis;
+                continue;
+            }
+            // The matched driver first, then the ride's other candidates by score, should they
+            // let it pass. Those matched to other rides are held by then and get skipped.
+            ranked.clear();
+            ride.distances.clear();
+            for (int i = 0; i < candidateColumns[r].length; i++) {
+                int candidate = candidateColumns[r][i];
+                ride.distances.put(columns.get(candidate), candidateDistances[r][i]);
+                if (candidate != column) ranked.offer(columns.get(candidate), candidateScores[r][i]);
+            }
+            List<String> candidates = new ArrayList<>(ranked.size() + 1);
+            candidates.add(columns.get(column));
+            for (int i = 0; i < ranked.size(); i++) candidates.add(ranked.driverId(i));
+            offers.start(ride.customerId, candidates, nowMillis);
+        }
+    }
+
+    /** Writes the offer to {@code driverId}, or turns it down if the driver was taken meanwhile. */
+    private synchronized boolean offer(String customerId, String driverId, String previousDriverId) {
+        Ride ride = rides.get(customerId);
+        String holder = heldBy.get(driverId);
+        if (ride == null || ride.driverId != null || (holder != null && !holder.equals(customerId))) return false;
+
+        Double distance = ride.distances.get(driverId);
+        if (distance == null) return false;
+
+        RideRequest request = ride.request;
+        Map<String, Object> updates = new RideStateMachine(customerId, RideState.PENDING).offer(
+                Collections.singletonList(driverId), new double[]{distance},
+                request.pickupLat, request.pickupLng, request.dropLat, request.dropLng);
+        if (previousDriverId != null) {
+            updates.put("driverOffers/" + previousDriverId + "/" + customerId, null);
+            withdrawn(ride, previousDriverId);
+        }
+        hold(driverId, customerId);
+        profile(driverId).onOffered();
+        ride.offeredTo = driverId;
+        offersWritten++;
+        write(ride, updates, true);
+        return true;
+    }
+
+    /** Every candidate let the ride pass: back to pending, and try again later. */
+    private synchronized void exhausted(String customerId, String lastDriverId, long nowMillis) {
+        Ride ride = rides.get(customerId);
+        if (ride == null || ride.driverId != null) return;
+        ride.deadlineMillis = nowMillis + (batchWindowMillis > 0 ? batchWindowMillis : RETRY_MILLIS);
+        if (lastDriverId == null) {
+            // Nobody could take it; nothing was written.
+            noDriverFound++;
+            return;
+        }
+
+        Map<String, Object> updates = new RideStateMachine(customerId, RideState.OFFERED)
+                .advance(RideState.PENDING);
+        updates.put("rideRequests/" + customerId + "/offered_to", null);
+        updates.put("driverOffers/" + lastDriverId + "/" + customerId, null);
+        withdrawn(ride, lastDriverId);
+        ride.expired = true;
+        write(ride, updates, false);
+    }
+
+    private void withdrawn(Ride ride, String driverId) {
+        ride.declined.add(driverId);
+        release(driverId, ride.customerId);
+        if (driverId.equals(ride.offeredTo)) ride.offeredTo = null;
+        expiredOffers++;
+    }
+
+    private void write(Ride ride, Map<String, Object> updates, boolean offer) {
+        ride.writes++;
+        writer.updateChildren(updates, error -> onWritten(ride, offer, error));
+    }
+
+    private synchronized void onWritten(Ride ride, boolean offer, String error) {
+        ride.writes--;
+        if (error == null) return;
+        // The request moved on first: cancelled, accepted, or already offered by someone else.
+        rejectedWrites++;
+        if (offer) {
+            stopOffers(ride, null);
+            ride.deadlineMillis = 0;
+        } else {
+            ride.expired = false;
+        }
+    }
+
+    private void hold(String driverId, String customerId) {
+        heldBy.put(driverId, customerId);
+        drivers.setAvailable(driverId, false);
+    }
+
+    private void release(String driverId, String customerId) {
+        if (customerId.equals(heldBy.get(driverId))) {
+            heldBy.remove(driverId);
+            drivers.setAvailable(driverId, true);
+        }
+    }
+
+    /** Ends the ride's offer sequence and frees the drivers holding an offer, except {@code keep}. */
+    private void stopOffers(Ride ride, String keep) {
+        offers.cancel(ride.customerId);
+        if (ride.offeredTo != null && !ride.offeredTo.equals(keep)) release(ride.offeredTo, ride.customerId);
+        ride.offeredTo = null;
+        if (ride.inherited != null) {
+            ride.inheritedTimeout.cancel();
+            for (String driverId : ride.inherited) {
+                if (!driverId.equals(keep)) release(driverId, ride.customerId);
+            }
+            ride.inherited = null;
+            ride.inheritedTimeout = null;
+        }
+    }
+
+    private DriverProfile profile(String driverId) {
+        DriverProfile profile = profiles.get(driverId);
+        if (profile == null) {
+            profile = new DriverProfile();
+            profiles.put(driverId, profile);
+        }
+        return profile;
+    }
+
+    public synchronized int getDriverCount() {
+        return drivers.size();
+    }
+
+    public synchronized int getOpenRideCount() {
+        return rides.size();
+    }
+
+    public synchronized long getOffersWritten() {
+        return offersWritten;
+    }
+
+    public synchronized long getAssignedCount() {
+        return assigned;
+    }
+
+    public synchronized long getExpiredOffers() {
+        return expiredOffers;
+    }
+
+    public synchronized long getNoDriverFoundCount() {
+        return noDriverFound;
+    }
+
+    /** Rides with an offer sequence running. */
+    public int getOfferingCount() {
+        return offers.size();
+    }
+
+    public synchronized long getRejectedWrites() {
+        return rejectedWrites;
+    }
+
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    /** Batches where the matcher ran out of budget and finished greedily. */
+    public synchronized long getGreedyBatchCount() {
+        return greedyBatches;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return drivers.size() + " drivers, " + rides.size() + " open rides, " + offersWritten + " offers, "
+                + assigned + " assigned, " + expiredOffers + " expired, " + noDriverFound + " without drivers, "
+                + rejectedWrites + " rejected writes"
+                + (batchWindowMillis > 0 ? ", " + batches + " batches (" + greedyBatches + " greedy)" : "");
+    }
+}
@@ -0,0 +1,54 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** {@code locations/Drivers/{driverId}} in GeoFire's layout: {@code g} geohash, {@code l} [lat, lng]. */
+public final class DriverLocation {
+
+    public final double lat;
+    public final double lng;
+    public final String geoHash;
+
+    public DriverLocation(double lat, double lng) {
+        this(lat, lng, GeoMath.geoHash(lat, lng, GeoMath.GEOFIRE_HASH_PRECISION));
+    }
+
+    public DriverLocation(double lat, double lng, String geoHash) {
+        this.lat = lat;
+        this.lng = lng;
+        this.geoHash = geoHash;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(4);
+        map.put("g", geoHash);
+        map.put("l", latLngList());
+        return map;
+    }
+
+    /** The {@code l} child on its own, for updates that write {@code g} and {@code l} as paths. */
+    public List<Object> latLngList() {
+        List<Object> latLng = new ArrayList<>(2);
+        latLng.add(lat);
+        latLng.add(lng);
+        return latLng;
+    }
+
+    /** Returns null unless {@code value} is a GeoFire node with a two-element location. */
+    public static DriverLocation fromValue(Object value) {
+        Map<String, Object> map = ModelMaps.asMap(value);
+        if (map == null) return null;
+
+        Object l = map.get("l");
+        if (!(l instanceof List) || ((List<?>) l).size() != 2) return null;
+        double lat = ModelMaps.getDouble(((List<?>) l).get(0));
+        double lng = ModelMaps.getDouble(((List<?>) l).get(1));
+        if (Double.isNaN(lat) || Double.isNaN(lng)) return null;
+
+        String geoHash = ModelMaps.getString(map, "g");
+        return geoHash != null ? new DriverLocation(lat, lng, geoHash) : new DriverLocation(lat, lng);
+    }
+}
@@ -0,0 +1,57 @@
+package com.kobha.ourmap;
+
+/**
+ * What the driver's phone does with each raw fix, without any Android types: filter it, let
+ * the sampling policy see it, and publish the newest estimate. {@link DriverLocationService}
+ * runs one on its location thread; trace replays run the very same code off recorded fixes.
+ *
+ * Not thread-safe, like the {@link LocationStage} inside it.
+ */
+public class DriverLocationPipeline {
+
+    private final LocationStage stage = new LocationStage();
+    private final LocationPublisher publisher;
+    private final SamplingPolicy policy;
+    private final double[] estimate = new double[3];
+    private long estimateTimeMillis;
+    private boolean unpublished;
+
+    public DriverLocationPipeline(LocationPublisher publisher, SamplingPolicy policy) {
+        this.publisher = publisher;
+        this.policy = policy;
+    }
+
+    /** Pass NaN for an unknown accuracy or speed. Returns false if the fix was rejected. */
+    public boolean onFix(double lat, double lng, double accuracyMeters, double speedMetersPerSecond, long timeMillis) {
+        // The fixes were asked for under the current plan; only as coarse as it allows.
+        stage.setMaxAccuracyMeters(policy.plan().accuracy.worstFixMeters);
+        if (!stage.process(lat, lng, accuracyMeters, timeMillis, estimate)) return false;
+        estimateTimeMillis = timeMillis;
+        unpublished = true;
+        policy.onFix(estimate[0], estimate[1],
+                Double.isNaN(speedMetersPerSecond) ? estimate[2] : speedMetersPerSecond, timeMillis);
+        return true;
+    }
+
+    /**
+     * Hands the newest estimate to the publisher, once per batch of fixes. Returns false if there
+     * was nothing new or the publisher collapsed it into its previous write.
+     */
+    public boolean publish() {
+        if (!unpublished) return false;
+        unpublished = false;
+        return publisher.publish(estimate[0], estimate[1], estimateTimeMillis);
+    }
+
+    public double getLat() {
+        return estimate[0];
+    }
+
+    public double getLng() {
+        return estimate[1];
+    }
+
+    public LocationStage getStage() {
+        return stage;
+    }
+}
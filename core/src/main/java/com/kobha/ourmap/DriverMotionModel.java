@@ -0,0 +1,111 @@
+package com.kobha.ourmap;
+
+/**
+ * Turns sparse driver position samples into a continuous track for rendering.
+ *
+ * Each new sample starts a segment from wherever the marker is currently drawn to the sample,
+ * lasting about as long as the gap between samples, so the marker arrives roughly when the
+ * next sample is due. Past the end of a segment the position is dead-reckoned along the last
+ * observed velocity for at most MAX_PREDICTION_MILLIS, then held.
+ */
+public class DriverMotionModel {
+
+    static final long MIN_SEGMENT_MILLIS = 300;
+    static final long MAX_SEGMENT_MILLIS = 5_000;
+    static final long MAX_PREDICTION_MILLIS = 2_000;
+    /** Ignore bearing changes from GPS wobble while the driver is standing still. */
+    static final double MIN_BEARING_DISTANCE_METERS = 3;
+
+    private boolean hasSample;
+    private long lastSampleMillis;
+    private double lastSampleLat;
+    private double lastSampleLng;
+
+    private double fromLat;
+    private double fromLng;
+    private double toLat;
+    private double toLng;
+    private long segmentStartMillis;
+    private long segmentMillis;
+
+    // Degrees per millisecond.
+    private double velocityLat;
+    private double velocityLng;
+    private float bearing;
+
+    private final double[] scratch = new double[3];
+
+    public synchronized void onSample(double lat, double lng, long nowMillis) {
+        if (!hasSample) {
+            hasSample = true;
+            fromLat = toLat = lat;
+            fromLng = toLng = lng;
+            segmentStartMillis = nowMillis;
+            segmentMillis = 0;
+        } else {
+            positionAt(nowMillis, scratch);
+            fromLat = scratch[0];
+            fromLng = scratch[1];
+            toLat = lat;
+            toLng = lng;
+
+            long interval = Math.max(1, nowMillis - lastSampleMillis);
+            segmentStartMillis = nowMillis;
+            segmentMillis = Math.max(MIN_SEGMENT_MILLIS, Math.min(MAX_SEGMENT_MILLIS, interval));
+            velocityLat = (lat - lastSampleLat) / interval;
+            velocityLng = (lng - lastSampleLng) / interval;
+
+            if (GeoMath.distanceMeters(lastSampleLat, lastSampleLng, lat, lng) >= MIN_BEARING_DISTANCE_METERS) {
+                bearing = bearing(lastSampleLat, lastSampleLng, lat, lng);
+            } else {
+                velocityLat = 0;
+                velocityLng = 0;
+            }
+        }
+        lastSampleMillis = nowMillis;
+        lastSampleLat = lat;
+        lastSampleLng = lng;
+    }
+
+    /** Forgets the track, so the next sample, perhaps another driver's, is drawn where it is. */
+    public synchronized void reset() {
+        hasSample = false;
+        velocityLat = 0;
+        velocityLng = 0;
+        bearing = 0;
+    }
+
+    public synchronized boolean hasSample() {
+        return hasSample;
+    }
+
+    /**
+     * Writes {lat, lng, bearing} for the given time into {@code out} and returns whether the
+     * position will still change after this time, i.e. whether another frame is needed.
+     */
+    public synchronized boolean positionAt(long nowMillis, double[] out) {
+        long elapsed = nowMillis - segmentStartMillis;
+        if (elapsed < segmentMillis) {
+            double t = (double) elapsed / segmentMillis;
+            out[0] = fromLat + (toLat - fromLat) * t;
+            out[1] = fromLng + (toLng - fromLng) * t;
+        } else {
+            long predicted = Math.min(elapsed - segmentMillis, MAX_PREDICTION_MILLIS);
+            out[0] = toLat + velocityLat * predicted;
+            out[1] = toLng + velocityLng * predicted;
+        }
+        out[2] = bearing;
+
+        boolean moving = velocityLat != 0 || velocityLng != 0;
+        return elapsed < segmentMillis || (moving && elapsed < segmentMillis + MAX_PREDICTION_MILLIS);
+    }
+
+    static float bearing(double fromLat, double fromLng, double toLat, double toLng) {
+        double dLng = Math.toRadians(toLng - fromLng);
+        double lat1 = Math.toRadians(fromLat);
+        double lat2 = Math.toRadians(toLat);
+        double y = Math.sin(dLng) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(dLng);
+        return (float) ((Math.toDegrees(Math.atan2(y, x)) + 360) % 360);
+    }
+}
@@ -0,0 +1,43 @@
+package com.kobha.ourmap;
+
+/** What dispatch knows about a driver beyond their position: rating and how often they accept. */
+public final class DriverProfile {
+
+    /** Offers a new driver is assumed to have seen, accepting {@link #PRIOR_ACCEPTANCE} of them. */
+    static final int PRIOR_OFFERS = 5;
+    static final double PRIOR_ACCEPTANCE = 0.8;
+
+    /** Out of 5; NaN until the driver has been rated. */
+    private double rating = Double.NaN;
+    private int offers;
+    private int accepts;
+
+    public double getRating() {
+        return rating;
+    }
+
+    public void setRating(double rating) {
+        this.rating = rating;
+    }
+
+    public void onOffered() {
+        offers++;
+    }
+
+    public void onAccepted() {
+        accepts++;
+    }
+
+    public int getOffers() {
+        return offers;
+    }
+
+    public int getAccepts() {
+        return accepts;
+    }
+
+    /** Share of offers accepted, pulled toward a prior so a couple of misses don't sink a new driver. */
+    public double acceptanceRate() {
+        return (accepts + PRIOR_ACCEPTANCE * PRIOR_OFFERS) / (offers + PRIOR_OFFERS);
+    }
+}
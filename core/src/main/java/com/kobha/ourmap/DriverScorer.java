@@ -0,0 +1,33 @@
+package com.kobha.ourmap;
+
+/**
+ * Ranks the drivers near a pickup; the lowest scores get the offer. Scores are in seconds so
+ * the terms are comparable: an ETA plus whatever penalty a worse rating or acceptance rate is
+ * worth. Runs for every candidate of every request, so it must be cheap.
+ */
+public interface DriverScorer {
+
+    /** {@link Double#POSITIVE_INFINITY} leaves the driver out. */
+    double score(double distanceMeters, DriverProfile profile);
+
+    /** Straight-line ETA at {@code metersPerSecond}, nothing else. */
+    static DriverScorer eta(double metersPerSecond) {
+        return (distanceMeters, profile) -> distanceMeters / metersPerSecond;
+    }
+
+    /**
+     * ETA plus {@code secondsPerStar} for every star below 5 (unrated drivers count as 4.5),
+     * plus {@code secondsIfNeverAccepts} scaled by the share of offers the driver declines.
+     */
+    static DriverScorer weighted(double metersPerSecond, double secondsPerStar, double secondsIfNeverAccepts) {
+        return (distanceMeters, profile) -> {
+            double rating = Double.isNaN(profile.getRating()) ? 4.5 : profile.getRating();
+            return distanceMeters / metersPerSecond
+                    + (5 - rating) * secondsPerStar
+                    + (1 - profile.acceptanceRate()) * secondsIfNeverAccepts;
+        };
+    }
+
+    /** City traffic at 8 m/s, a minute per star, two minutes for a driver who never accepts. */
+    DriverScorer DEFAULT = weighted(8, 60, 120);
+}
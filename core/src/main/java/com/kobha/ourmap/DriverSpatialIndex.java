@@ -0,0 +1,371 @@
+package com.kobha.ourmap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe in-memory index of driver positions, bucketed into a fixed lat/lng grid.
+ *
+ * Updates are O(1): a driver moves between cell buckets only when it crosses a cell edge.
+ * Queries scan rings of cells outwards from the query point and write into a caller-owned
+ * {@link Result}, so a dispatch loop can reuse one Result and not allocate per query.
+ * Distances use an equirectangular approximation, which is well within a meter of the
+ * haversine distance at dispatch ranges and several times cheaper.
+ */
+public class DriverSpatialIndex {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.005;
+
+    private static final double METERS_PER_DEGREE = Math.PI * GeoMath.EARTH_RADIUS_METERS / 180.0;
+
+    private final double cellDegrees;
+    private final int rows;
+    private final int cols;
+
+    private final Map<String, Entry> drivers = new HashMap<>();
+    private final CellTable cells = new CellTable();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public DriverSpatialIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public DriverSpatialIndex(double cellDegrees) {
+        if (cellDegrees <= 0 || cellDegrees > 10) {
+            throw new IllegalArgumentException("cellDegrees must be in (0, 10]: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180.0 / cellDegrees) + 1;
+        this.cols = (int) Math.ceil(360.0 / cellDegrees);
+    }
+
+    public void update(String driverId, double lat, double lng) {
+        int row = row(lat);
+        int col = col(lng);
+        long key = cellKey(row, col);
+
+        lock.writeLock().lock();
+        try {
+            Entry entry = drivers.get(driverId);
+            if (entry == null) {
+                entry = new Entry(driverId);
+                drivers.put(driverId, entry);
+                cells.getOrCreate(key).add(entry);
+            } else if (entry.cell.key != key) {
+                leave(entry);
+                cells.getOrCreate(key).add(entry);
+            }
+            entry.lat = lat;
+            entry.lng = lng;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setAvailable(String driverId, boolean available) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = drivers.get(driverId);
+            if (entry != null) {
+                entry.available = available;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String driverId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = drivers.remove(driverId);
+            if (entry == null) return false;
+            leave(entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Takes the entry out of its cell, and the cell out of the table once it is empty. */
+    private void leave(Entry entry) {
+        Cell cell = entry.cell;
+        cell.remove(entry);
+        if (cell.size == 0) cells.remove(cell.key);
+    }
+
+    /** Cells holding at least one driver. */
+    int cellCount() {
+        lock.readLock().lock();
+        try {
+            return cells.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return drivers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fills {@code out} with up to {@code out.capacity()} available drivers closest to the point,
+     * nearest first, ignoring anything further than {@code maxRadiusMeters}.
+     */
+    public void nearest(double lat, double lng, double maxRadiusMeters, Result out) {
+        out.clear();
+        int centerRow = row(lat);
+        int centerCol = col(lng);
+        int maxRing = (cols - 1) / 2;
+
+        double cosLat = Math.cos(Math.toRadians(lat));
+
+        lock.readLock().lock();
+        try {
+            for (int ring = 0; ring <= maxRing; ring++) {
+                scanRing(centerRow, centerCol, ring, lat, lng, cosLat, maxRadiusMeters, out);
+
+                // Everything in ring + 1 is at least `ring` whole cells away from the query point.
+                double reach = ring * minCellMeters(lat, ring + 1);
+                if (out.isFull() && out.distances[out.size - 1] <= reach) break;
+                if (reach > maxRadiusMeters) break;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Narrowest cell side within {@code ring} cells of the given latitude. */
+    private double minCellMeters(double lat, int ring) {
+        double farthestLat = Math.min(89.9, Math.abs(lat) + ring * cellDegrees);
+        return cellDegrees * METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(farthestLat)), 0.01);
+    }
+
+    private void scanRing(int centerRow, int centerCol, int ring, double lat, double lng, double cosLat,
+                          double maxRadiusMeters, Result out) {
+        int top = centerRow - ring;
+        int bottom = centerRow + ring;
+        int ringCols = 2 * ring + 1;
+        int firstCol = centerCol - ring;
+
+        for (int r = top; r <= bottom; r++) {
+            if (r < 0 || r >= rows) continue;
+            boolean edgeRow = r == top || r == bottom;
+            int step = edgeRow ? 1 : 2 * ring;
+            for (int i = 0; i < ringCols; i += step) {
+                int c = Math.floorMod(firstCol + i, cols);
+                Cell cell = cells.get(cellKey(r, c));
+                if (cell != null) {
+                    scanCell(cell, lat, lng, cosLat, maxRadiusMeters, out);
+                }
+            }
+        }
+    }
+
+    private static void scanCell(Cell cell, double lat, double lng, double cosLat,
+                                 double maxRadiusMeters, Result out) {
+        for (int i = 0; i < cell.size; i++) {
+            Entry entry = cell.entries[i];
+            if (!entry.available) continue;
+            double dy = entry.lat - lat;
+            double dLng = entry.lng - lng;
+            if (dLng > 180) dLng -= 360;
+            else if (dLng < -180) dLng += 360;
+            double dx = dLng * cosLat;
+            double distance = Math.sqrt(dx * dx + dy * dy) * METERS_PER_DEGREE;
+            if (distance <= maxRadiusMeters) {
+                out.offer(entry.driverId, distance);
+            }
+        }
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((Math.max(-90.0, Math.min(90.0, lat)) + 90.0) / cellDegrees);
+    }
+
+    private int col(double lng) {
+        return Math.floorMod((int) Math.floor((lng + 180.0) / cellDegrees), cols);
+    }
+
+    private long cellKey(int row, int col) {
+        return (long) row * cols + col;
+    }
+
+    /** Caller-owned, reusable query result sorted by ascending distance. */
+    public static final class Result {
+        private final String[] driverIds;
+        private final double[] distances;
+        private int size;
+
+        public Result(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+            driverIds = new String[capacity];
+            distances = new double[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int capacity() {
+            return driverIds.length;
+        }
+
+        public String driverId(int i) {
+            if (i >= size) throw new IndexOutOfBoundsException(i + " >= " + size);
+            return driverIds[i];
+        }
+
+        public double distanceMeters(int i) {
+            if (i >= size) throw new IndexOutOfBoundsException(i + " >= " + size);
+            return distances[i];
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) driverIds[i] = null;
+            size = 0;
+        }
+
+        boolean isFull() {
+            return size == driverIds.length;
+        }
+
+        void offer(String driverId, double distance) {
+            if (isFull() && distance >= distances[size - 1]) return;
+            int i = isFull() ? size - 1 : size++;
+            while (i > 0 && distances[i - 1] > distance) {
+                distances[i] = distances[i - 1];
+                driverIds[i] = driverIds[i - 1];
+                i--;
+            }
+            distances[i] = distance;
+            driverIds[i] = driverId;
+        }
+    }
+
+    private static final class Entry {
+        final String driverId;
+        double lat;
+        double lng;
+        boolean available = true;
+        Cell cell;
+        int slot;
+
+        Entry(String driverId) {
+            this.driverId = driverId;
+        }
+    }
+
+    private static final class Cell {
+        final long key;
+        Entry[] entries = new Entry[4];
+        int size;
+
+        Cell(long key) {
+            this.key = key;
+        }
+
+        void add(Entry entry) {
+            if (size == entries.length) {
+                Entry[] grown = new Entry[size * 2];
+                System.arraycopy(entries, 0, grown, 0, size);
+                entries = grown;
+            }
+            entry.cell = this;
+            entry.slot = size;
+            entries[size++] = entry;
+        }
+
+        void remove(Entry entry) {
+            Entry last = entries[--size];
+            entries[entry.slot] = last;
+            last.slot = entry.slot;
+            entries[size] = null;
+            entry.cell = null;
+        }
+    }
+
+    /** Open-addressing long -> Cell map so cell lookups during queries don't box keys. */
+    private static final class CellTable {
+        private long[] keys = new long[64];
+        private Cell[] values = new Cell[64];
+        private int size;
+
+        Cell get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                Cell cell = values[i];
+                if (cell == null) return null;
+                if (keys[i] == key) return cell;
+            }
+        }
+
+        Cell getOrCreate(long key) {
+            Cell cell = get(key);
+            if (cell != null) return cell;
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            cell = new Cell(key);
+            insert(key, cell);
+            size++;
+            return cell;
+        }
+
+        /** Backward-shift deletion, so probe chains stay intact without tombstones. */
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) return;
+            values[i] = null;
+            size--;
+
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                // Move j into the hole unless its home slot lies cyclically in (i, j].
+                boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!stays) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void insert(long key, Cell cell) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = cell;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Cell[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Cell[oldValues.length * 2];
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.kobha.ourmap;
+
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    /** Precision GeoFire uses for the "g" child of a location node. */
+    public static final int GEOFIRE_HASH_PRECISION = 10;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoMath() {}
+
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    public static String geoHash(double lat, double lng, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (lng >= mid) {
+                        value = (value << 1) | 1;
+                        minLng = mid;
+                    } else {
+                        value <<= 1;
+                        maxLng = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (lat >= mid) {
+                        value = (value << 1) | 1;
+                        minLat = mid;
+                    } else {
+                        value <<= 1;
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+            hash[i] = BASE32[value];
+        }
+        return new String(hash);
+    }
+}
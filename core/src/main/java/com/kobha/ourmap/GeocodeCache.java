@@ -0,0 +1,141 @@
+package com.kobha.ourmap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Persistent LRU of normalized address text -> coordinates. The whole table is small (a few
+ * hundred lines), so it is loaded once and rewritten through a temp file on every change.
+ */
+public class GeocodeCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private final File file;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public GeocodeCache(File file) {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    public GeocodeCache(File file, int maxEntries) {
+        this.file = file;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeocodeCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        load();
+    }
+
+    /** Lower-cases, drops punctuation and collapses whitespace, so "MG Road, " and "mg road" match. */
+    public static String normalize(String address) {
+        StringBuilder out = new StringBuilder(address.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < address.length(); i++) {
+            char c = Character.toLowerCase(address.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && out.length() > 0) out.append(' ');
+                out.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return out.toString();
+    }
+
+    /** Parses "lat, lng" as typed or filled in by "Use Current Location"; null if it isn't one. */
+    public static double[] parseCoordinates(String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 2) return null;
+        try {
+            double lat = Double.parseDouble(parts[0].trim());
+            double lng = Double.parseDouble(parts[1].trim());
+            if (lat < -90 || lat > 90 || lng < -180 || lng > 180) return null;
+            return new double[]{lat, lng};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public synchronized double[] get(String address) {
+        Entry entry = entries.get(normalize(address));
+        return entry != null ? new double[]{entry.lat, entry.lng} : null;
+    }
+
+    public synchronized void put(String address, double lat, double lng) {
+        String key = normalize(address);
+        if (key.isEmpty()) return;
+        entries.put(key, new Entry(address.trim(), lat, lng));
+        save();
+    }
+
+    /** Cached addresses as the user last typed them, least recently used first. */
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length < 3) continue;
+                try {
+                    String address = parts.length > 3 ? parts[3] : parts[0];
+                    entries.put(parts[0], new Entry(address, Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+                } catch (NumberFormatException ignored) {
+                    // Skip a damaged line rather than dropping the whole cache.
+                }
+            }
+        } catch (IOException ignored) {
+            // Start empty; the next put rewrites the file.
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                writer.write(String.format(Locale.US, "%s\t%.7f\t%.7f\t%s\n",
+                        entry.getKey(), value.lat, value.lng, value.address.replace('\t', ' ')));
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    public static final class Entry {
+        public final String address;
+        public final double lat;
+        public final double lng;
+
+        Entry(String address, double lat, double lng) {
+            this.address = address;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Timer for very many short timeouts, such as one per outstanding ride offer.
+ *
+ * Timeouts hash into a ring of buckets by deadline, one bucket per tick, with a round count
+ * for deadlines more than one turn of the wheel away. Scheduling and cancelling are O(1) and
+ * safe from any thread: new timeouts go through a lock-free queue and cancelling is a
+ * compare-and-set on the timeout's state. Expiry is only as precise as the tick.
+ *
+ * The wheel doesn't own a thread. Whoever drives it calls {@link #advance} with the current time,
+ * from one thread, and expired tasks run there and get that time. Ticks count from the epoch, so
+ * the first advance may come at any time.
+ */
+public class HashedWheelTimer {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    public static final class Timeout {
+        final LongConsumer task;
+        final long deadlineMillis;
+        long rounds;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        Timeout(LongConsumer task, long deadlineMillis) {
+            this.task = task;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        /** True if this call stopped the task from running. */
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<List<Timeout>> wheel;
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    /** The next tick to process, -1 before the first advance; only touched by the thread calling advance. */
+    private long tick = -1;
+
+    /** {@code wheelSize} is rounded up to a power of two. */
+    public HashedWheelTimer(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) throw new IllegalArgumentException("tick and size must be positive");
+        int size = 1;
+        while (size < wheelSize) size <<= 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) wheel.add(new ArrayList<>());
+    }
+
+    /** Runs {@code task} on the first advance at least {@code delayMillis} after {@code nowMillis}. */
+    public Timeout schedule(LongConsumer task, long delayMillis, long nowMillis) {
+        Timeout timeout = new Timeout(task, nowMillis + Math.max(0, delayMillis));
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /** Runs every task whose deadline has passed by {@code nowMillis}; returns how many ran. */
+    public int advance(long nowMillis) {
+        int ran = 0;
+        long target = nowMillis / tickMillis;
+        if (tick < 0) tick = target;
+        while (tick <= target) {
+            transferAdded();
+            ran += expire(wheel.get((int) (tick & mask)), nowMillis);
+            tick++;
+        }
+        // Keep the queue short between ticks too.
+        transferAdded();
+        return ran;
+    }
+
+    /** Scheduled and neither run nor cancelled yet, give or take a cancel in progress. */
+    public int pending() {
+        return pending.get();
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long deadlineTick = Math.max((timeout.deadlineMillis + tickMillis - 1) / tickMillis, tick);
+            timeout.rounds = (deadlineTick - tick) / wheel.size();
+            wheel.get((int) (deadlineTick & mask)).add(timeout);
+        }
+    }
+
+    private int expire(List<Timeout> bucket, long nowMillis) {
+        int ran = 0;
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+            } else if (timeout.rounds > 0 || timeout.deadlineMillis > nowMillis) {
+                if (timeout.rounds > 0) timeout.rounds--;
+                bucket.set(kept++, timeout);
+            } else if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                pending.decrementAndGet();
+                timeout.task.accept(nowMillis);
+                ran++;
+            } else {
+                // Cancelled just now.
+                pending.decrementAndGet();
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+        return ran;
+    }
+}
@@ -0,0 +1,159 @@
+package com.kobha.ourmap;
+
+/**
+ * Smooths raw GPS fixes and drops the ones that can't be right, before they reach the
+ * database or the map.
+ *
+ * Each axis of a local east/north plane (meters around a nearby origin) runs its own
+ * constant-velocity Kalman filter, with the fix's reported accuracy as measurement noise.
+ * A fix is rejected outright when its accuracy is worse than the gate ({@link #MAX_ACCURACY_METERS}
+ * unless the caller asked the provider for coarser fixes, see {@link #setMaxAccuracyMeters}) or
+ * when reaching it from the current estimate would take more than {@link #MAX_SPEED_METERS_PER_SECOND}.
+ * After a run of rejections, or a long gap, the filter restarts from the next usable fix, so
+ * a real jump (leaving a tunnel, a restored connection) is only held back for a few fixes.
+ *
+ * Not thread-safe; feed it from the thread that receives the fixes. Nothing is allocated per fix.
+ */
+public class LocationFilter {
+
+    static final double MAX_ACCURACY_METERS = 75;
+    /** About 250 km/h. */
+    static final double MAX_SPEED_METERS_PER_SECOND = 70;
+    /** Standard deviation of the acceleration the model allows, m/s^2. */
+    static final double ACCELERATION_NOISE = 1.5;
+    static final int RESET_AFTER_REJECTS = 5;
+    static final long RESET_AFTER_MILLIS = 60_000;
+    /** Used when a fix comes without an accuracy estimate. */
+    static final double DEFAULT_ACCURACY_METERS = 20;
+    /** The plane is re-centered once the estimate drifts this far from its origin. */
+    private static final double RECENTER_METERS = 10_000;
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private double maxAccuracyMeters = MAX_ACCURACY_METERS;
+    private boolean initialized;
+    private int consecutiveRejects;
+    private long lastTimeMillis;
+
+    private double originLat;
+    private double originLng;
+    private double metersPerDegreeLng;
+
+    // Per axis: position (m), velocity (m/s) and the covariance entries p00, p01, p11.
+    private final double[] east = new double[5];
+    private final double[] north = new double[5];
+
+    private long acceptedCount;
+    private long rejectedCount;
+
+    /**
+     * Writes {lat, lng, speed m/s} of the filtered estimate into {@code out} and returns true, or
+     * returns false and leaves {@code out} alone if the fix was rejected. Pass NaN for an unknown
+     * accuracy.
+     */
+    public boolean process(double lat, double lng, double accuracyMeters, long timeMillis, double[] out) {
+        double accuracy = Double.isNaN(accuracyMeters) || accuracyMeters <= 0 ? DEFAULT_ACCURACY_METERS : accuracyMeters;
+        if (accuracy > maxAccuracyMeters) return reject();
+
+        if (!initialized || timeMillis - lastTimeMillis > RESET_AFTER_MILLIS || consecutiveRejects >= RESET_AFTER_REJECTS) {
+            reset(lat, lng, accuracy, timeMillis);
+            return accept(out);
+        }
+        if (timeMillis <= lastTimeMillis) return reject();
+
+        double dt = (timeMillis - lastTimeMillis) / 1000.0;
+        double x = (lng - originLng) * metersPerDegreeLng;
+        double y = (lat - originLat) * METERS_PER_DEGREE;
+        double dx = x - east[0];
+        double dy = y - north[0];
+        double reach = Math.max(0, Math.sqrt(dx * dx + dy * dy) - accuracy);
+        if (reach / dt > MAX_SPEED_METERS_PER_SECOND) return reject();
+
+        double measurementVariance = accuracy * accuracy;
+        step(east, x, dt, measurementVariance);
+        step(north, y, dt, measurementVariance);
+        lastTimeMillis = timeMillis;
+        if (Math.abs(east[0]) > RECENTER_METERS || Math.abs(north[0]) > RECENTER_METERS) recenter();
+        return accept(out);
+    }
+
+    /**
+     * Raises or lowers the accuracy gate to match what was requested from the provider: a
+     * low-power request only ever gets coarse fixes, and dropping them all would leave nothing
+     * to publish. Coarse fixes still go through the filter, weighted by their accuracy.
+     */
+    public void setMaxAccuracyMeters(double meters) {
+        maxAccuracyMeters = meters;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private void reset(double lat, double lng, double accuracy, long timeMillis) {
+        initialized = true;
+        lastTimeMillis = timeMillis;
+        setOrigin(lat, lng);
+        double initialSpeedVariance = MAX_SPEED_METERS_PER_SECOND * MAX_SPEED_METERS_PER_SECOND / 4;
+        for (double[] axis : new double[][]{east, north}) {
+            axis[0] = 0;
+            axis[1] = 0;
+            axis[2] = accuracy * accuracy;
+            axis[3] = 0;
+            axis[4] = initialSpeedVariance;
+        }
+    }
+
+    private static void step(double[] axis, double z, double dt, double r) {
+        double q = ACCELERATION_NOISE * ACCELERATION_NOISE;
+        double dt2 = dt * dt;
+
+        // Predict.
+        double pos = axis[0] + axis[1] * dt;
+        double vel = axis[1];
+        double p00 = axis[2] + 2 * dt * axis[3] + dt2 * axis[4] + q * dt2 * dt2 / 4;
+        double p01 = axis[3] + dt * axis[4] + q * dt2 * dt / 2;
+        double p11 = axis[4] + q * dt2;
+
+        // Update with the measured position.
+        double s = p00 + r;
+        double k0 = p00 / s;
+        double k1 = p01 / s;
+        double innovation = z - pos;
+        axis[0] = pos + k0 * innovation;
+        axis[1] = vel + k1 * innovation;
+        axis[2] = (1 - k0) * p00;
+        axis[3] = (1 - k0) * p01;
+        axis[4] = p11 - k1 * p01;
+    }
+
+    private void recenter() {
+        setOrigin(originLat + north[0] / METERS_PER_DEGREE, originLng + east[0] / metersPerDegreeLng);
+        east[0] = 0;
+        north[0] = 0;
+    }
+
+    private void setOrigin(double lat, double lng) {
+        originLat = lat;
+        originLng = lng;
+        metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+    }
+
+    private boolean accept(double[] out) {
+        consecutiveRejects = 0;
+        acceptedCount++;
+        out[0] = originLat + north[0] / METERS_PER_DEGREE;
+        out[1] = originLng + east[0] / metersPerDegreeLng;
+        out[2] = Math.sqrt(east[1] * east[1] + north[1] * north[1]);
+        return true;
+    }
+
+    private boolean reject() {
+        consecutiveRejects++;
+        rejectedCount++;
+        return false;
+    }
+}
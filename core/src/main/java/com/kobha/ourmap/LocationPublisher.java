@@ -0,0 +1,119 @@
+package com.kobha.ourmap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publishes a driver's position with as few database writes as possible.
+ *
+ * Callers hand over only the latest fix of a batch. A fix is written when the driver has moved
+ * at least {@code minDistanceMeters} since the last write, when {@code maxSilenceMillis} has
+ * passed (so the GeoFire entry doesn't look stale), or when the assigned customer changed.
+ * The GeoFire node and the rideResponses position go out together as one multi-path update.
+ * {@link #goOffline} removes the GeoFire node through the same writer, so it lands after the
+ * last position.
+ */
+public class LocationPublisher {
+
+    public static final double DEFAULT_MIN_DISTANCE_METERS = 15;
+    public static final long DEFAULT_MAX_SILENCE_MILLIS = 30_000;
+
+    private final String driverId;
+    private final MultiPathWriter writer;
+    private final double minDistanceMeters;
+    private final long maxSilenceMillis;
+
+    private String assignedCustomerId;
+    private boolean forceNext = true;
+
+    private double lastLat;
+    private double lastLng;
+    private long lastWriteMillis;
+
+    private boolean hasFix;
+    private double fixLat;
+    private double fixLng;
+
+    private long publishedCount;
+    private long skippedCount;
+
+    public LocationPublisher(String driverId, MultiPathWriter writer) {
+        this(driverId, writer, DEFAULT_MIN_DISTANCE_METERS, DEFAULT_MAX_SILENCE_MILLIS);
+    }
+
+    public LocationPublisher(String driverId, MultiPathWriter writer,
+                             double minDistanceMeters, long maxSilenceMillis) {
+        this.driverId = driverId;
+        this.writer = writer;
+        this.minDistanceMeters = minDistanceMeters;
+        this.maxSilenceMillis = maxSilenceMillis;
+    }
+
+    public synchronized void setAssignedCustomer(String customerId) {
+        if (customerId == null ? assignedCustomerId != null : !customerId.equals(assignedCustomerId)) {
+            assignedCustomerId = customerId;
+            forceNext = true;
+        }
+    }
+
+    /** Returns true if the fix was written, false if it was collapsed into the previous write. */
+    public synchronized boolean publish(double lat, double lng, long timeMillis) {
+        hasFix = true;
+        fixLat = lat;
+        fixLng = lng;
+
+        if (!forceNext
+                && timeMillis - lastWriteMillis < maxSilenceMillis
+                && GeoMath.distanceMeters(lastLat, lastLng, lat, lng) < minDistanceMeters) {
+            skippedCount++;
+            return false;
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        String driverPath = "locations/Drivers/" + driverId;
+        DriverLocation location = new DriverLocation(lat, lng);
+        updates.put(driverPath + "/g", location.geoHash);
+        updates.put(driverPath + "/l", location.latLngList());
+        if (assignedCustomerId != null) {
+            String responsePath = "rideResponses/" + assignedCustomerId;
+            updates.put(responsePath + "/driver_lat", lat);
+            updates.put(responsePath + "/driver_lng", lng);
+        }
+        writer.updateChildren(updates, null);
+
+        lastLat = lat;
+        lastLng = lng;
+        lastWriteMillis = timeMillis;
+        forceNext = false;
+        publishedCount++;
+        return true;
+    }
+
+    /** Takes the driver out of locations/Drivers; the next {@link #publish} puts them back. */
+    public synchronized void goOffline() {
+        writer.updateChildren(Collections.<String, Object>singletonMap("locations/Drivers/" + driverId, null), null);
+        forceNext = true;
+    }
+
+    public synchronized boolean hasFix() {
+        return hasFix;
+    }
+
+    /** Latest fix handed to {@link #publish}, whether or not it was written. */
+    public synchronized double getLastFixLat() {
+        return fixLat;
+    }
+
+    public synchronized double getLastFixLng() {
+        return fixLng;
+    }
+
+    public synchronized long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+}
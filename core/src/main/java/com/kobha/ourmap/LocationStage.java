@@ -0,0 +1,41 @@
+package com.kobha.ourmap;
+
+/**
+ * The processing every raw fix goes through before it is published or drawn: noise filtering
+ * and outlier rejection by {@link LocationFilter}, then snapping to the current route, if any,
+ * by {@link RouteSnapper}.
+ */
+public class LocationStage {
+
+    private final LocationFilter filter = new LocationFilter();
+    private RouteSnapper snapper;
+    private long snappedCount;
+
+    /** Pass null when there is no route to follow. */
+    public void setRoute(PolylinePath route) {
+        snapper = route != null && route.size() > 1 ? new RouteSnapper(route) : null;
+    }
+
+    /** See {@link LocationFilter#setMaxAccuracyMeters}. */
+    public void setMaxAccuracyMeters(double meters) {
+        filter.setMaxAccuracyMeters(meters);
+    }
+
+    /**
+     * Writes {lat, lng, speed m/s} into {@code out} and returns true, or returns false if the fix
+     * was rejected and should be ignored. Pass NaN for an unknown accuracy.
+     */
+    public boolean process(double lat, double lng, double accuracyMeters, long timeMillis, double[] out) {
+        if (!filter.process(lat, lng, accuracyMeters, timeMillis, out)) return false;
+        if (snapper != null && snapper.snap(out[0], out[1], out)) snappedCount++;
+        return true;
+    }
+
+    public LocationFilter getFilter() {
+        return filter;
+    }
+
+    public long getSnappedCount() {
+        return snappedCount;
+    }
+}
@@ -0,0 +1,114 @@
+package com.kobha.ourmap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A recorded or synthetic stream of location fixes, in a plain text format that is easy to
+ * capture on a device, edit by hand and diff:
+ * <pre>
+ *   # time_ms,lat,lng,accuracy_m,speed_mps
+ *   1700000000000,12.9716,77.5946,8.5,11.2
+ *   1700000001000,12.9717,77.5946,,
+ * </pre>
+ * Lines starting with {@code #} are comments. Accuracy and speed may be left empty when the
+ * provider didn't report them. Fixes must be in time order.
+ */
+public final class LocationTrace {
+
+    public static final String HEADER = "# time_ms,lat,lng,accuracy_m,speed_mps";
+
+    public static final class Fix {
+        public final long timeMillis;
+        public final double lat;
+        public final double lng;
+        /** NaN when unknown. */
+        public final double accuracyMeters;
+        /** NaN when unknown. */
+        public final double speedMetersPerSecond;
+
+        public Fix(long timeMillis, double lat, double lng, double accuracyMeters, double speedMetersPerSecond) {
+            this.timeMillis = timeMillis;
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracyMeters = accuracyMeters;
+            this.speedMetersPerSecond = speedMetersPerSecond;
+        }
+    }
+
+    private final List<Fix> fixes;
+
+    public LocationTrace(List<Fix> fixes) {
+        for (int i = 1; i < fixes.size(); i++) {
+            if (fixes.get(i).timeMillis < fixes.get(i - 1).timeMillis) {
+                throw new IllegalArgumentException("Fix " + i + " is earlier than the one before it");
+            }
+        }
+        this.fixes = Collections.unmodifiableList(new ArrayList<>(fixes));
+    }
+
+    public List<Fix> fixes() {
+        return fixes;
+    }
+
+    public int size() {
+        return fixes.size();
+    }
+
+    public long durationMillis() {
+        return fixes.isEmpty() ? 0 : fixes.get(fixes.size() - 1).timeMillis - fixes.get(0).timeMillis;
+    }
+
+    public static LocationTrace read(BufferedReader reader) throws IOException {
+        List<Fix> fixes = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] fields = line.split(",", -1);
+            if (fields.length < 3) throw new IOException("Line " + lineNumber + ": expected time,lat,lng");
+            try {
+                fixes.add(new Fix(Long.parseLong(fields[0].trim()),
+                        Double.parseDouble(fields[1].trim()), Double.parseDouble(fields[2].trim()),
+                        optional(fields, 3), optional(fields, 4)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        try {
+            return new LocationTrace(fixes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    public void write(Writer out) throws IOException {
+        out.write(HEADER);
+        out.write('\n');
+        for (Fix fix : fixes) {
+            out.write(fix.timeMillis + "," + format(fix.lat) + "," + format(fix.lng) + ","
+                    + formatOptional(fix.accuracyMeters) + "," + formatOptional(fix.speedMetersPerSecond) + "\n");
+        }
+    }
+
+    private static double optional(String[] fields, int index) {
+        if (index >= fields.length || fields[index].trim().isEmpty()) return Double.NaN;
+        return Double.parseDouble(fields[index].trim());
+    }
+
+    private static String format(double degrees) {
+        return String.format(Locale.US, "%.7f", degrees);
+    }
+
+    private static String formatOptional(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.US, "%.1f", value);
+    }
+}
@@ -0,0 +1,43 @@
+package com.kobha.ourmap;
+
+import java.util.Map;
+
+/**
+ * Field access on the raw {@code Map} tree that {@code DataSnapshot.getValue()} returns. The
+ * database hands back whole numbers as Long and others as Double, so numbers are read through
+ * {@link Number}; missing or mistyped fields come back as NaN / null instead of throwing.
+ */
+final class ModelMaps {
+
+    private ModelMaps() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    static double getDouble(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    static double getDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    static String getString(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    static RideState getState(Map<String, Object> map, String key) {
+        String wireName = getString(map, key);
+        if (wireName == null) return null;
+        try {
+            return RideState.fromWireName(wireName);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.kobha.ourmap;
+
+import java.util.Map;
+
+/**
+ * Applies a set of path -> value writes relative to the database root as one atomic update,
+ * the same contract as {@code DatabaseReference.updateChildren}.
+ */
+public interface MultiPathWriter {
+
+    /**
+     * How errors begin when the security rules rejected the update, which retrying won't change;
+     * anything else may be the write failing to get through.
+     */
+    String PERMISSION_DENIED = "permission_denied";
+
+    interface Callback {
+        /** Called once the update is committed ({@code error == null}) or rejected. */
+        void onComplete(String error);
+    }
+
+    void updateChildren(Map<String, Object> updates, Callback callback);
+}
@@ -0,0 +1,160 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offers each ride to one driver at a time, best candidate first. An offer that isn't accepted
+ * within the timeout, or is declined, moves on to the next candidate; when the list runs out the
+ * ride is handed back through {@link Listener#onExhausted}.
+ *
+ * A ride's whole state is one {@link AtomicInteger}: the index of the candidate holding the offer,
+ * or accepted, exhausted or cancelled. Every move is a compare-and-set from the state it was meant
+ * for, so an accept, a timeout and a cancel racing on different threads can't both win, and a
+ * timeout for an offer that has already moved on does nothing. There are no locks; the listener is
+ * called by whichever thread made the move, after it made it.
+ *
+ * Timeouts live in a {@link HashedWheelTimer}, so tens of thousands of outstanding offers cost a
+ * list entry each, and the caller drives them by advancing the timer.
+ */
+public class OfferManager {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 15_000;
+
+    private static final int NOT_STARTED = -1;
+    private static final int ACCEPTED = -2;
+    private static final int EXHAUSTED = -3;
+    private static final int CANCELLED = -4;
+
+    public interface Listener {
+        /**
+         * Offer the ride to {@code driverId} and withdraw it from {@code previousDriverId}, null for
+         * the first offer. Return false if the driver can't take it after all, to skip to the next.
+         */
+        boolean onOffer(String rideId, String driverId, String previousDriverId, long nowMillis);
+
+        /** Nobody took the ride; {@code lastDriverId}'s offer, if any, is still to be withdrawn. */
+        void onExhausted(String rideId, String lastDriverId, long nowMillis);
+    }
+
+    private static final class Offers {
+        final String rideId;
+        final List<String> candidates;
+        final AtomicInteger state = new AtomicInteger(NOT_STARTED);
+        volatile HashedWheelTimer.Timeout timeout;
+
+        Offers(String rideId, List<String> candidates) {
+            this.rideId = rideId;
+            this.candidates = candidates;
+        }
+    }
+
+    private final HashedWheelTimer timer;
+    private final long timeoutMillis;
+    private final Listener listener;
+    private final ConcurrentHashMap<String, Offers> rides = new ConcurrentHashMap<>();
+
+    public OfferManager(HashedWheelTimer timer, long timeoutMillis, Listener listener) {
+        this.timer = timer;
+        this.timeoutMillis = timeoutMillis;
+        this.listener = listener;
+    }
+
+    /**
+     * Offers {@code rideId} to {@code candidates} in order. False if the ride already has offers
+     * going; an empty list is exhausted right away.
+     */
+    public boolean start(String rideId, List<String> candidates, long nowMillis) {
+        Offers offers = new Offers(rideId, new ArrayList<>(candidates));
+        if (rides.putIfAbsent(rideId, offers) != null) return false;
+        moveOn(offers, NOT_STARTED, null, nowMillis);
+        return true;
+    }
+
+    /** True if {@code driverId} held the offer; the ride is then done here. */
+    public boolean accept(String rideId, String driverId) {
+        Offers offers = rides.get(rideId);
+        if (offers == null) return false;
+        int current = offers.state.get();
+        if (current < 0 || !offers.candidates.get(current).equals(driverId)
+                || !offers.state.compareAndSet(current, ACCEPTED)) {
+            return false;
+        }
+        finish(offers);
+        return true;
+    }
+
+    /** Moves on to the next candidate right away; false if {@code driverId} didn't hold the offer. */
+    public boolean decline(String rideId, String driverId, long nowMillis) {
+        Offers offers = rides.get(rideId);
+        if (offers == null) return false;
+        int current = offers.state.get();
+        if (current < 0 || !offers.candidates.get(current).equals(driverId)) return false;
+        return moveOn(offers, current, driverId, nowMillis);
+    }
+
+    /** Stops offering without telling the listener; the driver holding the offer is returned, if any. */
+    public String cancel(String rideId) {
+        Offers offers = rides.get(rideId);
+        if (offers == null) return null;
+        while (true) {
+            int current = offers.state.get();
+            if (current < NOT_STARTED) return null;
+            if (offers.state.compareAndSet(current, CANCELLED)) {
+                finish(offers);
+                return current >= 0 ? offers.candidates.get(current) : null;
+            }
+        }
+    }
+
+    /** The driver currently holding the ride's offer, or null. */
+    public String offeredTo(String rideId) {
+        Offers offers = rides.get(rideId);
+        if (offers == null) return null;
+        int current = offers.state.get();
+        return current >= 0 ? offers.candidates.get(current) : null;
+    }
+
+    public boolean isOffering(String rideId) {
+        return rides.containsKey(rideId);
+    }
+
+    /** Rides with offers going. */
+    public int size() {
+        return rides.size();
+    }
+
+    /**
+     * Moves the offer on from candidate {@code from}, skipping candidates the listener turns down.
+     * {@code previous} is the last driver that actually got the offer.
+     */
+    private boolean moveOn(Offers offers, int from, String previous, long nowMillis) {
+        int current = from;
+        while (true) {
+            int next = current + 1;
+            if (next == offers.candidates.size()) {
+                if (!offers.state.compareAndSet(current, EXHAUSTED)) return current != from;
+                finish(offers);
+                listener.onExhausted(offers.rideId, previous, nowMillis);
+                return true;
+            }
+            if (!offers.state.compareAndSet(current, next)) return current != from;
+            if (current == from && offers.timeout != null) offers.timeout.cancel();
+            current = next;
+            if (listener.onOffer(offers.rideId, offers.candidates.get(next), previous, nowMillis)) {
+                int offered = next;
+                offers.timeout = timer.schedule(now -> moveOn(offers, offered, offers.candidates.get(offered), now),
+                        timeoutMillis, nowMillis);
+                return true;
+            }
+        }
+    }
+
+    private void finish(Offers offers) {
+        HashedWheelTimer.Timeout timeout = offers.timeout;
+        if (timeout != null) timeout.cancel();
+        rides.remove(offers.rideId, offers);
+    }
+}
@@ -0,0 +1,260 @@
+package com.kobha.ourmap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory prefix index over place names for type-ahead suggestions.
+ *
+ * Names are normalized like {@link GeocodeCache} keys and indexed once per word, so "road"
+ * finds "MG Road". The index is a compressed trie where every node keeps the ids of the
+ * best-weighted places below it, so a lookup is a walk down the typed prefix followed by a
+ * copy of at most {@link #TOP_PER_NODE} ids; it never scans a subtree. Weights only go up,
+ * which keeps those per-node lists exact without ever rebuilding them.
+ *
+ * Reads come from the suggestion filter thread while history, POI files and remote results
+ * are added from background threads, so access goes through a read/write lock.
+ */
+public class PlaceIndex {
+
+    public static final int TOP_PER_NODE = 8;
+    public static final double HISTORY_WEIGHT = 1_000_000;
+
+    private static final int MAX_WORDS_INDEXED = 6;
+
+    public static final class Place {
+        public final String name;
+        public final double lat;
+        public final double lng;
+
+        Place(String name, double lat, double lng) {
+            this.name = name;
+            this.lat = lat;
+            this.lng = lng;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final List<Place> places = new ArrayList<>();
+    private double[] weights = new double[64];
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+
+    /**
+     * Adds a place or, if one with the same normalized name exists, refreshes its coordinates
+     * and raises its weight to {@code weight} when that is higher.
+     */
+    public void add(String name, double lat, double lng, double weight) {
+        String key = GeocodeCache.normalize(name);
+        if (key.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = idsByKey.get(key);
+            int id;
+            if (existing != null) {
+                id = existing;
+                places.set(id, new Place(places.get(id).name, lat, lng));
+                if (weight <= weights[id]) return;
+                weights[id] = weight;
+            } else {
+                id = places.size();
+                places.add(new Place(name.trim(), lat, lng));
+                if (id == weights.length) {
+                    weights = Arrays.copyOf(weights, id * 2);
+                }
+                weights[id] = weight;
+                idsByKey.put(key, id);
+            }
+
+            int words = 0;
+            for (int start = 0; start < key.length() && words < MAX_WORDS_INDEXED; words++) {
+                insert(key, start, id);
+                int space = key.indexOf(' ', start);
+                if (space < 0) break;
+                start = space + 1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads "name TAB lat TAB lng [TAB weight]" lines, as in the downloadable city POI file.
+     * Blank lines, '#' comments and malformed lines are skipped. Returns the number added.
+     */
+    public int addAll(BufferedReader reader) throws IOException {
+        int added = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+            String[] parts = line.split("\t");
+            if (parts.length < 3) continue;
+            try {
+                double weight = parts.length > 3 ? Double.parseDouble(parts[3]) : 1;
+                add(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), weight);
+                added++;
+            } catch (NumberFormatException ignored) {
+                // Skip the line; one bad row shouldn't cost the rest of the file.
+            }
+        }
+        return added;
+    }
+
+    /** Fills {@code out} with up to {@code limit} places matching the prefix, best first. */
+    public void search(CharSequence prefix, int limit, List<Place> out) {
+        out.clear();
+        String key = GeocodeCache.normalize(prefix.toString());
+        if (key.isEmpty()) return;
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) return;
+                int common = commonPrefix(child.edge, key, i);
+                if (i + common == key.length()) {
+                    node = child;
+                    break;
+                }
+                if (common < child.edge.length()) return;
+                i += common;
+                node = child;
+            }
+            int n = Math.min(limit, node.topCount);
+            for (int k = 0; k < n; k++) {
+                out.add(places.get(node.top[k]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return places.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(String key, int start, int id) {
+        Node node = root;
+        int i = start;
+        while (i < key.length()) {
+            char c = key.charAt(i);
+            Node child = node.child(c);
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.addChild(child);
+                offer(child, id);
+                return;
+            }
+
+            int common = commonPrefix(child.edge, key, i);
+            if (common < child.edge.length()) {
+                Node split = new Node(child.edge.substring(0, common));
+                System.arraycopy(child.top, 0, split.top, 0, child.topCount);
+                split.topCount = child.topCount;
+                node.replaceChild(c, split);
+                child.edge = child.edge.substring(common);
+                split.addChild(child);
+                child = split;
+            }
+            offer(child, id);
+            i += common;
+            node = child;
+        }
+    }
+
+    /** Puts {@code id} into the node's ranked list if its current weight earns a place there. */
+    private void offer(Node node, int id) {
+        double weight = weights[id];
+        int pos = -1;
+        for (int k = 0; k < node.topCount; k++) {
+            if (node.top[k] == id) {
+                pos = k;
+                break;
+            }
+        }
+        if (pos < 0) {
+            if (node.topCount < TOP_PER_NODE) {
+                pos = node.topCount++;
+            } else if (weight > weights[node.top[TOP_PER_NODE - 1]]) {
+                pos = TOP_PER_NODE - 1;
+            } else {
+                return;
+            }
+            node.top[pos] = id;
+        }
+        while (pos > 0 && weights[node.top[pos - 1]] < weight) {
+            node.top[pos] = node.top[pos - 1];
+            node.top[pos - 1] = id;
+            pos--;
+        }
+    }
+
+    private static int commonPrefix(String edge, String key, int from) {
+        int max = Math.min(edge.length(), key.length() - from);
+        int n = 0;
+        while (n < max && edge.charAt(n) == key.charAt(from + n)) n++;
+        return n;
+    }
+
+    private static final class Node {
+        String edge;
+        Node[] children = new Node[0];
+        final int[] top = new int[TOP_PER_NODE];
+        int topCount;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        /** Children are kept sorted by first character, so lookups are a binary search. */
+        Node child(char c) {
+            int i = indexOf(c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        void addChild(Node child) {
+            int i = -indexOf(child.edge.charAt(0)) - 1;
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, i);
+            grown[i] = child;
+            System.arraycopy(children, i, grown, i + 1, children.length - i);
+            children = grown;
+        }
+
+        void replaceChild(char c, Node child) {
+            children[indexOf(c)] = child;
+        }
+
+        private int indexOf(char c) {
+            int lo = 0;
+            int hi = children.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char m = children[mid].edge.charAt(0);
+                if (m < c) lo = mid + 1;
+                else if (m > c) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
+        }
+    }
+}
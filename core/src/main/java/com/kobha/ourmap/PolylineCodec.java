@@ -0,0 +1,95 @@
+package com.kobha.ourmap;
+
+/**
+ * Encoded polyline format used by the Directions API (1e-5 degree precision).
+ *
+ * Decoding writes into a reusable {@link PolylinePath} or streams points to a
+ * {@link PointConsumer}; neither allocates per point.
+ */
+public final class PolylineCodec {
+
+    public interface PointConsumer {
+        void accept(double lat, double lng);
+    }
+
+    private static final double PRECISION = 1e5;
+
+    private PolylineCodec() {}
+
+    public static PolylinePath decode(CharSequence encoded) {
+        PolylinePath path = new PolylinePath(Math.max(16, encoded.length() / 4));
+        decode(encoded, path);
+        return path;
+    }
+
+    /** Clears {@code into} and fills it with the decoded points. */
+    public static PolylinePath decode(CharSequence encoded, PolylinePath into) {
+        into.clear();
+        decode(encoded, into::add);
+        return into;
+    }
+
+    /** Streams each decoded point to {@code consumer} and returns the number of points. */
+    public static int decode(CharSequence encoded, PointConsumer consumer) {
+        int index = 0;
+        int len = encoded.length();
+        int lat = 0;
+        int lng = 0;
+        int count = 0;
+
+        while (index < len) {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (index >= len) throw new IllegalArgumentException("Truncated polyline at " + index);
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            lat += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            result = 0;
+            shift = 0;
+            do {
+                if (index >= len) throw new IllegalArgumentException("Truncated polyline at " + index);
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            lng += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            consumer.accept(lat / PRECISION, lng / PRECISION);
+            count++;
+        }
+        return count;
+    }
+
+    public static String encode(PolylinePath path) {
+        StringBuilder out = new StringBuilder(path.size() * 6);
+        encode(path, out);
+        return out.toString();
+    }
+
+    public static void encode(PolylinePath path, StringBuilder out) {
+        long prevLat = 0;
+        long prevLng = 0;
+        for (int i = 0; i < path.size(); i++) {
+            long lat = Math.round(path.lat(i) * PRECISION);
+            long lng = Math.round(path.lng(i) * PRECISION);
+            encodeValue(lat - prevLat, out);
+            encodeValue(lng - prevLng, out);
+            prevLat = lat;
+            prevLng = lng;
+        }
+    }
+
+    private static void encodeValue(long value, StringBuilder out) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+}
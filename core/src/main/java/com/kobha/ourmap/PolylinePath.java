@@ -0,0 +1,52 @@
+package com.kobha.ourmap;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of lat/lng points backed by one interleaved double[], so a decoded route costs
+ * a single array instead of one object per point. Reuse an instance to avoid even that.
+ */
+public final class PolylinePath {
+
+    private double[] coords;
+    private int size;
+
+    public PolylinePath() {
+        this(64);
+    }
+
+    public PolylinePath(int initialCapacity) {
+        coords = new double[Math.max(1, initialCapacity) * 2];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double lat(int i) {
+        checkIndex(i);
+        return coords[2 * i];
+    }
+
+    public double lng(int i) {
+        checkIndex(i);
+        return coords[2 * i + 1];
+    }
+
+    public void add(double lat, double lng) {
+        if (2 * size + 2 > coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[2 * size] = lat;
+        coords[2 * size + 1] = lng;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i + " not in [0, " + size + ")");
+    }
+}
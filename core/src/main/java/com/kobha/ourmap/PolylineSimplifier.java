@@ -0,0 +1,79 @@
+package com.kobha.ourmap;
+
+/**
+ * Douglas-Peucker simplification on a local equirectangular projection, with the tolerance in
+ * meters. Iterative, so long intercity routes can't overflow the call stack.
+ */
+public final class PolylineSimplifier {
+
+    private static final double METERS_PER_DEGREE = Math.PI * GeoMath.EARTH_RADIUS_METERS / 180.0;
+
+    private PolylineSimplifier() {}
+
+    /** Clears {@code out} and fills it with the points of {@code path} that survive. */
+    public static PolylinePath simplify(PolylinePath path, double toleranceMeters, PolylinePath out) {
+        out.clear();
+        int n = path.size();
+        if (n <= 2) {
+            for (int i = 0; i < n; i++) out.add(path.lat(i), path.lng(i));
+            return out;
+        }
+
+        double cosLat = Math.cos(Math.toRadians(path.lat(0)));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = path.lng(i) * cosLat * METERS_PER_DEGREE;
+            y[i] = path.lat(i) * METERS_PER_DEGREE;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double toleranceSq = toleranceMeters * toleranceMeters;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double maxDistSq = 0;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistanceSq(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > maxDistSq) {
+                    maxDistSq = d;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0 && maxDistSq > toleranceSq) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) out.add(path.lat(i), path.lng(i));
+        }
+        return out;
+    }
+
+    static double segmentDistanceSq(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,154 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Write rate and end-to-end latency of a replayed location stream.
+ *
+ * The driver side reports each fix and each publish; the watching side (a listener on the
+ * customer's {@code rideResponses} node) reports each position it receives. Deliveries are
+ * matched to publishes by position, so a listener that skips intermediate values is handled.
+ * Two latencies come out of it: wall-clock time from publish to delivery, and staleness, the
+ * trace time between each fix and the fix behind the position the watcher last saw. Error is the
+ * distance between each fix and that position, and a publish the watcher was skipped past counts
+ * as dropped.
+ * Thread-safe; deliveries may arrive on any thread.
+ */
+public class ReplayReport {
+
+    private static final class Published {
+        final double lat;
+        final double lng;
+        final long traceMillis;
+        final long nanos;
+
+        Published(double lat, double lng, long traceMillis, long nanos) {
+            this.lat = lat;
+            this.lng = lng;
+            this.traceMillis = traceMillis;
+            this.nanos = nanos;
+        }
+    }
+
+    private final ArrayDeque<Published> inFlight = new ArrayDeque<>();
+    private final List<Long> latencyMicros = new ArrayList<>();
+    private final List<Long> stalenessMillis = new ArrayList<>();
+    private final List<Double> errorMeters = new ArrayList<>();
+    private long fixes;
+    private long writes;
+    private long deliveries;
+    private long dropped;
+    private long firstFixMillis = -1;
+    private long lastFixMillis;
+    private long seenTraceMillis = -1;
+    private double seenLat;
+    private double seenLng;
+
+    public synchronized void onFix(long traceMillis, double lat, double lng) {
+        if (firstFixMillis < 0) firstFixMillis = traceMillis;
+        lastFixMillis = traceMillis;
+        fixes++;
+        if (seenTraceMillis >= 0) {
+            stalenessMillis.add(traceMillis - seenTraceMillis);
+            errorMeters.add(GeoMath.distanceMeters(lat, lng, seenLat, seenLng));
+        }
+    }
+
+    /**
+     * Called just before a position is handed to the writer, since an in-memory database may
+     * deliver it before the publish call returns. Follow with {@link #onNotPublished()} if the
+     * publisher didn't write it after all.
+     */
+    public synchronized void onPublishing(double lat, double lng, long traceMillis) {
+        writes++;
+        inFlight.add(new Published(lat, lng, traceMillis, System.nanoTime()));
+    }
+
+    public synchronized void onNotPublished() {
+        writes--;
+        inFlight.pollLast();
+    }
+
+    public synchronized void onDelivered(double lat, double lng) {
+        long now = System.nanoTime();
+        Published match = null;
+        for (Published p : inFlight) {
+            if (p.lat == lat && p.lng == lng) {
+                match = p;
+                break;
+            }
+        }
+        // A position nobody published here (e.g. set at acceptance) leaves the queue alone.
+        if (match == null) return;
+
+        // Anything published before the match was either skipped by the listener or already seen.
+        while (inFlight.peek() != match) {
+            inFlight.poll();
+            dropped++;
+        }
+        inFlight.poll();
+        deliveries++;
+        latencyMicros.add((now - match.nanos) / 1_000);
+        seenTraceMillis = match.traceMillis;
+        seenLat = lat;
+        seenLng = lng;
+    }
+
+    public synchronized long getFixes() {
+        return fixes;
+    }
+
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    public synchronized long getDeliveries() {
+        return deliveries;
+    }
+
+    /** Published positions the watcher never saw because a later one reached it first. */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /** Writes per minute of trace time. */
+    public synchronized double writesPerMinute() {
+        long span = lastFixMillis - firstFixMillis;
+        return span <= 0 ? writes : writes * 60_000.0 / span;
+    }
+
+    public synchronized long latencyMicrosPercentile(double p) {
+        return percentile(latencyMicros, p, 0L);
+    }
+
+    public synchronized long stalenessMillisPercentile(double p) {
+        return percentile(stalenessMillis, p, 0L);
+    }
+
+    public synchronized double errorMetersPercentile(double p) {
+        return percentile(errorMeters, p, 0.0);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "%d fixes, %d writes (%.1f/min), %d delivered, %d dropped; latency p50 %d us p95 %d us;"
+                        + " staleness p50 %d ms p95 %d ms; error p50 %.1f m max %.1f m",
+                fixes, writes, writesPerMinute(), deliveries, dropped,
+                percentile(latencyMicros, 50, 0L), percentile(latencyMicros, 95, 0L),
+                percentile(stalenessMillis, 50, 0L), percentile(stalenessMillis, 95, 0L),
+                percentile(errorMeters, 50, 0.0), percentile(errorMeters, 100, 0.0));
+    }
+
+    private static <T extends Comparable<T>> T percentile(List<T> values, double p, T empty) {
+        if (values.isEmpty()) return empty;
+        List<T> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
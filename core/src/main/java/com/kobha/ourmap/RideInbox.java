@@ -0,0 +1,173 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The ride offers a driver has open, as they come and go under driverOffers/{driverId}.
+ *
+ * Offers are kept by customer id, and in two {@link TreeSet}s: by distance from the driver to
+ * the pickup and by age, so adding, updating and removing one is O(log n), the nearest is always
+ * first and the oldest is the next to expire. Until the driver's position is known the distance
+ * the offer was made with is used.
+ *
+ * An offer's age counts from its {@link RideOffer#offeredAtMillis}, the database's time when it
+ * was written, so an offer that took a while to arrive doesn't outlive the dispatcher's timeout.
+ * Unstamped offers count from when they were received. Callers pass times on the database's
+ * clock, i.e. corrected by the server time offset.
+ *
+ * One offer is selected at a time, for the screen to show. It stays selected while the driver
+ * moves and the order changes, until it goes away; then the nearest one is.
+ *
+ * Not thread-safe; the driver screen uses it from the main thread.
+ */
+public class RideInbox {
+
+    public static final class Entry {
+        public final String customerId;
+        public final RideOffer offer;
+        public final long receivedMillis;
+        /** When the offer's timeout started. */
+        public final long offeredMillis;
+        private double distanceMeters;
+
+        Entry(String customerId, RideOffer offer, long receivedMillis, long offeredMillis) {
+            this.customerId = customerId;
+            this.offer = offer;
+            this.receivedMillis = receivedMillis;
+            this.offeredMillis = offeredMillis;
+        }
+
+        public double distanceMeters() {
+            return distanceMeters;
+        }
+    }
+
+    private static final Comparator<Entry> BY_DISTANCE = (a, b) -> {
+        int byDistance = Double.compare(a.distanceMeters, b.distanceMeters);
+        return byDistance != 0 ? byDistance : a.customerId.compareTo(b.customerId);
+    };
+
+    private static final Comparator<Entry> BY_AGE = (a, b) -> {
+        int byAge = Long.compare(a.offeredMillis, b.offeredMillis);
+        return byAge != 0 ? byAge : a.customerId.compareTo(b.customerId);
+    };
+
+    private final HashMap<String, Entry> byCustomer = new HashMap<>();
+    private final TreeSet<Entry> byDistance = new TreeSet<>(BY_DISTANCE);
+    private final TreeSet<Entry> byAge = new TreeSet<>(BY_AGE);
+    private double driverLat = Double.NaN;
+    private double driverLng = Double.NaN;
+    private String selectedId;
+
+    /**
+     * Adds an offer, or replaces the one for the same ride. An unstamped update keeps its age; a
+     * stamped one is a new offer of the ride and ages from its own stamp, never later than now.
+     */
+    public void put(String customerId, RideOffer offer, long nowMillis) {
+        Entry old = remove(customerId);
+        long offeredMillis = offer.offeredAtMillis > 0 ? Math.min(offer.offeredAtMillis, nowMillis)
+                : old != null ? old.offeredMillis : nowMillis;
+        Entry entry = new Entry(customerId, offer, old != null ? old.receivedMillis : nowMillis, offeredMillis);
+        entry.distanceMeters = distanceTo(offer);
+        byCustomer.put(customerId, entry);
+        byDistance.add(entry);
+        byAge.add(entry);
+    }
+
+    /** Returns the removed offer, or null if there was none for the ride. */
+    public Entry remove(String customerId) {
+        Entry entry = byCustomer.remove(customerId);
+        if (entry != null) {
+            byDistance.remove(entry);
+            byAge.remove(entry);
+        }
+        return entry;
+    }
+
+    public void clear() {
+        byCustomer.clear();
+        byDistance.clear();
+        byAge.clear();
+        selectedId = null;
+    }
+
+    /** Re-sorts every offer by distance from the new position. */
+    public void setDriverPosition(double lat, double lng) {
+        driverLat = lat;
+        driverLng = lng;
+        byDistance.clear();
+        for (Entry entry : byCustomer.values()) {
+            entry.distanceMeters = distanceTo(entry.offer);
+            byDistance.add(entry);
+        }
+    }
+
+    /** Removes offers made at or before {@code nowMillis - timeoutMillis} and returns how many. */
+    public int expire(long nowMillis, long timeoutMillis) {
+        int expired = 0;
+        while (!byAge.isEmpty() && byAge.first().offeredMillis <= nowMillis - timeoutMillis) {
+            Entry entry = byAge.pollFirst();
+            byCustomer.remove(entry.customerId);
+            byDistance.remove(entry);
+            expired++;
+        }
+        return expired;
+    }
+
+    /** When the oldest offer expires, or {@link Long#MAX_VALUE} with none open. */
+    public long nextExpiryMillis(long timeoutMillis) {
+        return byAge.isEmpty() ? Long.MAX_VALUE : byAge.first().offeredMillis + timeoutMillis;
+    }
+
+    public Entry get(String customerId) {
+        return byCustomer.get(customerId);
+    }
+
+    /** The selected offer, or the nearest if none is; null with none open. */
+    public Entry selected() {
+        Entry entry = selectedId != null ? byCustomer.get(selectedId) : null;
+        if (entry == null) {
+            entry = byDistance.isEmpty() ? null : byDistance.first();
+            selectedId = entry != null ? entry.customerId : null;
+        }
+        return entry;
+    }
+
+    public void select(String customerId) {
+        if (byCustomer.containsKey(customerId)) selectedId = customerId;
+    }
+
+    /** Selects the next further offer after the selected one, back to the nearest after the last. */
+    public Entry selectNext() {
+        Entry current = selected();
+        if (current == null) return null;
+        Entry next = byDistance.higher(current);
+        if (next == null) next = byDistance.first();
+        selectedId = next.customerId;
+        return next;
+    }
+
+    /** Nearest first. */
+    public List<Entry> sorted() {
+        return new ArrayList<>(byDistance);
+    }
+
+    public int size() {
+        return byCustomer.size();
+    }
+
+    public boolean isEmpty() {
+        return byCustomer.isEmpty();
+    }
+
+    private double distanceTo(RideOffer offer) {
+        if (Double.isNaN(driverLat)) {
+            return Double.isNaN(offer.distanceMeters) ? Double.MAX_VALUE : offer.distanceMeters;
+        }
+        return GeoMath.distanceMeters(driverLat, driverLng, offer.pickupLat, offer.pickupLng);
+    }
+}
@@ -0,0 +1,78 @@
+package com.kobha.ourmap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** {@code driverOffers/{driverId}/{customerId}}: one ride as offered to one driver. */
+public final class RideOffer {
+
+    /** Stands in for a time until the database replaces it with its own clock's, like ServerValue.TIMESTAMP. */
+    public static final Map<String, Object> SERVER_TIMESTAMP = Collections.<String, Object>singletonMap(".sv", "timestamp");
+
+    public final double pickupLat;
+    public final double pickupLng;
+    public final double dropLat;
+    public final double dropLng;
+    /** Straight-line distance from the driver to the pickup when the offer was made. */
+    public final double distanceMeters;
+    /** Every driver the same ride went to, so the winner can withdraw the others' offers. */
+    public final List<String> offeredTo;
+    /** Database time the offer was written, 0 until then. */
+    public final long offeredAtMillis;
+
+    public RideOffer(double pickupLat, double pickupLng, double dropLat, double dropLng,
+                     double distanceMeters, List<String> offeredTo) {
+        this(pickupLat, pickupLng, dropLat, dropLng, distanceMeters, offeredTo, 0);
+    }
+
+    public RideOffer(double pickupLat, double pickupLng, double dropLat, double dropLng,
+                     double distanceMeters, List<String> offeredTo, long offeredAtMillis) {
+        this.pickupLat = pickupLat;
+        this.pickupLng = pickupLng;
+        this.dropLat = dropLat;
+        this.dropLng = dropLng;
+        this.distanceMeters = distanceMeters;
+        this.offeredTo = offeredTo;
+        this.offeredAtMillis = offeredAtMillis;
+    }
+
+    /**
+     * Serializes with a shared, already-built offered_to map, since every offer of a ride has the
+     * same one. A new offer's offered_at is left for the database to stamp, so every driver's
+     * timeout runs from the same clock whoever dispatched it.
+     */
+    public Map<String, Object> toMap(Map<String, Object> offeredToMap) {
+        Map<String, Object> map = new HashMap<>(10);
+        map.put("pickup_lat", pickupLat);
+        map.put("pickup_lng", pickupLng);
+        map.put("drop_lat", dropLat);
+        map.put("drop_lng", dropLng);
+        map.put("distance_m", distanceMeters);
+        map.put("offered_to", offeredToMap);
+        map.put("offered_at", offeredAtMillis > 0 ? offeredAtMillis : SERVER_TIMESTAMP);
+        return map;
+    }
+
+    public Map<String, Object> toMap() {
+        return toMap(RideRequest.offeredToMap(offeredTo));
+    }
+
+    /** Returns null unless {@code value} is an offer node with all four coordinates. */
+    public static RideOffer fromValue(Object value) {
+        Map<String, Object> map = ModelMaps.asMap(value);
+        if (map == null) return null;
+
+        double pickupLat = ModelMaps.getDouble(map, "pickup_lat");
+        double pickupLng = ModelMaps.getDouble(map, "pickup_lng");
+        double dropLat = ModelMaps.getDouble(map, "drop_lat");
+        double dropLng = ModelMaps.getDouble(map, "drop_lng");
+        if (Double.isNaN(pickupLat + pickupLng + dropLat + dropLng)) return null;
+
+        double offeredAt = ModelMaps.getDouble(map, "offered_at");
+        return new RideOffer(pickupLat, pickupLng, dropLat, dropLng,
+                ModelMaps.getDouble(map, "distance_m"), RideRequest.offeredToList(map.get("offered_to")),
+                Double.isNaN(offeredAt) ? 0 : (long) offeredAt);
+    }
+}
@@ -0,0 +1,59 @@
+package com.kobha.ourmap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Local snapshot of one ride, enough to redraw the ride screen without the database. */
+public final class RideRecord {
+
+    public final String customerId;
+    public final String driverId;
+    public final RideState state;
+    public final double pickupLat;
+    public final double pickupLng;
+    public final double dropLat;
+    public final double dropLng;
+    public final long updatedAtMillis;
+
+    public RideRecord(String customerId, String driverId, RideState state,
+                      double pickupLat, double pickupLng, double dropLat, double dropLng,
+                      long updatedAtMillis) {
+        this.customerId = customerId;
+        this.driverId = driverId;
+        this.state = state;
+        this.pickupLat = pickupLat;
+        this.pickupLng = pickupLng;
+        this.dropLat = dropLat;
+        this.dropLng = dropLng;
+        this.updatedAtMillis = updatedAtMillis;
+    }
+
+    public RideRecord withState(RideState next, long nowMillis) {
+        return new RideRecord(customerId, driverId, next, pickupLat, pickupLng, dropLat, dropLng, nowMillis);
+    }
+
+    public RideRecord withDriver(String driver, RideState next, long nowMillis) {
+        return new RideRecord(customerId, driver, next, pickupLat, pickupLng, dropLat, dropLng, nowMillis);
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("customerId", customerId);
+        map.put("driverId", driverId);
+        map.put("status", state.wireName());
+        map.put("pickup_lat", pickupLat);
+        map.put("pickup_lng", pickupLng);
+        map.put("drop_lat", dropLat);
+        map.put("drop_lng", dropLng);
+        map.put("updatedAt", updatedAtMillis);
+        return map;
+    }
+
+    static RideRecord fromMap(Map<String, Object> map) {
+        return new RideRecord((String) map.get("customerId"), (String) map.get("driverId"),
+                RideState.fromWireName((String) map.get("status")),
+                ((Number) map.get("pickup_lat")).doubleValue(), ((Number) map.get("pickup_lng")).doubleValue(),
+                ((Number) map.get("drop_lat")).doubleValue(), ((Number) map.get("drop_lng")).doubleValue(),
+                ((Number) map.get("updatedAt")).longValue());
+    }
+}
@@ -0,0 +1,80 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** {@code rideRequests/{customerId}}: what the customer asked for and where the ride stands. */
+public final class RideRequest {
+
+    public final double pickupLat;
+    public final double pickupLng;
+    public final double dropLat;
+    public final double dropLng;
+    public final RideState status;
+    /** Set once a driver has accepted; null before. */
+    public final String driverId;
+    /** Drivers the ride is currently offered to; empty while pending. */
+    public final List<String> offeredTo;
+
+    public RideRequest(double pickupLat, double pickupLng, double dropLat, double dropLng,
+                       RideState status, String driverId, List<String> offeredTo) {
+        this.pickupLat = pickupLat;
+        this.pickupLng = pickupLng;
+        this.dropLat = dropLat;
+        this.dropLng = dropLng;
+        this.status = status;
+        this.driverId = driverId;
+        this.offeredTo = offeredTo;
+    }
+
+    public static RideRequest pending(double pickupLat, double pickupLng, double dropLat, double dropLng) {
+        return new RideRequest(pickupLat, pickupLng, dropLat, dropLng, RideState.PENDING, null,
+                Collections.<String>emptyList());
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(10);
+        map.put("pickup_lat", pickupLat);
+        map.put("pickup_lng", pickupLng);
+        map.put("drop_lat", dropLat);
+        map.put("drop_lng", dropLng);
+        map.put("status", status.wireName());
+        if (driverId != null) map.put("driverId", driverId);
+        if (!offeredTo.isEmpty()) map.put("offered_to", offeredToMap(offeredTo));
+        return map;
+    }
+
+    /** Returns null unless {@code value} is a request node with coordinates and a known status. */
+    public static RideRequest fromValue(Object value) {
+        Map<String, Object> map = ModelMaps.asMap(value);
+        if (map == null) return null;
+
+        double pickupLat = ModelMaps.getDouble(map, "pickup_lat");
+        double pickupLng = ModelMaps.getDouble(map, "pickup_lng");
+        double dropLat = ModelMaps.getDouble(map, "drop_lat");
+        double dropLng = ModelMaps.getDouble(map, "drop_lng");
+        RideState status = ModelMaps.getState(map, "status");
+        if (Double.isNaN(pickupLat + pickupLng + dropLat + dropLng) || status == null) return null;
+
+        return new RideRequest(pickupLat, pickupLng, dropLat, dropLng, status,
+                ModelMaps.getString(map, "driverId"), offeredToList(map.get("offered_to")));
+    }
+
+    /** {@code offered_to} is stored as a set: driverId -> true. */
+    static Map<String, Object> offeredToMap(List<String> driverIds) {
+        Map<String, Object> offeredTo = new HashMap<>(driverIds.size() * 2);
+        for (String driverId : driverIds) {
+            offeredTo.put(driverId, true);
+        }
+        return offeredTo;
+    }
+
+    static List<String> offeredToList(Object value) {
+        Map<String, Object> map = ModelMaps.asMap(value);
+        if (map == null || map.isEmpty()) return Collections.emptyList();
+        return new ArrayList<>(map.keySet());
+    }
+}
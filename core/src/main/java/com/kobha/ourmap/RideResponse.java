@@ -0,0 +1,56 @@
+package com.kobha.ourmap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** {@code rideResponses/{customerId}}: the accepting driver and their latest position. */
+public final class RideResponse {
+
+    public final String driverId;
+    public final String driverEmail;
+    public final String driverName;
+    /** NaN until the driver's position is known. */
+    public final double driverLat;
+    public final double driverLng;
+    public final RideState status;
+
+    public RideResponse(String driverId, String driverEmail, String driverName,
+                        double driverLat, double driverLng, RideState status) {
+        this.driverId = driverId;
+        this.driverEmail = driverEmail;
+        this.driverName = driverName;
+        this.driverLat = driverLat;
+        this.driverLng = driverLng;
+        this.status = status;
+    }
+
+    public boolean hasPosition() {
+        return !Double.isNaN(driverLat) && !Double.isNaN(driverLng);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(8);
+        map.put("driverId", driverId);
+        map.put("driverEmail", driverEmail);
+        map.put("driverName", driverName);
+        if (hasPosition()) {
+            map.put("driver_lat", driverLat);
+            map.put("driver_lng", driverLng);
+        }
+        map.put("status", status.wireName());
+        return map;
+    }
+
+    /** Returns null unless {@code value} is a response node naming a driver. */
+    public static RideResponse fromValue(Object value) {
+        Map<String, Object> map = ModelMaps.asMap(value);
+        if (map == null) return null;
+
+        String driverId = ModelMaps.getString(map, "driverId");
+        if (driverId == null) return null;
+        return new RideResponse(driverId, ModelMaps.getString(map, "driverEmail"),
+                ModelMaps.getString(map, "driverName"),
+                ModelMaps.getDouble(map, "driver_lat"), ModelMaps.getDouble(map, "driver_lng"),
+                ModelMaps.getState(map, "status"));
+    }
+}
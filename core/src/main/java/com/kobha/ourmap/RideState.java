@@ -0,0 +1,56 @@
+package com.kobha.ourmap;
+
+public enum RideState {
+    PENDING("pending"),
+    OFFERED("offered"),
+    ACCEPTED("accepted"),
+    ARRIVING("arriving"),
+    IN_PROGRESS("in_progress"),
+    COMPLETED("completed"),
+    CANCELLED("cancelled");
+
+    private final String wireName;
+
+    RideState(String wireName) {
+        this.wireName = wireName;
+    }
+
+    /** Value stored in the "status" child in the database. */
+    public String wireName() {
+        return wireName;
+    }
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == CANCELLED;
+    }
+
+    public boolean canTransitionTo(RideState next) {
+        if (next == CANCELLED) {
+            return !isTerminal();
+        }
+        switch (this) {
+            case PENDING:
+                return next == OFFERED;
+            case OFFERED:
+                // Back to PENDING when every offer lapsed and the ride needs dispatching again.
+                return next == ACCEPTED || next == PENDING;
+            case ACCEPTED:
+                return next == ARRIVING;
+            case ARRIVING:
+                return next == IN_PROGRESS;
+            case IN_PROGRESS:
+                return next == COMPLETED;
+            default:
+                return false;
+        }
+    }
+
+    public static RideState fromWireName(String wireName) {
+        if (wireName != null) {
+            for (RideState state : values()) {
+                if (state.wireName.equals(wireName)) return state;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ride status: " + wireName);
+    }
+}
@@ -0,0 +1,137 @@
+package com.kobha.ourmap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lifecycle of one ride, keyed by the customer id like the rideRequests and rideResponses nodes.
+ *
+ * Every transition returns the complete set of writes for that step as one multi-path update,
+ * so rideRequests, rideResponses and driverOffers never disagree. The state only advances
+ * locally once the caller has a committed write, via {@link #onCommitted(RideState)}, or when a
+ * newer status is observed in the database via {@link #sync(RideState)}.
+ */
+public class RideStateMachine {
+
+    private final String customerId;
+    private RideState state;
+
+    public RideStateMachine(String customerId, RideState state) {
+        this.customerId = customerId;
+        this.state = state;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public synchronized RideState getState() {
+        return state;
+    }
+
+    public synchronized void sync(RideState observed) {
+        state = observed;
+    }
+
+    public synchronized void onCommitted(RideState next) {
+        checkTransition(next);
+        state = next;
+    }
+
+    /** A fresh request replaces the whole request node and clears the previous ride's response. */
+    public static Map<String, Object> request(String customerId, double pickupLat, double pickupLng,
+                                              double dropLat, double dropLng) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("rideRequests/" + customerId,
+                RideRequest.pending(pickupLat, pickupLng, dropLat, dropLng).toMap());
+        updates.put("rideResponses/" + customerId, null);
+        return updates;
+    }
+
+    public synchronized Map<String, Object> offer(List<String> driverIds, double[] distancesMeters,
+                                                  double pickupLat, double pickupLng,
+                                                  double dropLat, double dropLng) {
+        checkTransition(RideState.OFFERED);
+
+        Map<String, Object> offeredTo = RideRequest.offeredToMap(driverIds);
+
+        Map<String, Object> updates = new HashMap<>();
+        for (int i = 0; i < driverIds.size(); i++) {
+            RideOffer offer = new RideOffer(pickupLat, pickupLng, dropLat, dropLng, distancesMeters[i], driverIds);
+            updates.put("driverOffers/" + driverIds.get(i) + "/" + customerId, offer.toMap(offeredTo));
+        }
+        updates.put(requestPath("offered_to"), offeredTo);
+        updates.put(requestPath("status"), RideState.OFFERED.wireName());
+        return updates;
+    }
+
+    /**
+     * Status, driver identity and the driver's current position land in one write, so the
+     * customer never sees an accepted ride without a driver position. The competing offers
+     * are withdrawn in the same update.
+     */
+    public synchronized Map<String, Object> accept(String driverId, String driverEmail, String driverName,
+                                                   double driverLat, double driverLng,
+                                                   Iterable<String> offeredDriverIds) {
+        checkTransition(RideState.ACCEPTED);
+
+        RideResponse response = new RideResponse(driverId, driverEmail, driverName,
+                driverLat, driverLng, RideState.ACCEPTED);
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(requestPath("status"), RideState.ACCEPTED.wireName());
+        updates.put(requestPath("driverId"), driverId);
+        updates.put("rideResponses/" + customerId, response.toMap());
+        updates.put("driverOffers/" + driverId + "/" + customerId, null);
+        for (String offered : offeredDriverIds) {
+            updates.put("driverOffers/" + offered + "/" + customerId, null);
+        }
+        return updates;
+    }
+
+    /**
+     * Cancels the ride. Before a driver has it, the open offers are withdrawn in the same update,
+     * so no driver keeps seeing a cancelled ride; after, the response follows the status.
+     */
+    public synchronized Map<String, Object> cancel(Iterable<String> offeredDriverIds) {
+        checkTransition(RideState.CANCELLED);
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(requestPath("status"), RideState.CANCELLED.wireName());
+        if (state == RideState.PENDING || state == RideState.OFFERED) {
+            updates.put(requestPath("offered_to"), null);
+            for (String offered : offeredDriverIds) {
+                updates.put("driverOffers/" + offered + "/" + customerId, null);
+            }
+        } else {
+            updates.put("rideResponses/" + customerId + "/status", RideState.CANCELLED.wireName());
+        }
+        return updates;
+    }
+
+    /** Status-only transitions: arriving, in_progress, completed, or back to pending. */
+    public synchronized Map<String, Object> advance(RideState next) {
+        checkTransition(next);
+        if (next == RideState.OFFERED || next == RideState.ACCEPTED || next == RideState.CANCELLED) {
+            throw new IllegalArgumentException("Use offer(), accept() or cancel() for " + next);
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(requestPath("status"), next.wireName());
+        if (state != RideState.PENDING && state != RideState.OFFERED) {
+            updates.put("rideResponses/" + customerId + "/status", next.wireName());
+        }
+        return updates;
+    }
+
+    private String requestPath(String child) {
+        return "rideRequests/" + customerId + "/" + child;
+    }
+
+    private void checkTransition(RideState next) {
+        if (!state.canTransitionTo(next)) {
+            throw new IllegalStateException("Ride " + customerId + " cannot go from " + state + " to " + next);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.kobha.ourmap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only local journal of ride snapshots and outbound database writes.
+ *
+ * Every change is one line appended to the file before anything else happens, so a process
+ * that dies mid-ride comes back with the last known ride and every write that had not been
+ * acknowledged yet. Lines are:
+ * <pre>
+ *   R {ride}                    ride snapshot, latest per customer wins
+ *   O seq key {updates}         queued multi-path update with its idempotency key
+ *   D seq                       that update was applied, or rejected for good
+ *   K key                       a finished update whose server-side marker still exists
+ *   C key                       the server-side marker for that key has been removed
+ * </pre>
+ * A torn last line from a crash is ignored and the next append starts on a fresh line. When
+ * the file has grown well past its live contents it is rewritten through a temp file.
+ */
+public class RideStore {
+
+    public static final int RECENT_RIDES = 20;
+
+    private static final int COMPACT_AFTER_LINES = 500;
+
+    public static final class Op {
+        public final long seq;
+        public final String key;
+        public final Map<String, Object> updates;
+
+        Op(long seq, String key, Map<String, Object> updates) {
+            this.seq = seq;
+            this.key = key;
+            this.updates = updates;
+        }
+    }
+
+    private final File file;
+    private final Map<String, RideRecord> rides = new HashMap<>();
+    private final LinkedHashMap<Long, Op> pending = new LinkedHashMap<>();
+    private final List<String> uncleanedKeys = new ArrayList<>();
+    private long nextSeq = 1;
+    private int lines;
+    private boolean needsNewline;
+    private Writer out;
+
+    public RideStore(File file) {
+        this.file = file;
+        load();
+    }
+
+    // ---- rides ----
+
+    public synchronized void saveRide(RideRecord ride) {
+        rides.put(ride.customerId, ride);
+        append("R " + JsonValues.encode(ride.toMap()));
+        trimRides();
+        maybeCompact();
+    }
+
+    public synchronized RideRecord getRide(String customerId) {
+        return rides.get(customerId);
+    }
+
+    /** Most recently updated ride that hasn't finished, or null. */
+    public synchronized RideRecord activeRide() {
+        RideRecord best = null;
+        for (RideRecord ride : rides.values()) {
+            if (!ride.state.isTerminal() && (best == null || ride.updatedAtMillis > best.updatedAtMillis)) {
+                best = ride;
+            }
+        }
+        return best;
+    }
+
+    /** Rides newest first. */
+    public synchronized List<RideRecord> recentRides() {
+        List<RideRecord> list = new ArrayList<>(rides.values());
+        Collections.sort(list, (a, b) -> Long.compare(b.updatedAtMillis, a.updatedAtMillis));
+        return list;
+    }
+
+    // ---- outbound queue ----
+
+    public synchronized Op enqueue(Map<String, Object> updates) {
+        Op op = new Op(nextSeq++, UUID.randomUUID().toString(), updates);
+        pending.put(op.seq, op);
+        append("O " + op.seq + " " + op.key + " " + JsonValues.encode(updates));
+        return op;
+    }
+
+    /** Unacknowledged updates in the order they were queued. */
+    public synchronized List<Op> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized void markDone(long seq) {
+        Op op = pending.remove(seq);
+        if (op == null) return;
+        append("D " + seq);
+        uncleanedKeys.add(op.key);
+        maybeCompact();
+    }
+
+    /** Keys of finished updates whose server-side markers can be deleted. */
+    public synchronized List<String> uncleanedKeys() {
+        return new ArrayList<>(uncleanedKeys);
+    }
+
+    public synchronized void markCleaned(List<String> keys) {
+        for (String key : keys) {
+            if (uncleanedKeys.remove(key)) {
+                append("C " + key);
+            }
+        }
+    }
+
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+
+    // ---- journal ----
+
+    private void load() {
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                try {
+                    apply(line);
+                } catch (RuntimeException ignored) {
+                    // A torn or corrupt line; everything before it is still good.
+                }
+            }
+        } catch (IOException ignored) {
+            // Unreadable journal: start from what was read so far.
+        }
+        needsNewline = !endsWithNewline(file);
+        trimRides();
+    }
+
+    private void apply(String line) {
+        char type = line.charAt(0);
+        String body = line.substring(2);
+        switch (type) {
+            case 'R': {
+                RideRecord ride = RideRecord.fromMap(JsonValues.decodeObject(body));
+                rides.put(ride.customerId, ride);
+                break;
+            }
+            case 'O': {
+                int first = body.indexOf(' ');
+                int second = body.indexOf(' ', first + 1);
+                long seq = Long.parseLong(body.substring(0, first));
+                String key = body.substring(first + 1, second);
+                Op op = new Op(seq, key, JsonValues.decodeObject(body.substring(second + 1)));
+                pending.put(seq, op);
+                nextSeq = Math.max(nextSeq, seq + 1);
+                break;
+            }
+            case 'D': {
+                Op op = pending.remove(Long.parseLong(body));
+                if (op != null) uncleanedKeys.add(op.key);
+                break;
+            }
+            case 'K':
+                uncleanedKeys.add(body);
+                break;
+            case 'C':
+                uncleanedKeys.remove(body);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal line");
+        }
+    }
+
+    private void append(String line) {
+        try {
+            if (out == null) {
+                File dir = file.getParentFile();
+                if (dir != null && !dir.isDirectory()) dir.mkdirs();
+                out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+            }
+            if (needsNewline) {
+                out.write('\n');
+                needsNewline = false;
+            }
+            out.write(line);
+            out.write('\n');
+            // Flushed to the OS, which survives the process being killed; no fsync per write.
+            out.flush();
+            lines++;
+        } catch (IOException ignored) {
+            // The in-memory state still serves this process.
+        }
+    }
+
+    private void trimRides() {
+        if (rides.size() <= RECENT_RIDES) return;
+        List<RideRecord> newestFirst = recentRides();
+        for (int i = RECENT_RIDES; i < newestFirst.size(); i++) {
+            RideRecord old = newestFirst.get(i);
+            if (old.state.isTerminal()) rides.remove(old.customerId);
+        }
+    }
+
+    private void maybeCompact() {
+        int live = rides.size() + pending.size() + uncleanedKeys.size();
+        if (lines < COMPACT_AFTER_LINES || lines < live * 4) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        int written = 0;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (RideRecord ride : rides.values()) {
+                writer.write("R " + JsonValues.encode(ride.toMap()) + "\n");
+                written++;
+            }
+            for (Op op : pending.values()) {
+                writer.write("O " + op.seq + " " + op.key + " " + JsonValues.encode(op.updates) + "\n");
+                written++;
+            }
+            for (String key : uncleanedKeys) {
+                writer.write("K " + key + "\n");
+                written++;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+
+        close();
+        if (tmp.renameTo(file)) {
+            lines = written;
+            needsNewline = false;
+        } else {
+            tmp.delete();
+        }
+    }
+
+    private static boolean endsWithNewline(File file) {
+        if (file.length() == 0) return true;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
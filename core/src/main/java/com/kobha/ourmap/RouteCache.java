@@ -0,0 +1,153 @@
+package com.kobha.ourmap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Two-level cache of Directions results keyed by origin/destination snapped to a grid.
+ *
+ * The memory level is an LRU of already-decoded routes. The disk level keeps the encoded
+ * polyline, which is far smaller, and is decoded again on the way back into memory.
+ * Entries older than the TTL are treated as missing on either level. Past the disk limit the
+ * least recently used files go first; a file's modification time is its last use.
+ */
+public class RouteCache<R> {
+
+    public interface Decoder<R> {
+        R decode(String encodedPolyline);
+    }
+
+    public static final double DEFAULT_GRID_DEGREES = 0.001;
+    public static final int DEFAULT_MEMORY_ENTRIES = 32;
+    public static final int DEFAULT_DISK_ENTRIES = 500;
+    public static final long DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final String FILE_SUFFIX = ".route";
+
+    private final File directory;
+    private final Decoder<R> decoder;
+    private final double gridDegrees;
+    private final long ttlMillis;
+    private final int maxDiskEntries;
+    private final LinkedHashMap<String, Entry<R>> memory;
+
+    public RouteCache(File directory, Decoder<R> decoder) {
+        this(directory, decoder, DEFAULT_GRID_DEGREES, DEFAULT_MEMORY_ENTRIES, DEFAULT_DISK_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public RouteCache(File directory, Decoder<R> decoder, double gridDegrees,
+                      int maxMemoryEntries, int maxDiskEntries, long ttlMillis) {
+        this.directory = directory;
+        this.decoder = decoder;
+        this.gridDegrees = gridDegrees;
+        this.ttlMillis = ttlMillis;
+        this.maxDiskEntries = maxDiskEntries;
+        this.memory = new LinkedHashMap<String, Entry<R>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RouteCache.Entry<R>> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+    }
+
+    public String key(double originLat, double originLng, double destLat, double destLng) {
+        return String.format(Locale.US, "%d_%d_%d_%d",
+                quantize(originLat), quantize(originLng), quantize(destLat), quantize(destLng));
+    }
+
+    /** Returns the cached route or null. May touch the disk, so call it off the main thread. */
+    public synchronized R get(String key, long nowMillis) {
+        Entry<R> entry = memory.get(key);
+        if (entry != null) {
+            if (nowMillis - entry.fetchedAtMillis < ttlMillis) return entry.route;
+            memory.remove(key);
+        }
+
+        File file = file(key);
+        if (!file.exists()) return null;
+        try {
+            String contents = new String(readFully(file), StandardCharsets.UTF_8);
+            int newline = contents.indexOf('\n');
+            long fetchedAt = Long.parseLong(contents.substring(0, newline));
+            if (nowMillis - fetchedAt >= ttlMillis) {
+                file.delete();
+                return null;
+            }
+            R route = decoder.decode(contents.substring(newline + 1));
+            memory.put(key, new Entry<>(route, fetchedAt));
+            // Last use, not write, decides what trimDisk drops.
+            file.setLastModified(nowMillis);
+            return route;
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    public synchronized R put(String key, String encodedPolyline, long nowMillis) {
+        R route = decoder.decode(encodedPolyline);
+        memory.put(key, new Entry<>(route, nowMillis));
+
+        if (directory.isDirectory() || directory.mkdirs()) {
+            File file = file(key);
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write((nowMillis + "\n" + encodedPolyline).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException ignored) {
+                // The memory level still serves it; the disk copy is best effort.
+            }
+            file.setLastModified(nowMillis);
+            trimDisk();
+        }
+        return route;
+    }
+
+    private void trimDisk() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length <= maxDiskEntries) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - maxDiskEntries; i++) {
+            files[i].delete();
+        }
+    }
+
+    private long quantize(double degrees) {
+        return Math.round(degrees / gridDegrees);
+    }
+
+    private File file(String key) {
+        return new File(directory, key + FILE_SUFFIX);
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[(int) file.length()];
+            int read = 0;
+            while (read < buffer.length) {
+                int n = in.read(buffer, read, buffer.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            return buffer;
+        }
+    }
+
+    private static final class Entry<R> {
+        final R route;
+        final long fetchedAtMillis;
+
+        Entry(R route, long fetchedAtMillis) {
+            this.route = route;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.kobha.ourmap;
+
+/**
+ * A route pre-simplified for a few camera zoom levels. Each level is simplified to about one
+ * screen pixel at its zoom, so switching levels as the camera moves is invisible while the
+ * polyline handed to the map stays small.
+ */
+public final class RouteLevels {
+
+    /** Zoom levels that get their own simplified copy; closer than the last one uses the full path. */
+    static final int[] LEVEL_ZOOMS = {6, 9, 12, 15};
+
+    // Web Mercator ground resolution at zoom 0 on the equator, meters per pixel.
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03392;
+
+    private final PolylinePath[] levels;
+    private final PolylinePath full;
+
+    private RouteLevels(PolylinePath[] levels, PolylinePath full) {
+        this.levels = levels;
+        this.full = full;
+    }
+
+    public static RouteLevels build(PolylinePath full) {
+        double cosLat = full.size() > 0 ? Math.cos(Math.toRadians(full.lat(0))) : 1;
+        PolylinePath[] levels = new PolylinePath[LEVEL_ZOOMS.length];
+        for (int i = 0; i < LEVEL_ZOOMS.length; i++) {
+            double tolerance = METERS_PER_PIXEL_AT_ZOOM_0 * cosLat / Math.pow(2, LEVEL_ZOOMS[i]);
+            levels[i] = PolylineSimplifier.simplify(full, tolerance, new PolylinePath(16));
+        }
+        return new RouteLevels(levels, full);
+    }
+
+    /** Index of the level to draw at {@code zoom}; {@link #levelCount()} means the full path. */
+    public int levelFor(float zoom) {
+        for (int i = 0; i < LEVEL_ZOOMS.length; i++) {
+            if (zoom <= LEVEL_ZOOMS[i]) return i;
+        }
+        return LEVEL_ZOOMS.length;
+    }
+
+    public int levelCount() {
+        return levels.length;
+    }
+
+    public PolylinePath path(int level) {
+        return level < levels.length ? levels[level] : full;
+    }
+
+    public PolylinePath full() {
+        return full;
+    }
+}
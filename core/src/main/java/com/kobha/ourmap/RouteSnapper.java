@@ -0,0 +1,89 @@
+package com.kobha.ourmap;
+
+/**
+ * Pulls positions onto a known route, so a car driving along it is drawn on the road rather
+ * than a few meters beside it.
+ *
+ * A position is snapped to the closest point of the route when that point is within
+ * {@link #SNAP_RADIUS_METERS}; otherwise it is left as it is. The search starts at the segment
+ * of the previous snap and looks a short way ahead first, which keeps the cost per fix flat on
+ * long routes and stops a route that doubles back on itself from pulling the position onto the
+ * wrong carriageway. Only when nothing nearby is close enough is the whole route scanned.
+ */
+public class RouteSnapper {
+
+    static final double SNAP_RADIUS_METERS = 25;
+    /** Segments examined past the last snapped one before falling back to a full scan. */
+    static final int SEARCH_AHEAD = 20;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private final PolylinePath route;
+    private int lastSegment;
+
+    // Result of the latest segment projection.
+    private double bestDistance2;
+    private double bestLat;
+    private double bestLng;
+    private int bestSegment;
+
+    public RouteSnapper(PolylinePath route) {
+        this.route = route;
+    }
+
+    /**
+     * Writes the snapped {lat, lng} into {@code out} and returns true, or writes the input back
+     * unchanged and returns false when the route is too far away.
+     */
+    public boolean snap(double lat, double lng, double[] out) {
+        out[0] = lat;
+        out[1] = lng;
+        int segments = route.size() - 1;
+        if (segments < 1) return false;
+
+        double metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        double radius2 = SNAP_RADIUS_METERS * SNAP_RADIUS_METERS;
+
+        bestDistance2 = Double.MAX_VALUE;
+        search(lastSegment, Math.min(segments, lastSegment + SEARCH_AHEAD), lat, lng, metersPerDegreeLng);
+        if (bestDistance2 > radius2) {
+            search(0, segments, lat, lng, metersPerDegreeLng);
+        }
+        if (bestDistance2 > radius2) return false;
+
+        lastSegment = bestSegment;
+        out[0] = bestLat;
+        out[1] = bestLng;
+        return true;
+    }
+
+    /** Forgets the last snapped segment, e.g. after the position was lost for a while. */
+    public void reset() {
+        lastSegment = 0;
+    }
+
+    private void search(int from, int to, double lat, double lng, double metersPerDegreeLng) {
+        for (int i = from; i < to; i++) {
+            // Segment end points in meters relative to the position being snapped.
+            double ax = (route.lng(i) - lng) * metersPerDegreeLng;
+            double ay = (route.lat(i) - lat) * METERS_PER_DEGREE;
+            double bx = (route.lng(i + 1) - lng) * metersPerDegreeLng;
+            double by = (route.lat(i + 1) - lat) * METERS_PER_DEGREE;
+
+            double sx = bx - ax;
+            double sy = by - ay;
+            double length2 = sx * sx + sy * sy;
+            double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, -(ax * sx + ay * sy) / length2));
+            double px = ax + t * sx;
+            double py = ay + t * sy;
+            double distance2 = px * px + py * py;
+
+            if (distance2 < bestDistance2) {
+                bestDistance2 = distance2;
+                bestSegment = i;
+                bestLat = route.lat(i) + t * (route.lat(i + 1) - route.lat(i));
+                bestLng = route.lng(i) + t * (route.lng(i + 1) - route.lng(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.kobha.ourmap;
+
+/**
+ * Decides how often and how precisely to sample location, from what the phone is doing:
+ * the user's role and ride state, speed, whether it has been parked, and battery.
+ *
+ * The policy is fed fixes and state changes and answers with a {@link Plan}. Plans are built
+ * from a small table with hysteresis on speed and a parked detector, so ordinary GPS jitter
+ * doesn't flip between plans; callers re-request updates only when {@link #plan()} changes.
+ *
+ * Roughly: a driver heading to a pickup gets high accuracy every 2 s; a driver on a trip gets
+ * high accuracy every 2-5 s depending on speed; an idle driver gets balanced power every 10 s,
+ * or 30 s once parked, batched by the provider; low battery stretches all of these.
+ */
+public class SamplingPolicy {
+
+    public enum Role { DRIVER, CUSTOMER }
+
+    /**
+     * Mirrors the fused provider's priorities without depending on Play Services, with the worst
+     * fix each one is expected to deliver: GPS, block level (wifi and cell), city level.
+     */
+    public enum Accuracy {
+        HIGH(LocationFilter.MAX_ACCURACY_METERS), BALANCED(500), LOW_POWER(10_000);
+
+        /** Coarser fixes than this are dropped by the location filter. */
+        public final double worstFixMeters;
+
+        Accuracy(double worstFixMeters) {
+            this.worstFixMeters = worstFixMeters;
+        }
+    }
+
+    public static final class Plan {
+        public final Accuracy accuracy;
+        public final long intervalMillis;
+        public final long minIntervalMillis;
+        public final float minDistanceMeters;
+        /** How long the provider may batch fixes before delivering; 0 for immediate. */
+        public final long maxDelayMillis;
+
+        public Plan(Accuracy accuracy, long intervalMillis, long minIntervalMillis,
+                    float minDistanceMeters, long maxDelayMillis) {
+            this.accuracy = accuracy;
+            this.intervalMillis = intervalMillis;
+            this.minIntervalMillis = minIntervalMillis;
+            this.minDistanceMeters = minDistanceMeters;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+
+        Plan stretched(double factor) {
+            return new Plan(accuracy, Math.round(intervalMillis * factor), Math.round(minIntervalMillis * factor),
+                    minDistanceMeters, Math.round(maxDelayMillis * factor));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Plan)) return false;
+            Plan p = (Plan) o;
+            return accuracy == p.accuracy && intervalMillis == p.intervalMillis
+                    && minIntervalMillis == p.minIntervalMillis && minDistanceMeters == p.minDistanceMeters
+                    && maxDelayMillis == p.maxDelayMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return accuracy.hashCode() * 31 + (int) intervalMillis;
+        }
+
+        @Override
+        public String toString() {
+            return accuracy + "/" + intervalMillis + "ms/" + minDistanceMeters + "m/batch " + maxDelayMillis + "ms";
+        }
+    }
+
+    static final Plan TO_PICKUP = new Plan(Accuracy.HIGH, 2_000, 1_000, 5, 0);
+    static final Plan TRIP_FAST = new Plan(Accuracy.HIGH, 2_000, 1_000, 10, 0);
+    static final Plan TRIP_CITY = new Plan(Accuracy.HIGH, 3_000, 1_500, 10, 0);
+    static final Plan TRIP_SLOW = new Plan(Accuracy.HIGH, 5_000, 2_500, 10, 0);
+    // No displacement filter on either idle plan. A driver who stopped moving must keep getting
+    // fixes: they are how the parked detector notices, and how LocationPublisher's heartbeat keeps
+    // the driver's GeoFire entry fresh.
+    static final Plan IDLE_MOVING = new Plan(Accuracy.BALANCED, 10_000, 5_000, 0, 30_000);
+    static final Plan IDLE_PARKED = new Plan(Accuracy.BALANCED, 30_000, 15_000, 0, 60_000);
+    static final Plan IDLE_LOW_BATTERY = new Plan(Accuracy.LOW_POWER, 60_000, 30_000, 0, 120_000);
+    static final Plan CUSTOMER_RIDE = new Plan(Accuracy.BALANCED, 10_000, 5_000, 20, 0);
+    static final Plan CUSTOMER_IDLE = new Plan(Accuracy.BALANCED, 30_000, 15_000, 50, 0);
+
+    /** Speed bands in m/s, with a gap between entering and leaving each band. */
+    static final double SLOW_ENTER = 2.0;
+    static final double SLOW_EXIT = 3.5;
+    static final double FAST_ENTER = 16.0;
+    static final double FAST_EXIT = 13.0;
+
+    /** Parked once every fix for this long stayed within the radius of the first. */
+    static final long PARKED_AFTER_MILLIS = 120_000;
+    static final double PARKED_RADIUS_METERS = 30;
+
+    static final int LOW_BATTERY_PERCENT = 15;
+    static final int SAVER_BATTERY_PERCENT = 30;
+
+    private enum SpeedBand { SLOW, CITY, FAST }
+
+    private final Role role;
+    private RideState rideState;
+    private int batteryPercent = 100;
+    private boolean charging;
+
+    private SpeedBand speedBand = SpeedBand.CITY;
+    private boolean hasFix;
+    private double lastLat;
+    private double lastLng;
+    private long lastTimeMillis;
+    private double anchorLat;
+    private double anchorLng;
+    private long anchorTimeMillis;
+
+    public SamplingPolicy(Role role) {
+        this.role = role;
+    }
+
+    /** Null when there is no ride. */
+    public void setRideState(RideState state) {
+        rideState = state;
+    }
+
+    public void setBattery(int percent, boolean charging) {
+        this.batteryPercent = percent;
+        this.charging = charging;
+    }
+
+    /** {@code speedMetersPerSecond} may be NaN when the fix has no speed; it is then estimated. */
+    public void onFix(double lat, double lng, double speedMetersPerSecond, long timeMillis) {
+        double speed = speedMetersPerSecond;
+        if (Double.isNaN(speed) && hasFix && timeMillis > lastTimeMillis) {
+            speed = GeoMath.distanceMeters(lastLat, lastLng, lat, lng) / ((timeMillis - lastTimeMillis) / 1000.0);
+        }
+        if (!Double.isNaN(speed)) {
+            updateSpeedBand(speed);
+        }
+
+        if (!hasFix || GeoMath.distanceMeters(anchorLat, anchorLng, lat, lng) > PARKED_RADIUS_METERS) {
+            anchorLat = lat;
+            anchorLng = lng;
+            anchorTimeMillis = timeMillis;
+        }
+        hasFix = true;
+        lastLat = lat;
+        lastLng = lng;
+        lastTimeMillis = timeMillis;
+    }
+
+    public boolean isParked() {
+        return hasFix && lastTimeMillis - anchorTimeMillis >= PARKED_AFTER_MILLIS;
+    }
+
+    public Plan plan() {
+        boolean onRide = rideState != null && !rideState.isTerminal();
+        boolean lowBattery = !charging && batteryPercent <= LOW_BATTERY_PERCENT;
+        boolean saver = !charging && batteryPercent <= SAVER_BATTERY_PERCENT;
+
+        if (role == Role.CUSTOMER) {
+            if (lowBattery) return IDLE_LOW_BATTERY;
+            return onRide ? CUSTOMER_RIDE : CUSTOMER_IDLE;
+        }
+
+        if (onRide) {
+            Plan plan;
+            if (rideState == RideState.IN_PROGRESS) {
+                plan = speedBand == SpeedBand.FAST ? TRIP_FAST : speedBand == SpeedBand.SLOW ? TRIP_SLOW : TRIP_CITY;
+            } else {
+                plan = TO_PICKUP;
+            }
+            // The customer is watching this ride; never drop below high accuracy, only slow down.
+            return lowBattery ? plan.stretched(1.5) : plan;
+        }
+
+        if (lowBattery) return IDLE_LOW_BATTERY;
+        Plan idle = isParked() ? IDLE_PARKED : IDLE_MOVING;
+        return saver ? idle.stretched(2) : idle;
+    }
+
+    private void updateSpeedBand(double speed) {
+        switch (speedBand) {
+            case SLOW:
+                if (speed >= FAST_ENTER) speedBand = SpeedBand.FAST;
+                else if (speed >= SLOW_EXIT) speedBand = SpeedBand.CITY;
+                break;
+            case FAST:
+                if (speed < SLOW_ENTER) speedBand = SpeedBand.SLOW;
+                else if (speed < FAST_EXIT) speedBand = SpeedBand.CITY;
+                break;
+            default:
+                if (speed >= FAST_ENTER) speedBand = SpeedBand.FAST;
+                else if (speed < SLOW_ENTER) speedBand = SpeedBand.SLOW;
+        }
+    }
+}
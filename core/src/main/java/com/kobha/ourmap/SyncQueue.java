@@ -0,0 +1,83 @@
+package com.kobha.ourmap;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable, ordered front for a {@link MultiPathWriter}: every update is journaled in the
+ * {@link RideStore} before it is sent, and whatever had not been acknowledged when the process
+ * died is sent again, in the original order, by {@link #replayPending()}.
+ *
+ * Each update carries its idempotency key as {@code writeLog/{owner}/{key}}, which the
+ * database rules only accept if it doesn't exist yet. A replay of an update that had in fact
+ * been applied is therefore rejected as a whole instead of writing the same transition twice.
+ * Markers of finished updates are deleted by piggybacking on the next update that goes out.
+ *
+ * Any error reported by the database is final (the client library itself holds writes while
+ * offline), so the update is dropped and the error handed to the caller.
+ */
+public class SyncQueue implements MultiPathWriter {
+
+    public static final String MARKER_ROOT = "writeLog/";
+
+    private final RideStore store;
+    private final MultiPathWriter delegate;
+    private final String ownerId;
+    private final Set<Long> inFlight = new HashSet<>();
+
+    public SyncQueue(RideStore store, MultiPathWriter delegate, String ownerId) {
+        this.store = store;
+        this.delegate = delegate;
+        this.ownerId = ownerId;
+    }
+
+    @Override
+    public void updateChildren(Map<String, Object> updates, Callback callback) {
+        send(store.enqueue(updates), callback);
+    }
+
+    /** Sends every update still waiting from an earlier run. Safe to call more than once. */
+    public void replayPending() {
+        for (RideStore.Op op : store.pending()) {
+            send(op, null);
+        }
+    }
+
+    public int pendingCount() {
+        return store.pending().size();
+    }
+
+    private void send(RideStore.Op op, Callback callback) {
+        List<String> cleanup;
+        synchronized (this) {
+            if (!inFlight.add(op.seq)) return;
+            cleanup = store.uncleanedKeys();
+        }
+
+        Map<String, Object> updates = new HashMap<>(op.updates);
+        updates.put(markerPath(op.key), System.currentTimeMillis());
+        for (String key : cleanup) {
+            updates.put(markerPath(key), null);
+        }
+
+        delegate.updateChildren(updates, error -> {
+            synchronized (this) {
+                inFlight.remove(op.seq);
+            }
+            store.markDone(op.seq);
+            if (error == null) {
+                store.markCleaned(cleanup);
+            }
+            if (callback != null) {
+                callback.onComplete(error);
+            }
+        });
+    }
+
+    private String markerPath(String key) {
+        return MARKER_ROOT + ownerId + "/" + key;
+    }
+}
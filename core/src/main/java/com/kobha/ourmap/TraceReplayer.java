@@ -0,0 +1,48 @@
+package com.kobha.ourmap;
+
+/**
+ * Plays a {@link LocationTrace} into a sink, in real time, a multiple of it, or as fast as
+ * possible, so location pipeline changes can be measured without a phone on the road.
+ * Replay runs on the calling thread; gaps between fixes are slept through.
+ */
+public final class TraceReplayer {
+
+    public interface Sink {
+        void onFix(LocationTrace.Fix fix);
+    }
+
+    /** Speed factor that skips all waiting. */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private TraceReplayer() {
+    }
+
+    /** {@code speedFactor} 1 replays in real time, 10 ten times faster. */
+    public static void replay(LocationTrace trace, double speedFactor, Sink sink) throws InterruptedException {
+        if (!(speedFactor > 0)) throw new IllegalArgumentException("speedFactor must be positive");
+        if (trace.size() == 0) return;
+
+        long startNanos = System.nanoTime();
+        long firstMillis = trace.fixes().get(0).timeMillis;
+        for (LocationTrace.Fix fix : trace.fixes()) {
+            if (speedFactor != AS_FAST_AS_POSSIBLE) {
+                long dueNanos = startNanos + (long) ((fix.timeMillis - firstMillis) * 1_000_000L / speedFactor);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+            }
+            sink.onFix(fix);
+        }
+    }
+
+    /** Replays a trace through a driver pipeline, recording what was published into {@code report}. */
+    public static void replay(LocationTrace trace, double speedFactor, DriverLocationPipeline pipeline,
+                              ReplayReport report) throws InterruptedException {
+        replay(trace, speedFactor, fix -> {
+            report.onFix(fix.timeMillis, fix.lat, fix.lng);
+            if (pipeline.onFix(fix.lat, fix.lng, fix.accuracyMeters, fix.speedMetersPerSecond, fix.timeMillis)) {
+                report.onPublishing(pipeline.getLat(), pipeline.getLng(), fix.timeMillis);
+                if (!pipeline.publish()) report.onNotPublished();
+            }
+        });
+    }
+}
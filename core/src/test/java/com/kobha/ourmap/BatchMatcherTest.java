@@ -0,0 +1,158 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BatchMatcherTest {
+
+    private static final double X = BatchMatcher.NO_EDGE;
+
+    @Test
+    public void solve_findsMinimumCostAssignment() {
+        double[] costs = {
+                4, 1, 3,
+                2, 0, 5,
+                3, 2, 2,
+        };
+
+        BatchMatcher.Assignment assignment = BatchMatcher.solve(costs, 3, 3, Long.MAX_VALUE);
+
+        assertEquals(5, assignment.totalCost(), 1e-9);
+        assertEquals(1, assignment.colForRow(0));
+        assertEquals(0, assignment.colForRow(1));
+        assertEquals(2, assignment.colForRow(2));
+        assertTrue(assignment.isOptimal());
+    }
+
+    @Test
+    public void solve_beatsGreedyWhenTheCheapestPairIsATrap() {
+        // Greedy takes the 1 and is left with 10; the optimum pays 2 + 2.
+        double[] costs = {
+                1, 2,
+                2, 10,
+        };
+
+        assertEquals(4, BatchMatcher.solve(costs, 2, 2, Long.MAX_VALUE).totalCost(), 1e-9);
+        assertEquals(11, BatchMatcher.greedy(costs, 2, 2).totalCost(), 1e-9);
+    }
+
+    @Test
+    public void sparseGreedy_matchesDenseGreedy() {
+        Random random = new Random(5);
+        int rows = 200;
+        int cols = 300;
+        double[] costs = new double[rows * cols];
+        Arrays.fill(costs, X);
+        int[][] candidateCols = new int[rows][];
+        double[][] candidateCosts = new double[rows][];
+        for (int r = 0; r < rows; r++) {
+            candidateCols[r] = new int[8];
+            candidateCosts[r] = new double[8];
+            for (int i = 0; i < 8; i++) {
+                int c = (r + i * 37) % cols;
+                candidateCols[r][i] = c;
+                candidateCosts[r][i] = i == 7 ? X : random.nextInt(5_000);
+                costs[r * cols + c] = candidateCosts[r][i];
+            }
+        }
+
+        BatchMatcher.Assignment dense = BatchMatcher.greedy(costs, rows, cols);
+        BatchMatcher.Assignment sparse = BatchMatcher.greedy(candidateCols, candidateCosts, cols);
+
+        assertEquals(dense.matched(), sparse.matched());
+        assertEquals(dense.totalCost(), sparse.totalCost(), 1e-6);
+        assertFalse(sparse.isOptimal());
+    }
+
+    @Test
+    public void solve_handlesMoreRowsThanColumnsAndMissingEdges() {
+        double[] costs = {
+                5, X,
+                1, X,
+                X, X,
+                X, 3,
+        };
+
+        BatchMatcher.Assignment assignment = BatchMatcher.solve(costs, 4, 2, Long.MAX_VALUE);
+
+        assertEquals(2, assignment.matched());
+        assertEquals(-1, assignment.colForRow(0));
+        assertEquals(0, assignment.colForRow(1));
+        assertEquals(-1, assignment.colForRow(2));
+        assertEquals(1, assignment.colForRow(3));
+        assertEquals(4, assignment.totalCost(), 1e-9);
+    }
+
+    @Test
+    public void solve_prefersMorePairsOverCheaperFewer() {
+        // Row 0 alone would take column 0 for 1, leaving row 1 with nothing.
+        double[] costs = {
+                1, 50,
+                9, X,
+        };
+
+        BatchMatcher.Assignment assignment = BatchMatcher.solve(costs, 2, 2, Long.MAX_VALUE);
+
+        assertEquals(2, assignment.matched());
+        assertEquals(59, assignment.totalCost(), 1e-9);
+    }
+
+    @Test
+    public void solve_matchesBruteForceOnRandomSparseMatrices() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            int rows = 1 + random.nextInt(7);
+            int cols = 1 + random.nextInt(7);
+            double[] costs = new double[rows * cols];
+            for (int i = 0; i < costs.length; i++) {
+                costs[i] = random.nextInt(4) == 0 ? X : random.nextInt(100);
+            }
+
+            BatchMatcher.Assignment assignment = BatchMatcher.solve(costs, rows, cols, Long.MAX_VALUE);
+
+            double[] best = bruteForce(costs, rows, cols, 0, new boolean[cols], 0, 0);
+            assertEquals((int) best[0], assignment.matched());
+            assertEquals(best[1], assignment.totalCost(), 1e-9);
+        }
+    }
+
+    @Test
+    public void solve_fallsBackToGreedyWhenOutOfBudget() {
+        Random random = new Random(5);
+        int n = 200;
+        double[] costs = new double[n * n];
+        for (int i = 0; i < costs.length; i++) costs[i] = random.nextDouble() * 1000;
+
+        BatchMatcher.Assignment rushed = BatchMatcher.solve(costs, n, n, 0);
+        BatchMatcher.Assignment exact = BatchMatcher.solve(costs, n, n, Long.MAX_VALUE);
+
+        assertFalse(rushed.isOptimal());
+        assertEquals(n, rushed.matched());
+        assertTrue(rushed.totalCost() >= exact.totalCost());
+        boolean[] taken = new boolean[n];
+        for (int r = 0; r < n; r++) {
+            assertFalse(taken[rushed.colForRow(r)]);
+            taken[rushed.colForRow(r)] = true;
+        }
+    }
+
+    /** {most pairs, least cost among those} over every assignment of rows {@code row..}. */
+    private static double[] bruteForce(double[] costs, int rows, int cols, int row, boolean[] used,
+                                       int pairs, double cost) {
+        if (row == rows) return new double[]{pairs, cost};
+        double[] best = bruteForce(costs, rows, cols, row + 1, used, pairs, cost);
+        for (int c = 0; c < cols; c++) {
+            double edge = costs[row * cols + c];
+            if (used[c] || edge == X) continue;
+            used[c] = true;
+            double[] option = bruteForce(costs, rows, cols, row + 1, used, pairs + 1, cost + edge);
+            used[c] = false;
+            if (option[0] > best[0] || (option[0] == best[0] && option[1] < best[1])) best = option;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,300 @@
+package com.kobha.ourmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DispatchWorkerTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+    /** Roughly 111 m of latitude. */
+    private static final double STEP = 0.001;
+
+    /** Records every update and lets the test decide when and how each one completes. */
+    private static final class FakeWriter implements MultiPathWriter {
+        final List<Map<String, Object>> sent = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+
+        @Override
+        public void updateChildren(Map<String, Object> updates, Callback callback) {
+            sent.add(updates);
+            callbacks.add(callback);
+        }
+
+        Map<String, Object> last() {
+            return sent.get(sent.size() - 1);
+        }
+
+        void completeLast(String error) {
+            callbacks.get(callbacks.size() - 1).onComplete(error);
+        }
+    }
+
+    private FakeWriter writer;
+    private DispatchWorker worker;
+
+    @Before
+    public void setUp() {
+        writer = new FakeWriter();
+        worker = new DispatchWorker(writer, DriverScorer.eta(8));
+        // d0 is nearest, d4 furthest.
+        for (int i = 0; i < 5; i++) {
+            worker.onDriverLocation("d" + i, LAT + (i + 1) * STEP, LNG);
+        }
+    }
+
+    private static RideRequest request(RideState status, String driverId) {
+        return new RideRequest(LAT, LNG, LAT - 0.02, LNG, status, driverId, Collections.<String>emptyList());
+    }
+
+    private static boolean offered(Map<String, Object> updates, String driverId, String customerId) {
+        return updates.containsKey("driverOffers/" + driverId + "/" + customerId)
+                && updates.get("driverOffers/" + driverId + "/" + customerId) != null;
+    }
+
+    @Test
+    public void pendingRequest_offersNearestDriverFirst() {
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+
+        assertEquals(1, writer.sent.size());
+        Map<String, Object> updates = writer.last();
+        assertTrue(offered(updates, "d0", "c1"));
+        assertFalse(updates.containsKey("driverOffers/d1/c1"));
+        assertEquals("offered", updates.get("rideRequests/c1/status"));
+        assertEquals(1, worker.getOfferingCount());
+    }
+
+    @Test
+    public void weightedScorer_skipsPoorlyRatedNearDriver() {
+        worker = new DispatchWorker(writer, DriverScorer.DEFAULT);
+        for (int i = 0; i < 5; i++) {
+            worker.onDriverLocation("d" + i, LAT + (i + 1) * STEP, LNG);
+            worker.onDriverRating("d" + i, 5);
+        }
+        worker.onDriverRating("d0", 1);
+
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+
+        Map<String, Object> updates = writer.last();
+        assertFalse(updates.containsKey("driverOffers/d0/c1"));
+        assertTrue(offered(updates, "d1", "c1"));
+    }
+
+    @Test
+    public void offeredDriver_isNotOfferedAnotherRide() {
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 0);
+
+        Map<String, Object> second = writer.last();
+        assertTrue(offered(second, "d1", "c2"));
+        assertFalse(second.containsKey("driverOffers/d0/c2"));
+    }
+
+    @Test
+    public void acceptance_holdsTheDriver() {
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        writer.completeLast(null);
+        worker.onRideRequest("c1", request(RideState.ACCEPTED, "d0"), 1_000);
+
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 2_000);
+
+        assertTrue(offered(writer.last(), "d1", "c2"));
+        assertEquals(1, worker.getAssignedCount());
+        assertEquals(1, worker.getOfferingCount());
+    }
+
+    @Test
+    public void lateAcceptance_releasesTheDriverHoldingTheOffer() {
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        writer.completeLast(null);
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        writer.completeLast(null);
+        assertTrue(offered(writer.last(), "d1", "c1"));
+
+        // d0 still had the offer on screen and got in first.
+        worker.onRideRequest("c1", request(RideState.ACCEPTED, "d0"), DispatchWorker.OFFER_TIMEOUT_MILLIS + 10);
+        worker.onRideRequest("c2", request(RideState.PENDING, null), DispatchWorker.OFFER_TIMEOUT_MILLIS + 20);
+
+        assertTrue(offered(writer.last(), "d1", "c2"));
+        assertEquals(1, worker.getOfferingCount());
+    }
+
+    @Test
+    public void completedRide_freesTheDriver() {
+        worker = new DispatchWorker(writer, DriverScorer.eta(8));
+        worker.onDriverLocation("d0", LAT + STEP, LNG);
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        writer.completeLast(null);
+        worker.onRideRequest("c1", request(RideState.IN_PROGRESS, "d0"), 1_000);
+        worker.onRideRequest("c1", request(RideState.COMPLETED, "d0"), 2_000);
+
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 3_000);
+
+        assertTrue(offered(writer.last(), "d0", "c2"));
+        assertEquals(1, worker.getOpenRideCount());
+    }
+
+    @Test
+    public void tick_movesExpiredOfferToNextCandidate() {
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        writer.completeLast(null);
+
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS - 1);
+        assertEquals(1, writer.sent.size());
+
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        Map<String, Object> next = writer.last();
+        assertTrue(offered(next, "d1", "c1"));
+        assertTrue(next.containsKey("driverOffers/d0/c1"));
+        assertNull(next.get("driverOffers/d0/c1"));
+        assertEquals("offered", next.get("rideRequests/c1/status"));
+        assertEquals(1, worker.getExpiredOffers());
+    }
+
+    @Test
+    public void exhaustedCandidates_goBackToPendingAndRetryWithOthers() {
+        worker = new DispatchWorker(writer, DriverScorer.eta(8));
+        worker.onDriverLocation("d0", LAT + STEP, LNG);
+        worker.onDriverLocation("d1", LAT + 2 * STEP, LNG);
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        writer.completeLast(null);
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        writer.completeLast(null);
+
+        long exhausted = 2 * DispatchWorker.OFFER_TIMEOUT_MILLIS;
+        worker.tick(exhausted);
+        Map<String, Object> withdrawal = writer.last();
+        assertEquals("pending", withdrawal.get("rideRequests/c1/status"));
+        assertTrue(withdrawal.containsKey("driverOffers/d1/c1"));
+        assertNull(withdrawal.get("driverOffers/d1/c1"));
+        assertEquals(2, worker.getExpiredOffers());
+
+        // The echo of our own write doesn't dispatch; tick does, after the retry delay.
+        worker.onRideRequest("c1", request(RideState.PENDING, null), exhausted);
+        writer.completeLast(null);
+        worker.onDriverLocation("d2", LAT + 3 * STEP, LNG);
+        worker.tick(exhausted + DispatchWorker.RETRY_MILLIS - 1);
+        assertEquals(3, writer.sent.size());
+        worker.tick(exhausted + DispatchWorker.RETRY_MILLIS);
+
+        Map<String, Object> retry = writer.last();
+        assertTrue(offered(retry, "d2", "c1"));
+        assertFalse(retry.containsKey("driverOffers/d0/c1"));
+    }
+
+    @Test
+    public void offerFromBeforeRestart_isWithdrawnAfterTimeoutAndDispatchedAgain() {
+        worker.onRideRequest("c1", new RideRequest(LAT, LNG, LAT - 0.02, LNG, RideState.OFFERED, null,
+                Collections.singletonList("d0")), 0);
+        assertEquals(0, writer.sent.size());
+        // d0 still has it on screen, so isn't offered anything else meanwhile.
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 10);
+        assertTrue(offered(writer.last(), "d1", "c2"));
+        writer.completeLast(null);
+        worker.onRideRequest("c2", request(RideState.ACCEPTED, "d1"), 20);
+
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS - 100);
+        assertEquals(1, writer.sent.size());
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        Map<String, Object> withdrawal = writer.last();
+        assertEquals("pending", withdrawal.get("rideRequests/c1/status"));
+        assertTrue(withdrawal.containsKey("driverOffers/d0/c1"));
+        assertNull(withdrawal.get("driverOffers/d0/c1"));
+
+        worker.onRideRequest("c1", request(RideState.PENDING, null), DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        writer.completeLast(null);
+        worker.tick(DispatchWorker.OFFER_TIMEOUT_MILLIS + 250);
+        assertTrue(offered(writer.last(), "d2", "c1"));
+    }
+
+    @Test
+    public void offerFromBeforeRestart_acceptedInTimeIsKept() {
+        worker.onRideRequest("c1", new RideRequest(LAT, LNG, LAT - 0.02, LNG, RideState.OFFERED, null,
+                Arrays.asList("d0", "d1")), 0);
+        worker.onRideRequest("c1", request(RideState.ACCEPTED, "d1"), 1_000);
+        worker.tick(2 * DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        assertEquals(0, writer.sent.size());
+
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 2 * DispatchWorker.OFFER_TIMEOUT_MILLIS);
+        assertTrue(offered(writer.last(), "d0", "c2"));
+        assertEquals(1, worker.getAssignedCount());
+    }
+
+    @Test
+    public void rejectedOffer_releasesDrivers() {
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        // Cancelled before the offer reached the database; the rules reject it.
+        worker.onRideRequest("c1", request(RideState.CANCELLED, null), 10);
+        writer.completeLast("Permission denied");
+
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 20);
+
+        assertTrue(offered(writer.last(), "d0", "c2"));
+        assertEquals(1, worker.getRejectedWrites());
+    }
+
+    @Test
+    public void noDriverInRange_retriesOnTick() {
+        worker = new DispatchWorker(writer, DriverScorer.eta(8));
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        assertEquals(0, writer.sent.size());
+
+        worker.onDriverLocation("d0", LAT + STEP, LNG);
+        worker.tick(DispatchWorker.RETRY_MILLIS - 1);
+        assertEquals(0, writer.sent.size());
+        worker.tick(DispatchWorker.RETRY_MILLIS);
+
+        assertTrue(offered(writer.last(), "d0", "c1"));
+    }
+
+    @Test
+    public void batchWindow_matchesForLowestTotalPickup() {
+        worker = new DispatchWorker(writer, DriverScorer.eta(8), 2_000);
+        worker.onDriverLocation("near", LAT + STEP, LNG);
+        worker.onDriverLocation("far", LAT + 3 * STEP, LNG);
+        // First come, first served would give "a" the near driver and leave "b" with 3 steps.
+        RideRequest a = new RideRequest(LAT + 1.9 * STEP, LNG, LAT, LNG, RideState.PENDING, null,
+                Collections.<String>emptyList());
+        RideRequest b = new RideRequest(LAT, LNG, LAT, LNG, RideState.PENDING, null,
+                Collections.<String>emptyList());
+        worker.onRideRequest("a", a, 0);
+        worker.onRideRequest("b", b, 500);
+        assertEquals(0, writer.sent.size());
+
+        worker.tick(1_000);
+
+        assertEquals(2, writer.sent.size());
+        Map<String, Object> all = new HashMap<>(writer.sent.get(0));
+        all.putAll(writer.sent.get(1));
+        assertTrue(offered(all, "far", "a"));
+        assertTrue(offered(all, "near", "b"));
+        assertEquals(1, worker.getBatchCount());
+    }
+
+    @Test
+    public void batchWindow_waitsForTheWindowBetweenBatches() {
+        worker = new DispatchWorker(writer, DriverScorer.eta(8), 2_000);
+        worker.onDriverLocation("d0", LAT + STEP, LNG);
+        worker.onDriverLocation("d1", LAT + 2 * STEP, LNG);
+        worker.onRideRequest("c1", request(RideState.PENDING, null), 0);
+        worker.tick(0);
+        assertEquals(1, writer.sent.size());
+
+        worker.onRideRequest("c2", request(RideState.PENDING, null), 100);
+        worker.tick(1_000);
+        assertEquals(1, writer.sent.size());
+        worker.tick(2_000);
+
+        assertEquals(2, writer.sent.size());
+        assertEquals(1, ((Map<?, ?>) writer.last().get("rideRequests/c2/offered_to")).size());
+    }
+}
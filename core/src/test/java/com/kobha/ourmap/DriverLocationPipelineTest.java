@@ -0,0 +1,51 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DriverLocationPipelineTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+    /** Roughly one metre of latitude. */
+    private static final double METER = 1.0 / 111_320;
+
+    private final List<Map<String, Object>> writes = new ArrayList<>();
+    private final LocationPublisher publisher = new LocationPublisher("d1", (updates, callback) -> writes.add(updates));
+
+    @Test
+    public void lowBattery_coarseFixesAreStillPublished() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        policy.setBattery(10, false);
+        assertEquals(SamplingPolicy.Accuracy.LOW_POWER, policy.plan().accuracy);
+        DriverLocationPipeline pipeline = new DriverLocationPipeline(publisher, policy);
+
+        // City-level fixes, a minute apart, scattered around where the driver waits.
+        for (int i = 0; i < 5; i++) {
+            double lat = LAT + (i % 2 == 0 ? 800 : -800) * METER;
+            assertTrue(pipeline.onFix(lat, LNG, 3_000, Double.NaN, i * 60_000L));
+            assertTrue(pipeline.publish());
+        }
+
+        assertEquals(5, writes.size());
+        assertTrue(writes.get(4).containsKey("locations/Drivers/d1/l"));
+        assertTrue(GeoMath.distanceMeters(LAT, LNG, pipeline.getLat(), pipeline.getLng()) < 1_000);
+    }
+
+    @Test
+    public void balancedFixes_passOnTheIdlePlanButNotOnARide() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        DriverLocationPipeline pipeline = new DriverLocationPipeline(publisher, policy);
+        assertTrue(pipeline.onFix(LAT, LNG, 100, Double.NaN, 0));
+
+        // Heading to a pickup asks for GPS; a wifi fix is not good enough to show the customer.
+        policy.setRideState(RideState.ACCEPTED);
+        assertFalse(pipeline.onFix(LAT + 20 * METER, LNG, 100, Double.NaN, 2_000));
+        assertTrue(pipeline.onFix(LAT + 20 * METER, LNG, 8, Double.NaN, 4_000));
+    }
+}
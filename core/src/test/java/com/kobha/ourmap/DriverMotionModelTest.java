@@ -0,0 +1,131 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DriverMotionModelTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+    /** Roughly 111 m of latitude. */
+    private static final double STEP = 0.001;
+    private static final double EPS = 1e-9;
+
+    private final double[] out = new double[3];
+
+    @Test
+    public void firstSample_isDrawnWhereItIs() {
+        DriverMotionModel model = new DriverMotionModel();
+        assertFalse(model.hasSample());
+        model.onSample(LAT, LNG, 0);
+
+        assertTrue(model.hasSample());
+        assertFalse(model.positionAt(500, out));
+        assertEquals(LAT, out[0], EPS);
+        assertEquals(LNG, out[1], EPS);
+    }
+
+    @Test
+    public void reset_nextSampleIsDrawnWhereItIs() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        model.onSample(LAT + STEP, LNG, 1_000);
+        model.reset();
+        assertFalse(model.hasSample());
+
+        model.onSample(LAT - STEP, LNG, 1_200);
+        assertFalse(model.positionAt(1_300, out));
+        assertEquals(LAT - STEP, out[0], EPS);
+        assertEquals(0, out[2], EPS);
+    }
+
+    @Test
+    public void positionAt_interpolatesTowardsTheNewSampleOverTheSampleGap() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        model.onSample(LAT + STEP, LNG, 1_000);
+
+        assertTrue(model.positionAt(1_000, out));
+        assertEquals(LAT, out[0], EPS);
+        assertTrue(model.positionAt(1_500, out));
+        assertEquals(LAT + STEP / 2, out[0], EPS);
+        assertEquals(LNG, out[1], EPS);
+        // Heading north.
+        assertEquals(0, out[2], 0.1);
+        model.positionAt(2_000, out);
+        assertEquals(LAT + STEP, out[0], EPS);
+    }
+
+    @Test
+    public void newSample_startsFromWhereTheMarkerIsDrawn() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        model.onSample(LAT + STEP, LNG, 1_000);
+        // Halfway there when the next sample turns east.
+        model.onSample(LAT + STEP, LNG + STEP, 1_500);
+
+        model.positionAt(1_500, out);
+        assertEquals(LAT + STEP / 2, out[0], EPS);
+        assertEquals(LNG, out[1], EPS);
+        assertEquals(90, out[2], 0.5);
+    }
+
+    @Test
+    public void pastTheSegment_deadReckonsThenHoldsAtTheCap() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        model.onSample(LAT + STEP, LNG, 1_000);
+        // The segment ends at 2 000; velocity is one step per second.
+
+        assertTrue(model.positionAt(2_500, out));
+        assertEquals(LAT + 1.5 * STEP, out[0], EPS);
+
+        long capped = 2_000 + DriverMotionModel.MAX_PREDICTION_MILLIS;
+        assertFalse(model.positionAt(capped, out));
+        assertEquals(LAT + 3 * STEP, out[0], EPS);
+        assertFalse(model.positionAt(capped + 60_000, out));
+        assertEquals(LAT + 3 * STEP, out[0], EPS);
+    }
+
+    @Test
+    public void staleGap_capsTheSegmentAndSlowsThePrediction() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        // A minute without samples: the marker doesn't crawl for a minute to catch up.
+        model.onSample(LAT + STEP, LNG, 60_000);
+
+        model.positionAt(60_000 + DriverMotionModel.MAX_SEGMENT_MILLIS, out);
+        assertEquals(LAT + STEP, out[0], EPS);
+        // Velocity is averaged over the whole gap, so the prediction barely moves.
+        long end = 60_000 + DriverMotionModel.MAX_SEGMENT_MILLIS + DriverMotionModel.MAX_PREDICTION_MILLIS;
+        assertFalse(model.positionAt(end, out));
+        assertEquals(LAT + STEP + STEP * DriverMotionModel.MAX_PREDICTION_MILLIS / 60_000.0, out[0], EPS);
+    }
+
+    @Test
+    public void quickSamples_useTheMinimumSegment() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        model.onSample(LAT + STEP, LNG, 50);
+
+        model.positionAt(50 + DriverMotionModel.MIN_SEGMENT_MILLIS / 2, out);
+        assertEquals(LAT + STEP / 2, out[0], EPS);
+    }
+
+    @Test
+    public void jitterWhileStanding_keepsBearingAndStopsPrediction() {
+        DriverMotionModel model = new DriverMotionModel();
+        model.onSample(LAT, LNG, 0);
+        model.onSample(LAT, LNG + STEP, 1_000);
+        // About a meter south: GPS wobble, not a U-turn.
+        model.onSample(LAT - 0.00001, LNG + STEP, 2_000);
+
+        assertTrue(model.positionAt(2_500, out));
+        assertEquals(90, out[2], 0.5);
+        assertFalse(model.positionAt(3_000, out));
+        assertFalse(model.positionAt(4_000, out));
+        assertEquals(LAT - 0.00001, out[0], EPS);
+        assertEquals(LNG + STEP, out[1], EPS);
+    }
+}
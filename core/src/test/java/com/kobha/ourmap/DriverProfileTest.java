@@ -0,0 +1,53 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DriverProfileTest {
+
+    @Test
+    public void newDriver_isUnratedWithThePriorAcceptance() {
+        DriverProfile profile = new DriverProfile();
+
+        assertTrue(Double.isNaN(profile.getRating()));
+        assertEquals(DriverProfile.PRIOR_ACCEPTANCE, profile.acceptanceRate(), 1e-9);
+        assertEquals(0, profile.getOffers());
+    }
+
+    @Test
+    public void acceptanceRate_movesFromThePriorWithEachOffer() {
+        DriverProfile profile = new DriverProfile();
+        profile.onOffered();
+        profile.onOffered();
+
+        // 4 of 5 prior offers and none of the 2 real ones.
+        assertEquals(4.0 / 7, profile.acceptanceRate(), 1e-9);
+
+        profile.onOffered();
+        profile.onAccepted();
+        assertEquals(5.0 / 8, profile.acceptanceRate(), 1e-9);
+        assertEquals(3, profile.getOffers());
+        assertEquals(1, profile.getAccepts());
+    }
+
+    @Test
+    public void acceptanceRate_tendsToTheDriversOwnRate() {
+        DriverProfile profile = new DriverProfile();
+        for (int i = 0; i < 1_000; i++) {
+            profile.onOffered();
+            if (i % 2 == 0) profile.onAccepted();
+        }
+
+        assertEquals(0.5, profile.acceptanceRate(), 0.01);
+    }
+
+    @Test
+    public void setRating_replacesTheRating() {
+        DriverProfile profile = new DriverProfile();
+        profile.setRating(4.5);
+        profile.setRating(3);
+
+        assertEquals(3, profile.getRating(), 0);
+    }
+}
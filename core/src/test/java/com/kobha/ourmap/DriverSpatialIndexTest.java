@@ -0,0 +1,126 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DriverSpatialIndexTest {
+
+    @Test
+    public void nearest_matchesBruteForceOnSyntheticFleet() {
+        Random random = new Random(42);
+        int fleetSize = 20000;
+        double[] lats = new double[fleetSize];
+        double[] lngs = new double[fleetSize];
+        DriverSpatialIndex index = new DriverSpatialIndex();
+
+        for (int i = 0; i < fleetSize; i++) {
+            lats[i] = 12.90 + random.nextDouble() * 0.2;
+            lngs[i] = 77.50 + random.nextDouble() * 0.2;
+            index.update("d" + i, lats[i], lngs[i]);
+        }
+
+        DriverSpatialIndex.Result result = new DriverSpatialIndex.Result(5);
+        for (int q = 0; q < 200; q++) {
+            double lat = 12.90 + random.nextDouble() * 0.2;
+            double lng = 77.50 + random.nextDouble() * 0.2;
+            index.nearest(lat, lng, 50_000, result);
+
+            double[] expected = new double[fleetSize];
+            for (int i = 0; i < fleetSize; i++) {
+                expected[i] = GeoMath.distanceMeters(lat, lng, lats[i], lngs[i]);
+            }
+            Arrays.sort(expected);
+
+            assertEquals(5, result.size());
+            for (int k = 0; k < 5; k++) {
+                assertEquals(expected[k], result.distanceMeters(k), 0.5);
+            }
+        }
+    }
+
+    @Test
+    public void update_movesDriverBetweenCells() {
+        DriverSpatialIndex index = new DriverSpatialIndex();
+        index.update("a", 12.97, 77.59);
+        index.update("b", 12.99, 77.61);
+        index.update("a", 13.05, 77.70);
+
+        DriverSpatialIndex.Result result = new DriverSpatialIndex.Result(2);
+        index.nearest(13.05, 77.70, 1000, result);
+
+        assertEquals(1, result.size());
+        assertEquals("a", result.driverId(0));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void nearest_skipsUnavailableAndRemovedDrivers() {
+        DriverSpatialIndex index = new DriverSpatialIndex();
+        index.update("busy", 12.9700, 77.5900);
+        index.update("gone", 12.9701, 77.5901);
+        index.update("free", 12.9800, 77.6000);
+        index.setAvailable("busy", false);
+        assertTrue(index.remove("gone"));
+
+        DriverSpatialIndex.Result result = new DriverSpatialIndex.Result(3);
+        index.nearest(12.97, 77.59, 10_000, result);
+
+        assertEquals(1, result.size());
+        assertEquals("free", result.driverId(0));
+    }
+
+    @Test
+    public void nearest_respectsMaxRadiusAndAntimeridian() {
+        DriverSpatialIndex index = new DriverSpatialIndex();
+        index.update("east", 0.0, 179.999);
+        index.update("far", 0.0, 170.0);
+
+        DriverSpatialIndex.Result result = new DriverSpatialIndex.Result(2);
+        index.nearest(0.0, -179.999, 5_000, result);
+
+        assertEquals(1, result.size());
+        assertEquals("east", result.driverId(0));
+    }
+
+    @Test
+    public void emptiedCells_areDroppedAndQueriesStayCorrect() {
+        Random random = new Random(7);
+        int fleetSize = 500;
+        double[] lats = new double[fleetSize];
+        double[] lngs = new double[fleetSize];
+        DriverSpatialIndex index = new DriverSpatialIndex();
+
+        // A fleet drifting across the city visits many more cells than it occupies at once.
+        for (int step = 0; step < 200; step++) {
+            for (int i = 0; i < fleetSize; i++) {
+                lats[i] = 12.80 + random.nextDouble() * 0.4;
+                lngs[i] = 77.40 + random.nextDouble() * 0.4;
+                index.update("d" + i, lats[i], lngs[i]);
+            }
+        }
+        assertTrue(index.cellCount() <= fleetSize);
+
+        DriverSpatialIndex.Result result = new DriverSpatialIndex.Result(3);
+        for (int q = 0; q < 100; q++) {
+            double lat = 12.80 + random.nextDouble() * 0.4;
+            double lng = 77.40 + random.nextDouble() * 0.4;
+            index.nearest(lat, lng, 100_000, result);
+
+            double[] expected = new double[fleetSize];
+            for (int i = 0; i < fleetSize; i++) {
+                expected[i] = GeoMath.distanceMeters(lat, lng, lats[i], lngs[i]);
+            }
+            Arrays.sort(expected);
+            for (int k = 0; k < 3; k++) {
+                assertEquals(expected[k], result.distanceMeters(k), 0.5);
+            }
+        }
+
+        for (int i = 0; i < fleetSize; i++) index.remove("d" + i);
+        assertEquals(0, index.cellCount());
+    }
+}
@@ -0,0 +1,61 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FleetSimulatorTest {
+
+    private static FleetSimulator.Config smallFleet(FleetSimulator.DispatchMode mode) {
+        FleetSimulator.Config config = new FleetSimulator.Config();
+        config.drivers = 200;
+        config.customers = 100;
+        config.areaRadiusMeters = 3_000;
+        config.requestsPerSecond = 0.5;
+        config.durationMillis = 10 * 60_000;
+        config.dispatchMode = mode;
+        return config;
+    }
+
+    @Test
+    public void run_matchesMostRequests() {
+        FleetReport report = new FleetSimulator(smallFleet(FleetSimulator.DispatchMode.NEAREST)).run();
+
+        assertTrue(report.requests > 100);
+        assertTrue(report.toString(), report.matched > report.requests * 0.9);
+        assertTrue(report.completed > 0);
+        assertTrue(report.matchLatencyPercentile(50) < smallFleet(null).maxThinkMillis + 1_000);
+        assertEquals(0, report.noDriversFound);
+    }
+
+    @Test
+    public void run_databaseRulesRejectOnlyLosingAccepts() {
+        FleetReport report = new FleetSimulator(smallFleet(FleetSimulator.DispatchMode.NEAREST)).run();
+
+        assertEquals(report.acceptsRejected, report.rejectedWrites);
+        assertEquals(report.acceptAttempts - report.acceptsRejected,
+                report.writesByKind[SimulatedBackend.Kind.ACCEPT.ordinal()]);
+        // Every match is one winning accept.
+        assertTrue(report.matched <= report.acceptAttempts - report.acceptsRejected);
+    }
+
+    @Test
+    public void run_isDeterministicForASeed() {
+        FleetReport first = new FleetSimulator(smallFleet(FleetSimulator.DispatchMode.NEAREST)).run();
+        FleetReport second = new FleetSimulator(smallFleet(FleetSimulator.DispatchMode.NEAREST)).run();
+
+        assertEquals(first.requests, second.requests);
+        assertEquals(first.matched, second.matched);
+        assertEquals(first.totalWrites, second.totalWrites);
+        assertEquals(first.matchLatencyMillis, second.matchLatencyMillis);
+    }
+
+    @Test
+    public void run_broadcastAbortsMoreAcceptsThanNearest() {
+        FleetReport nearest = new FleetSimulator(smallFleet(FleetSimulator.DispatchMode.NEAREST)).run();
+        FleetReport broadcast = new FleetSimulator(smallFleet(FleetSimulator.DispatchMode.BROADCAST)).run();
+
+        assertTrue(broadcast.abortRate() > nearest.abortRate());
+        assertTrue(broadcast.writesByKind[SimulatedBackend.Kind.OFFER.ordinal()] > 0);
+    }
+}
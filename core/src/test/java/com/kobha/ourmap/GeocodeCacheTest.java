@@ -0,0 +1,54 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GeocodeCacheTest {
+
+    @Test
+    public void normalizeIgnoresCaseAndPunctuation() {
+        assertEquals("mg road bengaluru", GeocodeCache.normalize("  MG Road,  Bengaluru. "));
+    }
+
+    @Test
+    public void parsesTypedCoordinates() {
+        assertArrayEquals(new double[]{12.97, 77.59}, GeocodeCache.parseCoordinates("12.97, 77.59"), 0);
+        assertNull(GeocodeCache.parseCoordinates("MG Road"));
+        assertNull(GeocodeCache.parseCoordinates("120, 10"));
+    }
+
+    @Test
+    public void survivesReload() throws IOException {
+        File file = File.createTempFile("geocode", ".tsv");
+        file.delete();
+
+        GeocodeCache cache = new GeocodeCache(file);
+        cache.put("MG Road, Bengaluru", 12.9756, 77.6066);
+
+        double[] reloaded = new GeocodeCache(file).get("mg road bengaluru");
+        assertArrayEquals(new double[]{12.9756, 77.6066}, reloaded, 1e-7);
+        file.delete();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        File file = File.createTempFile("geocode", ".tsv");
+        file.delete();
+
+        GeocodeCache cache = new GeocodeCache(file, 2);
+        cache.put("a", 1, 1);
+        cache.put("b", 2, 2);
+        cache.get("a");
+        cache.put("c", 3, 3);
+
+        assertNull(cache.get("b"));
+        assertEquals(2, new GeocodeCache(file, 2).entries().size());
+        file.delete();
+    }
+}
@@ -0,0 +1,72 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void advance_runsTasksOnceTheirDeadlinePasses() {
+        HashedWheelTimer timer = new HashedWheelTimer(100, 8);
+        List<Long> ran = new ArrayList<>();
+        timer.schedule(ran::add, 1_000, 5_000);
+        timer.advance(5_000);
+
+        assertEquals(0, timer.advance(5_999));
+        assertTrue(ran.isEmpty());
+        assertEquals(1, timer.advance(6_000));
+        assertEquals(6_000L, (long) ran.get(0));
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void advance_handlesDeadlinesPastOneTurnOfTheWheel() {
+        // 8 buckets of 100 ms: the wheel turns every 800 ms.
+        HashedWheelTimer timer = new HashedWheelTimer(100, 8);
+        List<Long> ran = new ArrayList<>();
+        timer.schedule(ran::add, 2_550, 0);
+
+        for (long now = 0; now < 2_600; now += 50) timer.advance(now);
+        assertTrue(ran.isEmpty());
+        timer.advance(2_600);
+        assertEquals(1, ran.size());
+    }
+
+    @Test
+    public void cancel_stopsTheTask() {
+        HashedWheelTimer timer = new HashedWheelTimer(100, 8);
+        List<Long> ran = new ArrayList<>();
+        HashedWheelTimer.Timeout timeout = timer.schedule(ran::add, 300, 0);
+        timer.advance(0);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        timer.advance(1_000);
+
+        assertTrue(ran.isEmpty());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void advance_lateJumpRunsEverythingDue() {
+        HashedWheelTimer timer = new HashedWheelTimer(10, 16);
+        Random random = new Random(3);
+        int[] ran = new int[1];
+        for (int i = 0; i < 10_000; i++) {
+            timer.schedule(now -> ran[0]++, random.nextInt(5_000), 0);
+        }
+        timer.advance(0);
+        timer.advance(2_500);
+        assertTrue(ran[0] > 4_000 && ran[0] < 6_000);
+
+        timer.advance(5_000);
+        assertEquals(10_000, ran[0]);
+        assertEquals(0, timer.pending());
+    }
+}
@@ -0,0 +1,101 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LocationFilterTest {
+
+    private static final double LAT = 12.97160;
+    private static final double LNG = 77.59460;
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private final double[] out = new double[3];
+
+    @Test
+    public void stationaryJitter_isSmoothedAndWritesLess() {
+        Random random = new Random(7);
+        LocationFilter filter = new LocationFilter();
+        List<Map<String, Object>> rawWrites = new ArrayList<>();
+        List<Map<String, Object>> filteredWrites = new ArrayList<>();
+        LocationPublisher raw = new LocationPublisher("d1", (updates, callback) -> rawWrites.add(updates), 15, 300_000);
+        LocationPublisher filtered = new LocationPublisher("d1", (updates, callback) -> filteredWrites.add(updates), 15, 300_000);
+
+        double rawSquares = 0;
+        double filteredSquares = 0;
+        for (int i = 0; i < 120; i++) {
+            double lat = LAT + random.nextGaussian() * 12 / METERS_PER_DEGREE;
+            double lng = LNG + random.nextGaussian() * 12 / METERS_PER_DEGREE;
+            long time = i * 2_000L;
+            raw.publish(lat, lng, time);
+            assertTrue(filter.process(lat, lng, 12, time, out));
+            filtered.publish(out[0], out[1], time);
+            if (i >= 10) {
+                rawSquares += Math.pow(GeoMath.distanceMeters(LAT, LNG, lat, lng), 2);
+                filteredSquares += Math.pow(GeoMath.distanceMeters(LAT, LNG, out[0], out[1]), 2);
+            }
+        }
+
+        assertTrue(filteredSquares + " vs " + rawSquares, filteredSquares < rawSquares * 0.6);
+        assertTrue(filteredWrites.size() + " vs " + rawWrites.size(), filteredWrites.size() * 2 < rawWrites.size());
+    }
+
+    @Test
+    public void steadyDrive_isTrackedWithSpeed() {
+        Random random = new Random(3);
+        LocationFilter filter = new LocationFilter();
+        double speed = 15;
+
+        for (int i = 0; i <= 60; i++) {
+            double north = i * speed;
+            double lat = LAT + (north + random.nextGaussian() * 5) / METERS_PER_DEGREE;
+            double lng = LNG + random.nextGaussian() * 5 / METERS_PER_DEGREE;
+            assertTrue(filter.process(lat, lng, 5, i * 1_000L, out));
+        }
+
+        assertEquals(LAT + 900 / METERS_PER_DEGREE, out[0], 8 / METERS_PER_DEGREE);
+        assertEquals(speed, out[2], 3);
+    }
+
+    @Test
+    public void impossibleJumpAndInaccurateFix_areRejected() {
+        LocationFilter filter = new LocationFilter();
+        assertTrue(filter.process(LAT, LNG, 5, 0, out));
+
+        assertFalse(filter.process(LAT + 2_000 / METERS_PER_DEGREE, LNG, 5, 1_000, out));
+        assertFalse(filter.process(LAT, LNG, 500, 2_000, out));
+        assertFalse(filter.process(LAT, LNG, 5, 0, out));
+        assertEquals(LAT, out[0], 0);
+
+        assertTrue(filter.process(LAT, LNG, 5, 3_000, out));
+        assertEquals(3, filter.getRejectedCount());
+    }
+
+    @Test
+    public void persistentJump_restartsTheFilter() {
+        LocationFilter filter = new LocationFilter();
+        filter.process(LAT, LNG, 5, 0, out);
+
+        double farLat = LAT + 5_000 / METERS_PER_DEGREE;
+        for (int i = 1; i <= LocationFilter.RESET_AFTER_REJECTS; i++) {
+            assertFalse(filter.process(farLat, LNG, 5, i * 1_000L, out));
+        }
+        assertTrue(filter.process(farLat, LNG, 5, 6_000, out));
+        assertEquals(farLat, out[0], 1e-9);
+    }
+
+    @Test
+    public void longGap_restartsTheFilter() {
+        LocationFilter filter = new LocationFilter();
+        filter.process(LAT, LNG, 5, 0, out);
+
+        double farLat = LAT + 20_000 / METERS_PER_DEGREE;
+        assertTrue(filter.process(farLat, LNG, 5, LocationFilter.RESET_AFTER_MILLIS + 1, out));
+        assertEquals(farLat, out[0], 1e-9);
+    }
+}
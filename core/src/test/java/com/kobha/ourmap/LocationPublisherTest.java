@@ -0,0 +1,70 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LocationPublisherTest {
+
+    private final List<Map<String, Object>> writes = new ArrayList<>();
+    private final MultiPathWriter writer = (updates, callback) -> writes.add(updates);
+
+    @Test
+    public void publish_skipsFixesWithinDistanceThreshold() {
+        LocationPublisher publisher = new LocationPublisher("d1", writer, 15, 30_000);
+
+        assertTrue(publisher.publish(12.97160, 77.59460, 0));
+        assertFalse(publisher.publish(12.97165, 77.59462, 2_000));
+        assertTrue(publisher.publish(12.97300, 77.59460, 4_000));
+
+        assertEquals(2, writes.size());
+        assertEquals(1, publisher.getSkippedCount());
+    }
+
+    @Test
+    public void publish_writesHeartbeatAfterSilence() {
+        LocationPublisher publisher = new LocationPublisher("d1", writer, 15, 30_000);
+
+        publisher.publish(12.97160, 77.59460, 0);
+        assertFalse(publisher.publish(12.97160, 77.59460, 29_999));
+        assertTrue(publisher.publish(12.97160, 77.59460, 30_000));
+    }
+
+    @Test
+    public void goOffline_removesTheGeoFireNodeUntilTheNextFix() {
+        LocationPublisher publisher = new LocationPublisher("d1", writer, 15, 30_000);
+        publisher.publish(12.97160, 77.59460, 0);
+
+        publisher.goOffline();
+        Map<String, Object> removal = writes.get(1);
+        assertEquals(1, removal.size());
+        assertTrue(removal.containsKey("locations/Drivers/d1"));
+        assertNull(removal.get("locations/Drivers/d1"));
+
+        // Back online at the same spot: written at once, not held back as a repeat.
+        assertTrue(publisher.publish(12.97160, 77.59460, 1_000));
+    }
+
+    @Test
+    public void publish_combinesGeoFireAndRideResponseInOneUpdate() {
+        LocationPublisher publisher = new LocationPublisher("d1", writer);
+        publisher.publish(12.97160, 77.59460, 0);
+        publisher.setAssignedCustomer("c1");
+        publisher.publish(12.97160, 77.59460, 1_000);
+
+        Map<String, Object> update = writes.get(1);
+        assertEquals(4, update.size());
+        assertEquals("tdr1v", ((String) update.get("locations/Drivers/d1/g")).substring(0, 5));
+        assertEquals(12.97160, (Double) update.get("rideResponses/c1/driver_lat"), 0);
+        assertEquals(77.59460, (Double) update.get("rideResponses/c1/driver_lng"), 0);
+    }
+
+    @Test
+    public void geoHash_matchesReferenceValue() {
+        assertEquals("u4pruydqqv", GeoMath.geoHash(57.64911, 10.40744, 10));
+    }
+}
@@ -0,0 +1,174 @@
+package com.kobha.ourmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OfferManagerTest {
+
+    private static final long TIMEOUT = 15_000;
+
+    /** Records every callback as "offer ride driver previous" or "exhausted ride last". */
+    private static final class Recorder implements OfferManager.Listener {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final Set<String> unavailable = new HashSet<>();
+
+        @Override
+        public boolean onOffer(String rideId, String driverId, String previousDriverId, long nowMillis) {
+            if (unavailable.contains(driverId)) return false;
+            events.add("offer " + rideId + " " + driverId + " " + previousDriverId);
+            return true;
+        }
+
+        @Override
+        public void onExhausted(String rideId, String lastDriverId, long nowMillis) {
+            events.add("exhausted " + rideId + " " + lastDriverId);
+        }
+
+        String last() {
+            return events.get(events.size() - 1);
+        }
+    }
+
+    private HashedWheelTimer timer;
+    private Recorder recorder;
+    private OfferManager manager;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(100, 512);
+        recorder = new Recorder();
+        manager = new OfferManager(timer, TIMEOUT, recorder);
+        timer.advance(0);
+    }
+
+    @Test
+    public void start_offersTheFirstCandidate() {
+        assertTrue(manager.start("r1", Arrays.asList("a", "b"), 0));
+
+        assertEquals("offer r1 a null", recorder.last());
+        assertEquals("a", manager.offeredTo("r1"));
+        assertFalse(manager.start("r1", Arrays.asList("c"), 0));
+    }
+
+    @Test
+    public void timeout_movesToTheNextCandidateThenExhausts() {
+        manager.start("r1", Arrays.asList("a", "b"), 0);
+
+        timer.advance(TIMEOUT - 1);
+        assertEquals(1, recorder.events.size());
+        timer.advance(TIMEOUT);
+        assertEquals("offer r1 b a", recorder.last());
+        timer.advance(2 * TIMEOUT);
+
+        assertEquals("exhausted r1 b", recorder.last());
+        assertEquals(0, manager.size());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void accept_onlyByTheDriverHoldingTheOffer() {
+        manager.start("r1", Arrays.asList("a", "b"), 0);
+
+        assertFalse(manager.accept("r1", "b"));
+        assertTrue(manager.accept("r1", "a"));
+        assertFalse(manager.accept("r1", "a"));
+        timer.advance(5 * TIMEOUT);
+
+        assertEquals(1, recorder.events.size());
+        assertEquals(0, manager.size());
+    }
+
+    @Test
+    public void staleAccept_afterTimeoutIsRefused() {
+        manager.start("r1", Arrays.asList("a", "b"), 0);
+        timer.advance(TIMEOUT);
+
+        assertFalse(manager.accept("r1", "a"));
+        assertTrue(manager.accept("r1", "b"));
+    }
+
+    @Test
+    public void decline_movesOnAtOnceAndItsTimeoutIsDropped() {
+        manager.start("r1", Arrays.asList("a", "b", "c"), 0);
+        assertTrue(manager.decline("r1", "a", 1_000));
+        assertEquals("offer r1 b a", recorder.last());
+
+        // a's timeout would have fired here; b's runs from the decline.
+        timer.advance(TIMEOUT);
+        assertEquals("b", manager.offeredTo("r1"));
+        timer.advance(TIMEOUT + 1_000);
+        assertEquals("offer r1 c b", recorder.last());
+    }
+
+    @Test
+    public void unavailableCandidates_areSkipped() {
+        recorder.unavailable.add("b");
+        manager.start("r1", Arrays.asList("a", "b", "c"), 0);
+        timer.advance(TIMEOUT);
+
+        assertEquals("offer r1 c a", recorder.last());
+    }
+
+    @Test
+    public void noAvailableCandidate_exhaustsWithoutAnOffer() {
+        recorder.unavailable.add("a");
+        manager.start("r1", Collections.singletonList("a"), 0);
+
+        assertEquals(Collections.singletonList("exhausted r1 null"), recorder.events);
+    }
+
+    @Test
+    public void cancel_returnsTheHolderAndStopsTimeouts() {
+        manager.start("r1", Arrays.asList("a", "b"), 0);
+
+        assertEquals("a", manager.cancel("r1"));
+        assertNull(manager.cancel("r1"));
+        timer.advance(5 * TIMEOUT);
+
+        assertEquals(1, recorder.events.size());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void acceptRacingTimeouts_exactlyOneWinsPerRide() throws Exception {
+        int rides = 2_000;
+        for (int i = 0; i < rides; i++) manager.start("r" + i, Arrays.asList("a", "b"), 0);
+
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        Thread acceptor = new Thread(() -> {
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 0; i < rides; i++) {
+                if (manager.accept("r" + i, "a")) accepted.incrementAndGet();
+            }
+        });
+        acceptor.start();
+        go.countDown();
+        timer.advance(TIMEOUT);
+        acceptor.join();
+
+        int movedOn = 0;
+        synchronized (recorder.events) {
+            for (String event : recorder.events) {
+                if (event.endsWith(" b a")) movedOn++;
+            }
+        }
+        assertEquals(rides, accepted.get() + movedOn);
+        assertEquals(movedOn, manager.size());
+    }
+}
@@ -0,0 +1,110 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceIndexTest {
+
+    private final List<PlaceIndex.Place> out = new ArrayList<>();
+
+    @Test
+    public void matchesAnyWordPrefix() {
+        PlaceIndex index = new PlaceIndex();
+        index.add("MG Road Metro", 12.9755, 77.6068, 5);
+        index.add("Majestic Bus Stand", 12.9767, 77.5713, 3);
+
+        index.search("ma", 10, out);
+        assertEquals(1, out.size());
+        assertEquals("Majestic Bus Stand", out.get(0).name);
+
+        index.search("road", 10, out);
+        assertEquals("MG Road Metro", out.get(0).name);
+
+        index.search("mg ro", 10, out);
+        assertEquals(1, out.size());
+
+        index.search("mgx", 10, out);
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void ranksByWeightAndHistoryWins() {
+        PlaceIndex index = new PlaceIndex();
+        index.add("Koramangala", 12.93, 77.62, 10);
+        index.add("Kormangala Club", 12.94, 77.62, 50);
+        index.add("Kodihalli", 12.96, 77.64, 1);
+
+        index.search("ko", 10, out);
+        assertEquals("Kormangala Club", out.get(0).name);
+        assertEquals("Kodihalli", out.get(2).name);
+
+        index.add("Kodihalli", 12.96, 77.64, PlaceIndex.HISTORY_WEIGHT);
+        index.search("ko", 10, out);
+        assertEquals("Kodihalli", out.get(0).name);
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void keepsBestPlacesWhenAPrefixHasMoreThanFit() {
+        PlaceIndex index = new PlaceIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add("Stop " + i, 0, 0, i);
+        }
+        index.search("stop", 3, out);
+        assertEquals("Stop 99", out.get(0).name);
+        assertEquals("Stop 98", out.get(1).name);
+        assertEquals("Stop 97", out.get(2).name);
+
+        index.search("stop 4", 100, out);
+        assertEquals("Stop 49", out.get(0).name);
+        assertEquals(PlaceIndex.TOP_PER_NODE, out.size());
+    }
+
+    @Test
+    public void loadsPoiFile() throws IOException {
+        PlaceIndex index = new PlaceIndex();
+        String file = "# name\tlat\tlng\tweight\n"
+                + "Cubbon Park\t12.9763\t77.5929\t40\n"
+                + "broken line\n"
+                + "Lalbagh\t12.9507\t77.5848\n";
+        assertEquals(2, index.addAll(new BufferedReader(new StringReader(file))));
+
+        index.search("lal", 5, out);
+        assertEquals(12.9507, out.get(0).lat, 0);
+    }
+
+    @Test
+    public void lookupStaysWellUnderFiveMillisOnACitySizedIndex() {
+        PlaceIndex index = new PlaceIndex();
+        Random random = new Random(7);
+        String[] words = {"main", "road", "cross", "layout", "nagar", "circle", "market", "station", "park", "temple"};
+        for (int i = 0; i < 50_000; i++) {
+            String name = String.format(Locale.US, "%s %d %s %s",
+                    words[random.nextInt(words.length)], i, words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)]);
+            index.add(name, 12.9, 77.6, random.nextInt(1000));
+        }
+
+        String[] queries = {"m", "ma", "mar", "market", "market 12", "st", "nagar cir", "4999"};
+        for (int warm = 0; warm < 1000; warm++) {
+            index.search(queries[warm % queries.length], 5, out);
+        }
+        long start = System.nanoTime();
+        int runs = 10_000;
+        for (int i = 0; i < runs; i++) {
+            index.search(queries[i % queries.length], 5, out);
+        }
+        long perQueryNanos = (System.nanoTime() - start) / runs;
+        assertTrue("took " + perQueryNanos + " ns", perQueryNanos < 5_000_000);
+    }
+}
@@ -0,0 +1,74 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PolylineCodecTest {
+
+    // Reference example from the encoded polyline algorithm documentation.
+    private static final String REFERENCE = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+
+    @Test
+    public void decode_referencePolyline() {
+        PolylinePath path = PolylineCodec.decode(REFERENCE);
+
+        assertEquals(3, path.size());
+        assertEquals(38.5, path.lat(0), 1e-9);
+        assertEquals(-120.2, path.lng(0), 1e-9);
+        assertEquals(40.7, path.lat(1), 1e-9);
+        assertEquals(-120.95, path.lng(1), 1e-9);
+        assertEquals(43.252, path.lat(2), 1e-9);
+        assertEquals(-126.453, path.lng(2), 1e-9);
+    }
+
+    @Test
+    public void encode_referencePolyline() {
+        PolylinePath path = new PolylinePath();
+        path.add(38.5, -120.2);
+        path.add(40.7, -120.95);
+        path.add(43.252, -126.453);
+
+        assertEquals(REFERENCE, PolylineCodec.encode(path));
+    }
+
+    @Test
+    public void roundTrip_longRandomRoute() {
+        Random random = new Random(7);
+        PolylinePath path = new PolylinePath();
+        double lat = 12.9716, lng = 77.5946;
+        for (int i = 0; i < 20000; i++) {
+            lat += (random.nextDouble() - 0.5) * 0.002;
+            lng += (random.nextDouble() - 0.5) * 0.002;
+            path.add(Math.round(lat * 1e5) / 1e5, Math.round(lng * 1e5) / 1e5);
+        }
+
+        PolylinePath decoded = PolylineCodec.decode(PolylineCodec.encode(path), new PolylinePath(16));
+
+        assertEquals(path.size(), decoded.size());
+        for (int i = 0; i < path.size(); i++) {
+            assertEquals(path.lat(i), decoded.lat(i), 1e-9);
+            assertEquals(path.lng(i), decoded.lng(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void decode_reusesBufferAndStreams() {
+        PolylinePath buffer = new PolylinePath();
+        PolylineCodec.decode(REFERENCE, buffer);
+        PolylineCodec.decode(REFERENCE, buffer);
+        assertEquals(3, buffer.size());
+
+        double[] sum = new double[1];
+        int count = PolylineCodec.decode(REFERENCE, (lat, lng) -> sum[0] += lat);
+        assertEquals(3, count);
+        assertEquals(38.5 + 40.7 + 43.252, sum[0], 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsTruncatedInput() {
+        PolylineCodec.decode("_p~iF~ps|U_");
+    }
+}
@@ -0,0 +1,70 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PolylineSimplifierTest {
+
+    @Test
+    public void simplify_collapsesStraightLine() {
+        PolylinePath line = new PolylinePath();
+        for (int i = 0; i <= 100; i++) {
+            line.add(12.9 + i * 0.0001, 77.5);
+        }
+
+        PolylinePath simplified = PolylineSimplifier.simplify(line, 1, new PolylinePath());
+
+        assertEquals(2, simplified.size());
+        assertEquals(12.9, simplified.lat(0), 1e-12);
+        assertEquals(12.91, simplified.lat(1), 1e-12);
+    }
+
+    @Test
+    public void simplify_keepsEveryPointWithinTolerance() {
+        PolylinePath route = randomWalk(20000);
+        double tolerance = 25;
+
+        PolylinePath simplified = PolylineSimplifier.simplify(route, tolerance, new PolylinePath());
+
+        assertTrue(simplified.size() < route.size() / 4);
+        double cosLat = Math.cos(Math.toRadians(route.lat(0)));
+        double m = Math.PI * GeoMath.EARTH_RADIUS_METERS / 180.0;
+        for (int i = 0; i < route.size(); i++) {
+            double best = Double.MAX_VALUE;
+            for (int j = 0; j + 1 < simplified.size(); j++) {
+                best = Math.min(best, PolylineSimplifier.segmentDistanceSq(
+                        route.lng(i) * cosLat * m, route.lat(i) * m,
+                        simplified.lng(j) * cosLat * m, simplified.lat(j) * m,
+                        simplified.lng(j + 1) * cosLat * m, simplified.lat(j + 1) * m));
+            }
+            assertTrue("point " + i, Math.sqrt(best) <= tolerance + 1e-6);
+        }
+    }
+
+    @Test
+    public void routeLevels_getCoarserAsZoomDecreases() {
+        RouteLevels levels = RouteLevels.build(randomWalk(20000));
+
+        assertEquals(0, levels.levelFor(3));
+        assertEquals(levels.levelCount(), levels.levelFor(18));
+        assertSame(levels.full(), levels.path(levels.levelFor(18)));
+        for (int i = 1; i < levels.levelCount(); i++) {
+            assertTrue(levels.path(i - 1).size() <= levels.path(i).size());
+        }
+    }
+
+    private static PolylinePath randomWalk(int points) {
+        Random random = new Random(3);
+        PolylinePath path = new PolylinePath();
+        double lat = 12.9716, lng = 77.5946;
+        for (int i = 0; i < points; i++) {
+            lat += (random.nextDouble() - 0.3) * 0.0002;
+            lng += (random.nextDouble() - 0.3) * 0.0002;
+            path.add(lat, lng);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,168 @@
+package com.kobha.ourmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RideInboxTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+    /** Roughly 111 m of latitude. */
+    private static final double STEP = 0.001;
+
+    private RideInbox inbox;
+
+    @Before
+    public void setUp() {
+        inbox = new RideInbox();
+        inbox.setDriverPosition(LAT, LNG);
+    }
+
+    private static RideOffer offerAt(double steps) {
+        return new RideOffer(LAT + steps * STEP, LNG, LAT, LNG + 0.01, Double.NaN,
+                Collections.singletonList("driver"));
+    }
+
+    private static String ids(List<RideInbox.Entry> entries) {
+        StringBuilder ids = new StringBuilder();
+        for (RideInbox.Entry entry : entries) ids.append(entry.customerId).append(' ');
+        return ids.toString().trim();
+    }
+
+    @Test
+    public void sorted_nearestFirst() {
+        inbox.put("far", offerAt(5), 0);
+        inbox.put("near", offerAt(1), 0);
+        inbox.put("mid", offerAt(3), 0);
+
+        assertEquals("near mid far", ids(inbox.sorted()));
+        assertEquals("near", inbox.selected().customerId);
+    }
+
+    @Test
+    public void put_updatesInPlaceAndRemoveEvicts() {
+        inbox.put("a", offerAt(1), 0);
+        inbox.put("b", offerAt(2), 0);
+        inbox.put("a", offerAt(4), 100);
+
+        assertEquals("b a", ids(inbox.sorted()));
+        assertEquals(2, inbox.size());
+        assertEquals(0, inbox.get("a").receivedMillis);
+
+        assertNotNull(inbox.remove("b"));
+        assertNull(inbox.remove("b"));
+        assertEquals("a", ids(inbox.sorted()));
+    }
+
+    @Test
+    public void driverMoving_resortsButKeepsTheSelection() {
+        inbox.put("north", offerAt(2), 0);
+        inbox.put("south", offerAt(-4), 0);
+        assertEquals("north", inbox.selected().customerId);
+
+        inbox.setDriverPosition(LAT - 4 * STEP, LNG);
+
+        assertEquals("south north", ids(inbox.sorted()));
+        assertEquals("north", inbox.selected().customerId);
+    }
+
+    @Test
+    public void removingTheSelected_fallsBackToNearest() {
+        inbox.put("a", offerAt(1), 0);
+        inbox.put("b", offerAt(2), 0);
+        inbox.put("c", offerAt(3), 0);
+        inbox.select("c");
+
+        inbox.remove("c");
+
+        assertEquals("a", inbox.selected().customerId);
+    }
+
+    @Test
+    public void selectNext_walksByDistanceAndWraps() {
+        inbox.put("a", offerAt(1), 0);
+        inbox.put("b", offerAt(2), 0);
+
+        assertEquals("b", inbox.selectNext().customerId);
+        assertEquals("a", inbox.selectNext().customerId);
+        inbox.clear();
+        assertNull(inbox.selectNext());
+    }
+
+    @Test
+    public void expire_dropsOldestFirst() {
+        inbox.put("old", offerAt(3), 0);
+        inbox.put("new", offerAt(1), 5_000);
+        assertEquals(15_000, inbox.nextExpiryMillis(15_000));
+
+        assertEquals(0, inbox.expire(14_999, 15_000));
+        assertEquals(1, inbox.expire(15_000, 15_000));
+
+        assertEquals("new", ids(inbox.sorted()));
+        assertEquals(20_000, inbox.nextExpiryMillis(15_000));
+        assertEquals(1, inbox.expire(20_000, 15_000));
+        assertEquals(Long.MAX_VALUE, inbox.nextExpiryMillis(15_000));
+    }
+
+    @Test
+    public void expire_countsFromTheOfferStampWhateverTheArrivalOrder() {
+        RideOffer early = new RideOffer(LAT, LNG, LAT, LNG, 100, Collections.<String>emptyList(), 1_000);
+        RideOffer late = new RideOffer(LAT, LNG, LAT, LNG, 200, Collections.<String>emptyList(), 4_000);
+        // Delivered late and out of order, as when reconnecting.
+        inbox.put("late", late, 9_000);
+        inbox.put("early", early, 10_000);
+        assertEquals(16_000, inbox.nextExpiryMillis(15_000));
+
+        assertEquals(1, inbox.expire(16_000, 15_000));
+        assertEquals("late", ids(inbox.sorted()));
+        assertEquals(9_000, inbox.get("late").receivedMillis);
+        assertEquals(19_000, inbox.nextExpiryMillis(15_000));
+    }
+
+    @Test
+    public void put_reofferRestartsTheTimeoutAndFutureStampsAreClamped() {
+        inbox.put("a", new RideOffer(LAT, LNG, LAT, LNG, 100, Collections.<String>emptyList(), 1_000), 1_000);
+        inbox.put("a", new RideOffer(LAT, LNG, LAT, LNG, 100, Collections.<String>emptyList(), 30_000), 30_500);
+        assertEquals(45_000, inbox.nextExpiryMillis(15_000));
+
+        // A stamp ahead of our estimate of the database's clock counts from now.
+        inbox.put("b", new RideOffer(LAT, LNG, LAT, LNG, 100, Collections.<String>emptyList(), 99_000), 31_000);
+        assertEquals(31_000, inbox.get("b").offeredMillis);
+    }
+
+    @Test
+    public void unknownPosition_usesTheOfferedDistance() {
+        inbox = new RideInbox();
+        inbox.put("a", new RideOffer(LAT, LNG, LAT, LNG, 900, Collections.<String>emptyList()), 0);
+        inbox.put("b", new RideOffer(LAT, LNG, LAT, LNG, 300, Collections.<String>emptyList()), 0);
+
+        assertEquals("b a", ids(inbox.sorted()));
+        assertEquals(300, inbox.selected().distanceMeters(), 0);
+    }
+
+    @Test
+    public void randomChurn_staysSortedAndConsistent() {
+        Random random = new Random(5);
+        for (int i = 0; i < 20_000; i++) {
+            String id = "c" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                inbox.remove(id);
+            } else {
+                inbox.put(id, offerAt(random.nextDouble() * 100 - 50), i);
+            }
+        }
+
+        List<RideInbox.Entry> sorted = inbox.sorted();
+        assertEquals(inbox.size(), sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            assertTrue(sorted.get(i - 1).distanceMeters() <= sorted.get(i).distanceMeters());
+            assertSame(sorted.get(i), inbox.get(sorted.get(i).customerId));
+        }
+    }
+}
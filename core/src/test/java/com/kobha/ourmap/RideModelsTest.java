@@ -0,0 +1,100 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RideModelsTest {
+
+    @Test
+    public void rideRequest_roundTripsThroughMap() {
+        RideRequest request = new RideRequest(12.97, 77.59, 12.93, 77.62, RideState.OFFERED, null,
+                Arrays.asList("d1", "d2"));
+
+        RideRequest parsed = RideRequest.fromValue(request.toMap());
+        assertEquals(12.97, parsed.pickupLat, 0);
+        assertEquals(77.62, parsed.dropLng, 0);
+        assertEquals(RideState.OFFERED, parsed.status);
+        assertNull(parsed.driverId);
+        assertEquals(2, parsed.offeredTo.size());
+        assertTrue(parsed.offeredTo.contains("d2"));
+    }
+
+    @Test
+    public void fromValue_acceptsWholeNumbersStoredAsLong() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("pickup_lat", 12L);
+        node.put("pickup_lng", 77.5);
+        node.put("drop_lat", 13L);
+        node.put("drop_lng", 78L);
+        node.put("distance_m", 350L);
+
+        RideOffer offer = RideOffer.fromValue(node);
+        assertEquals(12.0, offer.pickupLat, 0);
+        assertEquals(350.0, offer.distanceMeters, 0);
+        assertTrue(offer.offeredTo.isEmpty());
+    }
+
+    @Test
+    public void rideOffer_leavesTheStampToTheDatabaseAndReadsItBack() {
+        RideOffer offer = new RideOffer(12.9, 77.5, 13.0, 77.6, 250, Collections.singletonList("d1"));
+        Map<String, Object> node = offer.toMap();
+        assertEquals(RideOffer.SERVER_TIMESTAMP, node.get("offered_at"));
+        assertEquals(0, RideOffer.fromValue(node).offeredAtMillis);
+
+        node.put("offered_at", 1_700_000_000_123L);
+        RideOffer stamped = RideOffer.fromValue(node);
+        assertEquals(1_700_000_000_123L, stamped.offeredAtMillis);
+        assertEquals(1_700_000_000_123L, stamped.toMap().get("offered_at"));
+    }
+
+    @Test
+    public void fromValue_rejectsIncompleteNodes() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("pickup_lat", 12.9);
+        node.put("pickup_lng", "77.5");
+        node.put("drop_lat", 13.0);
+        node.put("drop_lng", 78.0);
+
+        assertNull(RideOffer.fromValue(node));
+        assertNull(RideOffer.fromValue("not a node"));
+        assertNull(RideRequest.fromValue(null));
+        assertNull(RideResponse.fromValue(new HashMap<String, Object>()));
+    }
+
+    @Test
+    public void rideResponse_positionIsOptional() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("driverId", "d1");
+        node.put("driverName", "Asha");
+        node.put("status", "accepted");
+
+        RideResponse response = RideResponse.fromValue(node);
+        assertFalse(response.hasPosition());
+        assertEquals(RideState.ACCEPTED, response.status);
+
+        node.put("driver_lat", 12.97);
+        node.put("driver_lng", 77.59);
+        node.put("status", "something_new");
+        response = RideResponse.fromValue(node);
+        assertTrue(response.hasPosition());
+        assertNull(response.status);
+    }
+
+    @Test
+    public void driverLocation_matchesGeoFireLayout() {
+        DriverLocation location = new DriverLocation(57.64911, 10.40744);
+        Map<String, Object> node = location.toMap();
+        assertEquals("u4pruydqqv", node.get("g"));
+        assertEquals(Arrays.asList(57.64911, 10.40744), node.get("l"));
+
+        DriverLocation parsed = DriverLocation.fromValue(node);
+        assertEquals(57.64911, parsed.lat, 0);
+        assertEquals("u4pruydqqv", parsed.geoHash);
+    }
+}
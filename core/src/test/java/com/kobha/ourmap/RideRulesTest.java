@@ -0,0 +1,40 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class RideRulesTest {
+
+    private final InMemoryDatabase db = new InMemoryDatabase();
+
+    private String requestAgain(String status) {
+        db.updateChildren(Collections.singletonMap("rideRequests/c1/status", status), null);
+        return RideRules.check(db, "c1", RideStateMachine.request("c1", 1, 2, 3, 4));
+    }
+
+    @Test
+    public void customer_canRequestAgainOnlyOnceTheRideIsOver() {
+        assertNull(RideRules.check(db, "c1", RideStateMachine.request("c1", 1, 2, 3, 4)));
+        assertNull(requestAgain("pending"));
+        assertNull(requestAgain("offered"));
+        assertNull(requestAgain("completed"));
+        assertNull(requestAgain("cancelled"));
+
+        assertNotNull(requestAgain("accepted"));
+        assertNotNull(requestAgain("arriving"));
+        assertNotNull(requestAgain("in_progress"));
+    }
+
+    @Test
+    public void onlyTheCustomerRestartsAFinishedRide() {
+        db.updateChildren(Collections.singletonMap("rideRequests/c1/status", "completed"), null);
+        assertNotNull(RideRules.check(db, "d1", Collections.singletonMap("rideRequests/c1/status", "pending")));
+
+        // An unanswered offer goes back to pending whoever writes it.
+        db.updateChildren(Collections.singletonMap("rideRequests/c1/status", "offered"), null);
+        assertNull(RideRules.check(db, "d1", Collections.singletonMap("rideRequests/c1/status", "pending")));
+    }
+}
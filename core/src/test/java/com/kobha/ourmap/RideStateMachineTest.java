@@ -0,0 +1,103 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RideStateMachineTest {
+
+    @Test
+    public void fullLifecycle_advancesThroughEveryState() {
+        RideStateMachine ride = new RideStateMachine("c1", RideState.PENDING);
+
+        ride.offer(Arrays.asList("d1", "d2"), new double[]{120, 480}, 1, 2, 3, 4);
+        ride.onCommitted(RideState.OFFERED);
+        ride.accept("d1", "d1@example.com", "Driver", 1.1, 2.2, Arrays.asList("d1", "d2"));
+        ride.onCommitted(RideState.ACCEPTED);
+        for (RideState next : new RideState[]{RideState.ARRIVING, RideState.IN_PROGRESS, RideState.COMPLETED}) {
+            ride.advance(next);
+            ride.onCommitted(next);
+        }
+
+        assertEquals(RideState.COMPLETED, ride.getState());
+        assertTrue(ride.getState().isTerminal());
+    }
+
+    @Test
+    public void accept_writesStatusResponseAndOfferCleanupTogether() {
+        RideStateMachine ride = new RideStateMachine("c1", RideState.OFFERED);
+
+        Map<String, Object> updates = ride.accept("d1", "d1@example.com", "Driver", 1.1, 2.2,
+                Arrays.asList("d1", "d2", "d3"));
+
+        assertEquals("accepted", updates.get("rideRequests/c1/status"));
+        assertEquals("d1", updates.get("rideRequests/c1/driverId"));
+        Map<?, ?> response = (Map<?, ?>) updates.get("rideResponses/c1");
+        assertEquals(1.1, (Double) response.get("driver_lat"), 0);
+        assertEquals("accepted", response.get("status"));
+        assertTrue(updates.containsKey("driverOffers/d2/c1"));
+        assertNull(updates.get("driverOffers/d3/c1"));
+        assertEquals(RideState.OFFERED, ride.getState());
+    }
+
+    @Test
+    public void offer_setsStatusAndOneNodePerDriver() {
+        RideStateMachine ride = new RideStateMachine("c1", RideState.PENDING);
+
+        Map<String, Object> updates = ride.offer(Arrays.asList("d1", "d2"), new double[]{120, 480}, 1, 2, 3, 4);
+
+        assertEquals("offered", updates.get("rideRequests/c1/status"));
+        assertEquals(480.0, (Double) ((Map<?, ?>) updates.get("driverOffers/d2/c1")).get("distance_m"), 0);
+        assertEquals(4, updates.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void accept_rejectedOnceRideIsTaken() {
+        RideStateMachine ride = new RideStateMachine("c1", RideState.ACCEPTED);
+        ride.accept("d2", null, "Driver", 0, 0, Collections.<String>emptyList());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void advance_cannotSkipPickup() {
+        new RideStateMachine("c1", RideState.ACCEPTED).advance(RideState.IN_PROGRESS);
+    }
+
+    @Test
+    public void cancel_allowedUntilTerminal() {
+        assertTrue(RideState.IN_PROGRESS.canTransitionTo(RideState.CANCELLED));
+        assertFalse(RideState.COMPLETED.canTransitionTo(RideState.CANCELLED));
+        assertEquals(RideState.IN_PROGRESS, RideState.fromWireName("in_progress"));
+    }
+
+    @Test
+    public void cancel_beforeAcceptanceWithdrawsTheOffers() {
+        RideStateMachine ride = new RideStateMachine("c1", RideState.OFFERED);
+        Map<String, Object> updates = ride.cancel(Arrays.asList("d1", "d2"));
+
+        assertEquals("cancelled", updates.get("rideRequests/c1/status"));
+        assertTrue(updates.containsKey("rideRequests/c1/offered_to"));
+        assertNull(updates.get("rideRequests/c1/offered_to"));
+        assertTrue(updates.containsKey("driverOffers/d1/c1"));
+        assertTrue(updates.containsKey("driverOffers/d2/c1"));
+        assertNull(updates.get("driverOffers/d2/c1"));
+        assertFalse(updates.containsKey("rideResponses/c1/status"));
+    }
+
+    @Test
+    public void cancel_afterAcceptanceUpdatesTheResponse() {
+        RideStateMachine ride = new RideStateMachine("c1", RideState.ARRIVING);
+        Map<String, Object> updates = ride.cancel(Collections.<String>emptyList());
+
+        assertEquals("cancelled", updates.get("rideResponses/c1/status"));
+        assertEquals(2, updates.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void advance_refusesCancelSoOffersAreNotLeftBehind() {
+        new RideStateMachine("c1", RideState.PENDING).advance(RideState.CANCELLED);
+    }
+}
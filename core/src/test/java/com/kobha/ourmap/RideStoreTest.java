@@ -0,0 +1,124 @@
+package com.kobha.ourmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RideStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("rides", ".journal");
+        file.delete();
+        file.deleteOnExit();
+    }
+
+    @Test
+    public void reload_restoresRidesAndUnacknowledgedWrites() {
+        RideStore store = new RideStore(file);
+        store.saveRide(ride("c1", RideState.PENDING, 1_000));
+        store.saveRide(ride("c1", RideState.ACCEPTED, 2_000));
+        RideStore.Op first = store.enqueue(update("rideRequests/c1/status", "arriving"));
+        RideStore.Op second = store.enqueue(update("rideRequests/c1/status", "in_progress"));
+        store.markDone(first.seq);
+        store.close();
+
+        RideStore reloaded = new RideStore(file);
+        assertEquals(RideState.ACCEPTED, reloaded.activeRide().state);
+
+        List<RideStore.Op> pending = reloaded.pending();
+        assertEquals(1, pending.size());
+        assertEquals(second.key, pending.get(0).key);
+        assertEquals("in_progress", pending.get(0).updates.get("rideRequests/c1/status"));
+        assertEquals(Arrays.asList(first.key), reloaded.uncleanedKeys());
+        assertTrue(reloaded.enqueue(new HashMap<>()).seq > second.seq);
+    }
+
+    @Test
+    public void reload_ignoresTornLastLineAndKeepsAppending() throws IOException {
+        RideStore store = new RideStore(file);
+        store.saveRide(ride("c1", RideState.ACCEPTED, 1_000));
+        store.close();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("O 7 abc {\"rideRequests/c1/sta".getBytes(StandardCharsets.UTF_8));
+        }
+
+        RideStore reloaded = new RideStore(file);
+        assertTrue(reloaded.pending().isEmpty());
+        reloaded.saveRide(ride("c1", RideState.ARRIVING, 2_000));
+        reloaded.close();
+
+        assertEquals(RideState.ARRIVING, new RideStore(file).getRide("c1").state);
+    }
+
+    @Test
+    public void activeRide_skipsFinishedRides() {
+        RideStore store = new RideStore(file);
+        store.saveRide(ride("c1", RideState.IN_PROGRESS, 1_000));
+        store.saveRide(ride("c2", RideState.COMPLETED, 2_000));
+        assertEquals("c1", store.activeRide().customerId);
+
+        store.saveRide(ride("c1", RideState.COMPLETED, 3_000));
+        assertNull(store.activeRide());
+        assertEquals("c1", store.recentRides().get(0).customerId);
+    }
+
+    @Test
+    public void compaction_keepsLiveStateAndShrinksFile() {
+        RideStore store = new RideStore(file);
+        for (int i = 0; i < 400; i++) {
+            RideStore.Op op = store.enqueue(update("rideRequests/c1/status", "arriving"));
+            store.markDone(op.seq);
+            store.markCleaned(Arrays.asList(op.key));
+        }
+        RideStore.Op open = store.enqueue(update("rideRequests/c1/status", "completed"));
+        RideStore.Op done = store.enqueue(update("rideRequests/c2/status", "completed"));
+        store.markDone(done.seq);
+        store.saveRide(ride("c1", RideState.IN_PROGRESS, 1_000));
+        store.close();
+
+        RideStore reloaded = new RideStore(file);
+        assertEquals(1, reloaded.pending().size());
+        assertEquals(open.key, reloaded.pending().get(0).key);
+        assertEquals(Arrays.asList(done.key), reloaded.uncleanedKeys());
+        assertEquals(RideState.IN_PROGRESS, reloaded.getRide("c1").state);
+        assertTrue(file.length() < 10_000);
+    }
+
+    @Test
+    public void jsonValues_roundTripsDatabaseValues() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("lat", 12.5);
+        value.put("count", 3L);
+        value.put("name", "MG \"Road\"\n");
+        value.put("flag", true);
+        value.put("gone", null);
+        value.put("l", Arrays.asList(1.0, 2.25));
+        value.put("nested", new LinkedHashMap<>(update("a/b", "c")));
+
+        assertEquals(value, JsonValues.decodeObject(JsonValues.encode(value)));
+    }
+
+    private static RideRecord ride(String customerId, RideState state, long at) {
+        return new RideRecord(customerId, "d1", state, 12.97, 77.59, 12.93, 77.62, at);
+    }
+
+    private static Map<String, Object> update(String path, Object value) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(path, value);
+        return updates;
+    }
+}
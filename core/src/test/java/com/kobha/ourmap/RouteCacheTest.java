@@ -0,0 +1,103 @@
+package com.kobha.ourmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RouteCacheTest {
+
+    private static final long TTL = 60_000;
+    /** Far enough apart for file systems that keep modification times in whole seconds. */
+    private static final long SECOND = 1_000;
+    private static final long T0 = 1_700_000_000_000L;
+
+    private File directory;
+    /** Every polyline decoded, to tell memory hits from disk hits. */
+    private final List<String> decoded = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("routes", "");
+        directory.delete();
+        directory.deleteOnExit();
+    }
+
+    private RouteCache<String> cache(int memoryEntries, int diskEntries) {
+        return new RouteCache<>(directory, polyline -> {
+            decoded.add(polyline);
+            return "route:" + polyline;
+        }, RouteCache.DEFAULT_GRID_DEGREES, memoryEntries, diskEntries, TTL);
+    }
+
+    @Test
+    public void key_snapsNearbyPointsToTheSameCell() {
+        RouteCache<String> cache = cache(4, 4);
+        assertEquals(cache.key(12.97160, 77.59460, 12.93, 77.62), cache.key(12.97163, 77.59458, 12.93, 77.62));
+        assertFalse(cache.key(12.9716, 77.5946, 12.93, 77.62).equals(cache.key(12.9736, 77.5946, 12.93, 77.62)));
+    }
+
+    @Test
+    public void get_servesFromMemoryThenFromDisk() {
+        RouteCache<String> cache = cache(4, 4);
+        cache.put("a", "abc", T0);
+        assertEquals("route:abc", cache.get("a", T0 + SECOND));
+        assertEquals(1, decoded.size());
+
+        // A new instance has an empty memory level, so this one comes from disk.
+        RouteCache<String> reopened = cache(4, 4);
+        assertEquals("route:abc", reopened.get("a", T0 + SECOND));
+        assertEquals(2, decoded.size());
+        assertEquals("route:abc", reopened.get("a", T0 + 2 * SECOND));
+        assertEquals(2, decoded.size());
+        assertNull(reopened.get("missing", T0));
+    }
+
+    @Test
+    public void get_treatsExpiredEntriesAsMissingOnBothLevels() {
+        RouteCache<String> cache = cache(4, 4);
+        cache.put("a", "abc", T0);
+
+        assertNotNull(cache.get("a", T0 + TTL - 1));
+        assertNull(cache.get("a", T0 + TTL));
+        assertNull(cache(4, 4).get("a", T0 + TTL));
+        assertFalse(new File(directory, "a.route").exists());
+    }
+
+    @Test
+    public void memoryLevel_evictsLeastRecentlyUsed() {
+        RouteCache<String> cache = cache(2, 10);
+        cache.put("a", "1", T0);
+        cache.put("b", "2", T0);
+        cache.get("a", T0);
+        cache.put("c", "3", T0);
+        decoded.clear();
+
+        cache.get("a", T0);
+        cache.get("c", T0);
+        assertTrue(decoded.isEmpty());
+        // b fell out of memory and is read back from disk.
+        cache.get("b", T0);
+        assertEquals(1, decoded.size());
+    }
+
+    @Test
+    public void trimDisk_dropsLeastRecentlyUsedFiles() {
+        RouteCache<String> cache = cache(1, 2);
+        cache.put("a", "1", T0);
+        cache.put("b", "2", T0 + SECOND);
+        // A disk hit on a makes b the least recently used.
+        cache(1, 2).get("a", T0 + 2 * SECOND);
+
+        cache.put("c", "3", T0 + 3 * SECOND);
+
+        assertTrue(new File(directory, "a.route").exists());
+        assertFalse(new File(directory, "b.route").exists());
+        assertTrue(new File(directory, "c.route").exists());
+    }
+}
@@ -0,0 +1,54 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteSnapperTest {
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private final double[] out = new double[3];
+
+    @Test
+    public void snap_projectsOntoNearestSegment() {
+        PolylinePath route = new PolylinePath();
+        route.add(12.9700, 77.5900);
+        route.add(12.9800, 77.5900);
+        RouteSnapper snapper = new RouteSnapper(route);
+
+        double lngOffset = 10 / (METERS_PER_DEGREE * Math.cos(Math.toRadians(12.975)));
+        assertTrue(snapper.snap(12.9750, 77.5900 + lngOffset, out));
+        assertEquals(12.9750, out[0], 1e-9);
+        assertEquals(77.5900, out[1], 1e-9);
+    }
+
+    @Test
+    public void snap_leavesFarPositionsAlone() {
+        PolylinePath route = new PolylinePath();
+        route.add(12.9700, 77.5900);
+        route.add(12.9800, 77.5900);
+        RouteSnapper snapper = new RouteSnapper(route);
+
+        assertFalse(snapper.snap(12.9750, 77.5910, out));
+        assertEquals(77.5910, out[1], 0);
+    }
+
+    @Test
+    public void snap_followsProgressOnARouteThatDoublesBack() {
+        // Out along one side of a street and back along the other, 12 m apart.
+        double gap = 12 / METERS_PER_DEGREE;
+        PolylinePath route = new PolylinePath();
+        for (int i = 0; i <= 30; i++) route.add(12.9700, 77.5900 + i * 0.0001);
+        for (int i = 30; i >= 0; i--) route.add(12.9700 + gap, 77.5900 + i * 0.0001);
+        RouteSnapper snapper = new RouteSnapper(route);
+
+        // Drive to the far end, turn, and come back slightly closer to the outbound side.
+        for (int i = 0; i <= 30; i++) snapper.snap(12.9700, 77.5900 + i * 0.0001, out);
+        snapper.snap(12.9700 + gap, 77.5930, out);
+        for (int i = 29; i >= 25; i--) {
+            assertTrue(snapper.snap(12.9700 + gap * 0.45, 77.5900 + i * 0.0001, out));
+            assertEquals(12.9700 + gap, out[0], 1e-9);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SamplingPolicyTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+    /** Roughly one metre of latitude. */
+    private static final double METER = 1.0 / 111_320;
+
+    @Test
+    public void idleDriver_goesToBalancedThirtySecondsOnceParked() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        policy.onFix(LAT, LNG, 0, 0);
+        assertEquals(SamplingPolicy.IDLE_MOVING, policy.plan());
+
+        policy.onFix(LAT + 10 * METER, LNG, 0, 60_000);
+        assertFalse(policy.isParked());
+        policy.onFix(LAT + 5 * METER, LNG, 0, 120_000);
+        assertTrue(policy.isParked());
+
+        SamplingPolicy.Plan plan = policy.plan();
+        assertEquals(SamplingPolicy.Accuracy.BALANCED, plan.accuracy);
+        assertEquals(30_000, plan.intervalMillis);
+
+        policy.onFix(LAT + 100 * METER, LNG, 8, 125_000);
+        assertEquals(SamplingPolicy.IDLE_MOVING, policy.plan());
+    }
+
+    @Test
+    public void idleDriver_standingStill_isParkedThroughTheProvidersDistanceFilter() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        Random random = new Random(5);
+        int delivered = 0;
+        double deliveredLat = 0;
+        long lastDeliveredMillis = 0;
+
+        // The fused provider: a fix every interval, held back unless it moved the plan's distance.
+        for (long now = 0; now <= 600_000; ) {
+            SamplingPolicy.Plan plan = policy.plan();
+            double lat = LAT + random.nextGaussian() * 3 * METER;
+            if (delivered == 0 || Math.abs(lat - deliveredLat) / METER >= plan.minDistanceMeters) {
+                policy.onFix(lat, LNG, Double.NaN, now);
+                deliveredLat = lat;
+                lastDeliveredMillis = now;
+                delivered++;
+            }
+            now += plan.intervalMillis;
+        }
+
+        assertEquals(SamplingPolicy.IDLE_PARKED, policy.plan());
+        // Still getting fixes once parked, so the heartbeat keeps the GeoFire entry fresh.
+        assertEquals(600_000, lastDeliveredMillis, SamplingPolicy.IDLE_PARKED.intervalMillis);
+        assertTrue(String.valueOf(delivered), delivered > 20);
+    }
+
+    @Test
+    public void enRouteToPickup_usesHighAccuracyEveryTwoSeconds() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        policy.setRideState(RideState.ACCEPTED);
+        SamplingPolicy.Plan plan = policy.plan();
+        assertEquals(SamplingPolicy.Accuracy.HIGH, plan.accuracy);
+        assertEquals(2_000, plan.intervalMillis);
+        assertEquals(0, plan.maxDelayMillis);
+
+        policy.setRideState(RideState.COMPLETED);
+        assertEquals(SamplingPolicy.IDLE_MOVING, policy.plan());
+    }
+
+    @Test
+    public void trip_speedBandsHaveHysteresis() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        policy.setRideState(RideState.IN_PROGRESS);
+        policy.onFix(LAT, LNG, 10, 0);
+        assertEquals(SamplingPolicy.TRIP_CITY, policy.plan());
+
+        policy.onFix(LAT, LNG, 17, 1_000);
+        assertEquals(SamplingPolicy.TRIP_FAST, policy.plan());
+        // Dipping just under the entry speed doesn't switch back.
+        policy.onFix(LAT, LNG, 15, 2_000);
+        assertEquals(SamplingPolicy.TRIP_FAST, policy.plan());
+        policy.onFix(LAT, LNG, 12, 3_000);
+        assertEquals(SamplingPolicy.TRIP_CITY, policy.plan());
+
+        policy.onFix(LAT, LNG, 1, 4_000);
+        assertEquals(SamplingPolicy.TRIP_SLOW, policy.plan());
+        policy.onFix(LAT, LNG, 3, 5_000);
+        assertEquals(SamplingPolicy.TRIP_SLOW, policy.plan());
+    }
+
+    @Test
+    public void speedIsEstimatedWhenTheFixHasNone() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        policy.setRideState(RideState.IN_PROGRESS);
+        policy.onFix(LAT, LNG, Double.NaN, 0);
+        policy.onFix(LAT + 40 * METER, LNG, Double.NaN, 2_000);
+        assertEquals(SamplingPolicy.TRIP_FAST, policy.plan());
+    }
+
+    @Test
+    public void lowBattery_stretchesButKeepsRideAccuracy() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.DRIVER);
+        policy.setBattery(10, false);
+        assertEquals(SamplingPolicy.Accuracy.LOW_POWER, policy.plan().accuracy);
+
+        policy.setRideState(RideState.ARRIVING);
+        SamplingPolicy.Plan plan = policy.plan();
+        assertEquals(SamplingPolicy.Accuracy.HIGH, plan.accuracy);
+        assertEquals(3_000, plan.intervalMillis);
+
+        policy.setBattery(10, true);
+        assertEquals(SamplingPolicy.TO_PICKUP, policy.plan());
+
+        policy.setRideState(null);
+        policy.setBattery(25, false);
+        assertEquals(20_000, policy.plan().intervalMillis);
+    }
+
+    @Test
+    public void customer_samplesMoreOftenDuringARide() {
+        SamplingPolicy policy = new SamplingPolicy(SamplingPolicy.Role.CUSTOMER);
+        assertEquals(SamplingPolicy.CUSTOMER_IDLE, policy.plan());
+        policy.setRideState(RideState.PENDING);
+        assertEquals(SamplingPolicy.CUSTOMER_RIDE, policy.plan());
+    }
+}
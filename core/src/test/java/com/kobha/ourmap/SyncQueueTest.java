@@ -0,0 +1,104 @@
+package com.kobha.ourmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SyncQueueTest {
+
+    /** Records every update and lets the test decide when and how each one completes. */
+    private static final class FakeWriter implements MultiPathWriter {
+        final List<Map<String, Object>> sent = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+
+        @Override
+        public void updateChildren(Map<String, Object> updates, Callback callback) {
+            sent.add(updates);
+            callbacks.add(callback);
+        }
+    }
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("sync", ".journal");
+        file.delete();
+        file.deleteOnExit();
+    }
+
+    @Test
+    public void updateChildren_addsIdempotencyMarker() {
+        FakeWriter delegate = new FakeWriter();
+        SyncQueue queue = new SyncQueue(new RideStore(file), delegate, "d1");
+
+        queue.updateChildren(update("rideRequests/c1/status", "arriving"), null);
+
+        Map<String, Object> sent = delegate.sent.get(0);
+        assertEquals("arriving", sent.get("rideRequests/c1/status"));
+        assertEquals(1, markers(sent, true).size());
+        assertTrue(markers(sent, true).get(0).startsWith("writeLog/d1/"));
+    }
+
+    @Test
+    public void replayPending_resendsUnacknowledgedInOrderAfterRestart() {
+        FakeWriter before = new FakeWriter();
+        RideStore store = new RideStore(file);
+        SyncQueue queue = new SyncQueue(store, before, "d1");
+        queue.updateChildren(update("rideRequests/c1/status", "arriving"), null);
+        queue.updateChildren(update("rideRequests/c1/status", "in_progress"), null);
+        queue.updateChildren(update("rideRequests/c1/status", "completed"), null);
+        before.callbacks.get(0).onComplete(null);
+        store.close();
+
+        FakeWriter after = new FakeWriter();
+        SyncQueue restarted = new SyncQueue(new RideStore(file), after, "d1");
+        restarted.replayPending();
+        restarted.replayPending();
+
+        assertEquals(2, after.sent.size());
+        assertEquals("in_progress", after.sent.get(0).get("rideRequests/c1/status"));
+        assertEquals("completed", after.sent.get(1).get("rideRequests/c1/status"));
+        // Same idempotency key as the original attempt, so the rules can refuse a double apply.
+        assertEquals(markers(before.sent.get(1), true), markers(after.sent.get(0), true));
+        // The acknowledged first update's marker is cleaned up along the way.
+        assertEquals(markers(before.sent.get(0), true), markers(after.sent.get(0), false));
+    }
+
+    @Test
+    public void rejectedUpdate_isDroppedAndReported() {
+        FakeWriter delegate = new FakeWriter();
+        SyncQueue queue = new SyncQueue(new RideStore(file), delegate, "d1");
+        String[] reported = new String[1];
+
+        queue.updateChildren(update("rideRequests/c1/status", "accepted"), error -> reported[0] = error);
+        delegate.callbacks.get(0).onComplete("Permission denied");
+
+        assertEquals("Permission denied", reported[0]);
+        assertEquals(0, queue.pendingCount());
+    }
+
+    private static List<String> markers(Map<String, Object> updates, boolean set) {
+        List<String> paths = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            if (entry.getKey().startsWith(SyncQueue.MARKER_ROOT) && (entry.getValue() != null) == set) {
+                paths.add(entry.getKey());
+            }
+        }
+        return paths;
+    }
+
+    private static Map<String, Object> update(String path, Object value) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(path, value);
+        return updates;
+    }
+}
@@ -0,0 +1,92 @@
+package com.kobha.ourmap;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TraceReplayTest {
+
+    @Test
+    public void trace_roundTripsThroughTextFormat() throws IOException {
+        LocationTrace trace = new LocationTrace(Arrays.asList(
+                new LocationTrace.Fix(1_000, 12.9716, 77.5946, 8.5, 11.2),
+                new LocationTrace.Fix(2_000, 12.9717, 77.5946, Double.NaN, Double.NaN)));
+        StringWriter out = new StringWriter();
+        trace.write(out);
+
+        LocationTrace read = LocationTrace.read(new BufferedReader(new StringReader("# recorded on a test drive\n" + out)));
+
+        assertEquals(2, read.size());
+        assertEquals(1_000, read.durationMillis());
+        assertEquals(12.9717, read.fixes().get(1).lat, 1e-7);
+        assertEquals(8.5, read.fixes().get(0).accuracyMeters, 0);
+        assertTrue(Double.isNaN(read.fixes().get(1).speedMetersPerSecond));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsFixesOutOfOrder() throws IOException {
+        LocationTrace.read(new BufferedReader(new StringReader("2000,12.97,77.59\n1000,12.97,77.59\n")));
+    }
+
+    @Test
+    public void replay_measuresWritesAndLatencyAgainstInMemoryDatabase() throws Exception {
+        LocationTrace trace = loadTrace("/traces/city_drive.csv");
+        InMemoryDatabase database = new InMemoryDatabase();
+        ReplayReport report = new ReplayReport();
+
+        LocationTrace.Fix first = trace.fixes().get(0);
+        database.updateChildren(new RideStateMachine("c1", RideState.OFFERED).accept("d1", "d1@example.com", "Driver",
+                first.lat, first.lng, Collections.singletonList("d1")), null);
+        database.addValueListener("rideResponses/c1", value -> {
+            RideResponse response = RideResponse.fromValue(value);
+            if (response != null && response.hasPosition()) report.onDelivered(response.driverLat, response.driverLng);
+        });
+
+        LocationPublisher publisher = new LocationPublisher("d1", database);
+        publisher.setAssignedCustomer("c1");
+        DriverLocationPipeline pipeline = new DriverLocationPipeline(publisher, new SamplingPolicy(SamplingPolicy.Role.DRIVER));
+
+        TraceReplayer.replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE, pipeline, report);
+
+        assertEquals(trace.size(), report.getFixes());
+        assertEquals(report.getWrites(), report.getDeliveries());
+        assertEquals(report.toString(), 0, report.getDropped());
+        assertTrue(report.toString(), report.getWrites() * 2 < report.getFixes());
+        // A write at least every 30 s heartbeat, and more often while driving.
+        assertTrue(report.toString(), report.stalenessMillisPercentile(100) <= LocationPublisher.DEFAULT_MAX_SILENCE_MILLIS);
+        assertTrue(report.toString(), report.stalenessMillisPercentile(50) <= 5_000);
+        // The watcher trails the driver by about the publish distance, and never by a block.
+        assertTrue(report.toString(),
+                report.errorMetersPercentile(50) <= 2 * LocationPublisher.DEFAULT_MIN_DISTANCE_METERS);
+        assertTrue(report.toString(), report.errorMetersPercentile(100) <= 75);
+    }
+
+    @Test
+    public void replay_acceleratedRunsInScaledTime() throws InterruptedException {
+        LocationTrace trace = SyntheticTraces.stopAndGo(SyntheticTraces.route(1, 10), 11, 5, 1);
+        int[] seen = new int[1];
+
+        long start = System.nanoTime();
+        TraceReplayer.replay(trace, 50, fix -> seen[0]++);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(11, seen[0]);
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis >= 190 && elapsedMillis < 1_000);
+    }
+
+    private LocationTrace loadTrace(String resource) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(getClass().getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+            return LocationTrace.read(reader);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/** What a {@link FleetSimulator} run measured. Times are simulated unless stated otherwise. */
+final class FleetReport {
+
+    long simulatedMillis;
+    long wallMillis;
+
+    long requests;
+    long matched;
+    long completed;
+    long offerTimeouts;
+    long noDriversFound;
+    long customersBusy;
+    final List<Long> matchLatencyMillis = new ArrayList<>();
+
+    long acceptAttempts;
+    long acceptsRejected;
+    long offersWithdrawnBeforeDecision;
+
+    long[] writesByKind = new long[SimulatedBackend.Kind.values().length];
+    long totalWrites;
+    long rejectedWrites;
+    long deliveries;
+
+    /** Share of acceptance writes the database rejected because another driver got there first. */
+    double abortRate() {
+        return acceptAttempts == 0 ? 0 : (double) acceptsRejected / acceptAttempts;
+    }
+
+    double writesPerSecond() {
+        return totalWrites * 1000.0 / simulatedMillis;
+    }
+
+    double writesPerSecond(SimulatedBackend.Kind kind) {
+        return writesByKind[kind.ordinal()] * 1000.0 / simulatedMillis;
+    }
+
+    double deliveriesPerSecond() {
+        return deliveries * 1000.0 / simulatedMillis;
+    }
+
+    long matchLatencyPercentile(double p) {
+        if (matchLatencyMillis.isEmpty()) return 0;
+        List<Long> sorted = new ArrayList<>(matchLatencyMillis);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder kinds = new StringBuilder();
+        for (SimulatedBackend.Kind kind : SimulatedBackend.Kind.values()) {
+            kinds.append(String.format(Locale.US, " %s %.1f", kind.name().toLowerCase(Locale.US), writesPerSecond(kind)));
+        }
+        return String.format(Locale.US,
+                "%d s simulated in %d ms: %d requests, %d matched, %d completed, %d offer timeouts, %d with no drivers%n"
+                        + "  match latency p50 %d ms, p95 %d ms, p99 %d ms%n"
+                        + "  accepts %d, rejected %d (abort rate %.1f%%), offers withdrawn before decision %d%n"
+                        + "  writes/s %.1f (%s), rejected writes %d, listener deliveries/s %.1f",
+                simulatedMillis / 1000, wallMillis, requests, matched, completed, offerTimeouts, noDriversFound,
+                matchLatencyPercentile(50), matchLatencyPercentile(95), matchLatencyPercentile(99),
+                acceptAttempts, acceptsRejected, abortRate() * 100, offersWithdrawnBeforeDecision,
+                writesPerSecond(), kinds.toString().trim(), rejectedWrites, deliveriesPerSecond());
+    }
+}
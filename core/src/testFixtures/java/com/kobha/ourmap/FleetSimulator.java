@@ -0,0 +1,416 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Headless simulation of a whole fleet: thousands of drivers and customers going through the
+ * app's own ride logic ({@link RideStateMachine} writes, {@link DispatchPolicy} offers,
+ * {@link LocationPublisher} positions) against a {@link SimulatedBackend} that enforces the
+ * ride rules, reporting match latency, the acceptance abort rate and writes per second.
+ *
+ * It is a discrete-event simulation with a virtual clock on one thread, not a thread per agent:
+ * a run is deterministic for its seed and an hour of fleet time takes seconds. The concurrency
+ * that matters, drivers racing for the same ride, comes from the modelled network latency and
+ * think time, not from the JVM's scheduler.
+ */
+class FleetSimulator {
+
+    enum DispatchMode {
+        /** Offers go to the nearest few drivers, as RideDispatcher does. */
+        NEAREST,
+        /** Offers go to every driver in range, like the old broadcast of pending requests. */
+        BROADCAST
+    }
+
+    static final class Config {
+        int drivers = 1_000;
+        int customers = 1_000;
+        double centerLat = 12.9716;
+        double centerLng = 77.5946;
+        double areaRadiusMeters = 10_000;
+        /** Ride requests per second across the whole fleet. */
+        double requestsPerSecond = 2;
+        long durationMillis = 10 * 60_000;
+        long minLatencyMillis = 20;
+        long maxLatencyMillis = 150;
+        /** How long a driver looks at an offer before deciding. */
+        long minThinkMillis = 1_000;
+        long maxThinkMillis = 8_000;
+        double acceptProbability = 0.8;
+        long offerTimeoutMillis = 20_000;
+        long noDriversRetryMillis = 10_000;
+        long boardingMillis = 30_000;
+        long fixIntervalMillis = 3_000;
+        double driverSpeedMetersPerSecond = 10;
+        DispatchMode dispatchMode = DispatchMode.NEAREST;
+        long seed = 1;
+    }
+
+    static final class EventLoop {
+        private final PriorityQueue<Event> queue = new PriorityQueue<>();
+        private final Random random;
+        private long now;
+        private long seq;
+
+        EventLoop(long seed) {
+            random = new Random(seed);
+        }
+
+        long now() {
+            return now;
+        }
+
+        Random random() {
+            return random;
+        }
+
+        void after(long delayMillis, Runnable action) {
+            queue.add(new Event(now + Math.max(0, delayMillis), seq++, action));
+        }
+
+        void runUntil(long endMillis) {
+            while (!queue.isEmpty() && queue.peek().timeMillis <= endMillis) {
+                Event event = queue.poll();
+                now = event.timeMillis;
+                event.action.run();
+            }
+            now = endMillis;
+        }
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final long timeMillis;
+        final long seq;
+        final Runnable action;
+
+        Event(long timeMillis, long seq, Runnable action) {
+            this.timeMillis = timeMillis;
+            this.seq = seq;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            return timeMillis != o.timeMillis ? Long.compare(timeMillis, o.timeMillis) : Long.compare(seq, o.seq);
+        }
+    }
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private final Config config;
+    private final EventLoop loop;
+    private final Random random;
+    private final SimulatedBackend backend;
+    private final FleetReport report = new FleetReport();
+    private final List<Customer> idleCustomers = new ArrayList<>();
+
+    FleetSimulator(Config config) {
+        this.config = config;
+        this.loop = new EventLoop(config.seed);
+        this.random = loop.random();
+        this.backend = new SimulatedBackend(loop, config.minLatencyMillis, config.maxLatencyMillis);
+    }
+
+    FleetReport run() {
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < config.drivers; i++) new Driver("driver" + i).start();
+        for (int i = 0; i < config.customers; i++) new Customer("customer" + i).start();
+        scheduleNextRequest();
+
+        loop.runUntil(config.durationMillis);
+
+        report.simulatedMillis = config.durationMillis;
+        report.wallMillis = (System.nanoTime() - wallStart) / 1_000_000;
+        for (SimulatedBackend.Kind kind : SimulatedBackend.Kind.values()) {
+            report.writesByKind[kind.ordinal()] = backend.writes(kind);
+        }
+        report.totalWrites = backend.totalWrites();
+        report.rejectedWrites = backend.rejectedWrites();
+        report.deliveries = backend.deliveries();
+        return report;
+    }
+
+    private void scheduleNextRequest() {
+        long gap = (long) (-Math.log(1 - random.nextDouble()) * 1000 / config.requestsPerSecond);
+        loop.after(gap, () -> {
+            if (idleCustomers.isEmpty()) {
+                report.customersBusy++;
+            } else {
+                int i = random.nextInt(idleCustomers.size());
+                Collections.swap(idleCustomers, i, idleCustomers.size() - 1);
+                idleCustomers.remove(idleCustomers.size() - 1).request();
+            }
+            scheduleNextRequest();
+        });
+    }
+
+    private double[] randomPoint() {
+        double r = config.areaRadiusMeters * Math.sqrt(random.nextDouble());
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double lat = config.centerLat + r * Math.cos(angle) / METERS_PER_DEGREE;
+        double lng = config.centerLng
+                + r * Math.sin(angle) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(config.centerLat)));
+        return new double[]{lat, lng};
+    }
+
+    private long between(long min, long max) {
+        return min + (long) (random.nextDouble() * (max - min));
+    }
+
+    private enum DriverState { IDLE, DECIDING, ACCEPTING, TO_PICKUP, BOARDING, TO_DROP }
+
+    private final class Driver {
+        final String id;
+        final LocationPublisher publisher;
+        final MultiPathWriter acceptWriter;
+        final MultiPathWriter advanceWriter;
+        double lat;
+        double lng;
+        double targetLat;
+        double targetLng;
+        DriverState state = DriverState.IDLE;
+        Map<String, Object> offers = Collections.emptyMap();
+        final List<String> unseenOffers = new ArrayList<>();
+        RideStateMachine ride;
+        RideOffer rideOffer;
+
+        Driver(String id) {
+            this.id = id;
+            this.publisher = new LocationPublisher(id, backend.writer(id, SimulatedBackend.Kind.LOCATION));
+            this.acceptWriter = backend.writer(id, SimulatedBackend.Kind.ACCEPT);
+            this.advanceWriter = backend.writer(id, SimulatedBackend.Kind.ADVANCE);
+        }
+
+        void start() {
+            double[] start = randomPoint();
+            lat = start[0];
+            lng = start[1];
+            roam();
+            backend.listen(id, "driverOffers/" + id, this::onOffers);
+            loop.after(between(0, config.fixIntervalMillis), this::tick);
+        }
+
+        void tick() {
+            boolean arrived = move(config.fixIntervalMillis);
+            publisher.publish(lat, lng, loop.now());
+            if (arrived) onArrived();
+            loop.after(config.fixIntervalMillis, this::tick);
+        }
+
+        /** Like the app's ChildEventListener on driverOffers/{id}: reacts to offers that were added. */
+        void onOffers(Object value) {
+            Map<String, Object> latest = ModelMaps.asMap(value);
+            if (latest == null) latest = Collections.emptyMap();
+            for (String customerId : latest.keySet()) {
+                if (!offers.containsKey(customerId)) unseenOffers.add(customerId);
+            }
+            offers = latest;
+            considerNextOffer();
+        }
+
+        void considerNextOffer() {
+            if (state != DriverState.IDLE) return;
+            while (!unseenOffers.isEmpty()) {
+                String customerId = unseenOffers.remove(0);
+                if (offers.containsKey(customerId)) {
+                    decide(customerId);
+                    return;
+                }
+            }
+        }
+
+        void decide(String customerId) {
+            state = DriverState.DECIDING;
+            loop.after(between(config.minThinkMillis, config.maxThinkMillis), () -> {
+                state = DriverState.IDLE;
+                RideOffer offer = RideOffer.fromValue(offers.get(customerId));
+                if (offer == null) {
+                    // Taken by someone else while this driver was looking at it.
+                    report.offersWithdrawnBeforeDecision++;
+                } else if (random.nextDouble() < config.acceptProbability) {
+                    accept(customerId, offer);
+                    return;
+                }
+                considerNextOffer();
+            });
+        }
+
+        void accept(String customerId, RideOffer offer) {
+            RideStateMachine candidate = new RideStateMachine(customerId, RideState.OFFERED);
+            Map<String, Object> updates = candidate.accept(id, id + "@example.com", "Driver " + id,
+                    lat, lng, offer.offeredTo);
+            state = DriverState.ACCEPTING;
+            report.acceptAttempts++;
+            acceptWriter.updateChildren(updates, error -> {
+                if (error != null) {
+                    report.acceptsRejected++;
+                    state = DriverState.IDLE;
+                    considerNextOffer();
+                    return;
+                }
+                candidate.onCommitted(RideState.ACCEPTED);
+                ride = candidate;
+                rideOffer = offer;
+                state = DriverState.TO_PICKUP;
+                publisher.setAssignedCustomer(customerId);
+                targetLat = offer.pickupLat;
+                targetLng = offer.pickupLng;
+            });
+        }
+
+        void onArrived() {
+            switch (state) {
+                case TO_PICKUP:
+                    advance(RideState.ARRIVING);
+                    state = DriverState.BOARDING;
+                    loop.after(config.boardingMillis, () -> {
+                        advance(RideState.IN_PROGRESS);
+                        state = DriverState.TO_DROP;
+                        targetLat = rideOffer.dropLat;
+                        targetLng = rideOffer.dropLng;
+                    });
+                    break;
+                case TO_DROP:
+                    advance(RideState.COMPLETED);
+                    ride = null;
+                    rideOffer = null;
+                    publisher.setAssignedCustomer(null);
+                    state = DriverState.IDLE;
+                    roam();
+                    considerNextOffer();
+                    break;
+                case BOARDING:
+                    break;
+                default:
+                    roam();
+            }
+        }
+
+        /** Same optimistic step as DriverMapActivity.advanceRide. */
+        void advance(RideState next) {
+            advanceWriter.updateChildren(ride.advance(next), null);
+            ride.onCommitted(next);
+        }
+
+        void roam() {
+            double[] target = randomPoint();
+            targetLat = target[0];
+            targetLng = target[1];
+        }
+
+        /** Moves toward the target for {@code millis}; returns true once there. */
+        boolean move(long millis) {
+            double remaining = GeoMath.distanceMeters(lat, lng, targetLat, targetLng);
+            double step = config.driverSpeedMetersPerSecond * millis / 1000.0;
+            if (remaining <= step) {
+                lat = targetLat;
+                lng = targetLng;
+                return true;
+            }
+            lat += (targetLat - lat) * step / remaining;
+            lng += (targetLng - lng) * step / remaining;
+            return false;
+        }
+    }
+
+    private final class Customer {
+        final String id;
+        final MultiPathWriter requestWriter;
+        final MultiPathWriter offerWriter;
+        double pickupLat;
+        double pickupLng;
+        double dropLat;
+        double dropLng;
+        long requestedAtMillis;
+        int attempt;
+        boolean matched;
+
+        Customer(String id) {
+            this.id = id;
+            this.requestWriter = backend.writer(id, SimulatedBackend.Kind.REQUEST);
+            this.offerWriter = backend.writer(id, SimulatedBackend.Kind.OFFER);
+        }
+
+        void start() {
+            idleCustomers.add(this);
+            backend.listen(id, "rideResponses/" + id, this::onResponse);
+        }
+
+        void request() {
+            double[] pickup = randomPoint();
+            double[] drop = randomPoint();
+            pickupLat = pickup[0];
+            pickupLng = pickup[1];
+            dropLat = drop[0];
+            dropLng = drop[1];
+            requestedAtMillis = loop.now();
+            matched = false;
+            report.requests++;
+            dispatch();
+        }
+
+        /** Same sequence as CustomerMapActivity.sendRideRequestToDriver followed by RideDispatcher. */
+        void dispatch() {
+            int current = ++attempt;
+            requestWriter.updateChildren(RideStateMachine.request(id, pickupLat, pickupLng, dropLat, dropLng), null);
+            search(config.dispatchMode == DispatchMode.NEAREST
+                    ? DispatchPolicy.INITIAL_RADIUS_KM : DispatchPolicy.MAX_RADIUS_KM, current);
+        }
+
+        void search(double radiusKm, int current) {
+            backend.queryDrivers(() -> {
+                if (current != attempt || matched) return;
+                DriverSpatialIndex.Result found = new DriverSpatialIndex.Result(DispatchPolicy.MAX_OFFERS);
+                backend.drivers().nearest(pickupLat, pickupLng, radiusKm * 1000, found);
+                double next = DispatchPolicy.nextRadiusKm(radiusKm, found.size());
+                if (next > 0) {
+                    search(next, current);
+                } else {
+                    offer(current);
+                }
+            });
+        }
+
+        void offer(int current) {
+            int capacity = config.dispatchMode == DispatchMode.NEAREST ? DispatchPolicy.MAX_OFFERS : config.drivers;
+            Map<String, Object> offers = DispatchPolicy.offers(id, backend.drivers(),
+                    new DriverSpatialIndex.Result(capacity), pickupLat, pickupLng, dropLat, dropLng);
+            if (offers == null) {
+                report.noDriversFound++;
+                retryAfter(config.noDriversRetryMillis, current, false);
+                return;
+            }
+            offerWriter.updateChildren(offers, null);
+            retryAfter(config.offerTimeoutMillis, current, true);
+        }
+
+        void retryAfter(long millis, int current, boolean timedOut) {
+            loop.after(millis, () -> {
+                if (current != attempt || matched) return;
+                if (timedOut) report.offerTimeouts++;
+                dispatch();
+            });
+        }
+
+        void onResponse(Object value) {
+            RideResponse response = RideResponse.fromValue(value);
+            if (response == null) return;
+
+            if (!matched && response.status == RideState.ACCEPTED) {
+                matched = true;
+                report.matched++;
+                report.matchLatencyMillis.add(loop.now() - requestedAtMillis);
+            }
+            if (matched && response.status == RideState.COMPLETED) {
+                matched = false;
+                report.completed++;
+                idleCustomers.add(this);
+            }
+        }
+    }
+}
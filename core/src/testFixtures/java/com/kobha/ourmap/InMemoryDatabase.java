@@ -0,0 +1,121 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Stand-in for the Realtime Database behind a {@link MultiPathWriter}: multi-path updates are
+ * applied to a tree of maps, and value listeners hear about every update that touches their
+ * node, synchronously, the way the client library reports local writes.
+ */
+class InMemoryDatabase implements MultiPathWriter {
+
+    interface ValueListener {
+        void onValue(Object value);
+    }
+
+    private final Map<String, Object> root = new HashMap<>();
+    private final TreeMap<String, List<ValueListener>> listeners = new TreeMap<>();
+    private long updateCount;
+    private long pathCount;
+
+    @Override
+    public void updateChildren(Map<String, Object> updates, Callback callback) {
+        List<ValueListener> notify = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        synchronized (this) {
+            updateCount++;
+            pathCount += updates.size();
+            for (Map.Entry<String, Object> entry : updates.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+            for (String path : touchedListenerPaths(updates)) {
+                Object value = copy(get(path));
+                for (ValueListener listener : listeners.get(path)) {
+                    notify.add(listener);
+                    values.add(value);
+                }
+            }
+        }
+        for (int i = 0; i < notify.size(); i++) {
+            notify.get(i).onValue(values.get(i));
+        }
+        if (callback != null) callback.onComplete(null);
+    }
+
+    synchronized void addValueListener(String path, ValueListener listener) {
+        listeners.computeIfAbsent(path, k -> new ArrayList<>()).add(listener);
+    }
+
+    synchronized Object get(String path) {
+        Object node = root;
+        for (String key : path.split("/")) {
+            if (!(node instanceof Map)) return null;
+            node = ((Map<?, ?>) node).get(key);
+        }
+        return node;
+    }
+
+    synchronized long getUpdateCount() {
+        return updateCount;
+    }
+
+    synchronized long getPathCount() {
+        return pathCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void set(String path, Object value) {
+        String[] keys = path.split("/");
+        Map<String, Object> node = root;
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object child = node.get(keys[i]);
+            if (!(child instanceof Map)) {
+                if (value == null) return;
+                child = new HashMap<String, Object>();
+                node.put(keys[i], child);
+            }
+            node = (Map<String, Object>) child;
+        }
+        if (value == null) {
+            node.remove(keys[keys.length - 1]);
+        } else {
+            node.put(keys[keys.length - 1], value instanceof Map ? copy(value) : value);
+        }
+    }
+
+    /** Listened paths at, above or below any updated path. */
+    private Set<String> touchedListenerPaths(Map<String, Object> updates) {
+        Set<String> touched = new LinkedHashSet<>();
+        if (listeners.isEmpty()) return touched;
+        for (String path : updates.keySet()) {
+            for (String node = path; node != null; node = parent(node)) {
+                if (listeners.containsKey(node)) touched.add(node);
+            }
+            touched.addAll(listeners.subMap(path + "/", path + "/\uffff").keySet());
+        }
+        return touched;
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? null : path.substring(0, slash);
+    }
+
+    /** Deep copy, with server timestamps filled in the way the database does on write. */
+    @SuppressWarnings("unchecked")
+    private static Object copy(Object value) {
+        if (!(value instanceof Map)) return value;
+        if (value.equals(RideOffer.SERVER_TIMESTAMP)) return System.currentTimeMillis();
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+            copy.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,67 @@
+package com.kobha.ourmap;
+
+import java.util.Map;
+
+/**
+ * The ride rules from database.rules.json, applied to updates before an in-memory database
+ * accepts them, so simulated drivers lose acceptance races the way real ones do. Only the
+ * rules that decide those races are mirrored: the status transitions and the first-writer-wins
+ * driverId under rideRequests.
+ */
+final class RideRules {
+
+    private RideRules() {
+    }
+
+    /** Returns why the update would be denied, or null if the rules allow it. */
+    static String check(InMemoryDatabase db, String authUid, Map<String, Object> updates) {
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            String[] keys = entry.getKey().split("/");
+            if (!"rideRequests".equals(keys[0]) || keys.length < 2) continue;
+            String customerId = keys[1];
+            String statusPath = "rideRequests/" + customerId + "/status";
+            Object oldStatus = db.get(statusPath);
+
+            if (keys.length == 2) {
+                Object value = entry.getValue();
+                Object newStatus = value instanceof Map ? ((Map<?, ?>) value).get("status") : null;
+                if (newStatus != null && !statusAllowed(oldStatus, newStatus, authUid, customerId)) {
+                    return MultiPathWriter.PERMISSION_DENIED + ": " + statusPath;
+                }
+            } else if (keys.length == 3 && "status".equals(keys[2])) {
+                if (!statusAllowed(oldStatus, entry.getValue(), authUid, customerId)) {
+                    return MultiPathWriter.PERMISSION_DENIED + ": " + statusPath;
+                }
+            } else if (keys.length == 3 && "driverId".equals(keys[2])) {
+                Object old = db.get(entry.getKey());
+                Object driverId = entry.getValue();
+                if (!authUid.equals(driverId) || (old != null && !old.equals(driverId))) {
+                    return MultiPathWriter.PERMISSION_DENIED + ": " + entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean statusAllowed(Object oldValue, Object newValue, String authUid, String customerId) {
+        if (!(newValue instanceof String)) return false;
+        String next = (String) newValue;
+        // A request can only be created pending.
+        if (oldValue == null) return next.equals("pending");
+        if (oldValue.equals(next)) return true;
+        String old = (String) oldValue;
+
+        // The customer starts a new request only once the last one is over; dispatch puts an
+        // unanswered offer back.
+        if (next.equals("pending")) {
+            return (authUid.equals(customerId) && (old.equals("completed") || old.equals("cancelled")))
+                    || old.equals("offered");
+        }
+        if (next.equals("cancelled")) return !old.equals("completed");
+        return (old.equals("pending") && next.equals("offered"))
+                || (old.equals("offered") && next.equals("accepted"))
+                || (old.equals("accepted") && next.equals("arriving"))
+                || (old.equals("arriving") && next.equals("in_progress"))
+                || (old.equals("in_progress") && next.equals("completed"));
+    }
+}
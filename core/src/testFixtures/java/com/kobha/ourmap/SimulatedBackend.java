@@ -0,0 +1,111 @@
+package com.kobha.ourmap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The database as the fleet simulator sees it: an {@link InMemoryDatabase} behind the ride
+ * rules, reached over a network with a random one-way latency, on the simulator's clock.
+ * Like the real client, each user's writes reach the server in the order they were made, and
+ * everything the server sends back to a user arrives in order.
+ * Also keeps the GeoFire side of things, the positions under locations/Drivers, in a
+ * {@link DriverSpatialIndex} that stands in for GeoFire queries.
+ */
+class SimulatedBackend {
+
+    enum Kind { LOCATION, REQUEST, OFFER, ACCEPT, ADVANCE }
+
+    private final FleetSimulator.EventLoop loop;
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final InMemoryDatabase db = new InMemoryDatabase();
+    private final DriverSpatialIndex drivers = new DriverSpatialIndex();
+    private final long[] writes = new long[Kind.values().length];
+    private long rejected;
+    private long deliveries;
+    private final Map<String, Long> lastUplink = new HashMap<>();
+    private final Map<String, Long> lastDownlink = new HashMap<>();
+
+    SimulatedBackend(FleetSimulator.EventLoop loop, long minLatencyMillis, long maxLatencyMillis) {
+        this.loop = loop;
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /** A writer that authenticates as {@code uid} and files its writes under {@code kind}. */
+    MultiPathWriter writer(String uid, Kind kind) {
+        return (updates, callback) -> loop.after(inOrder(lastUplink, uid), () -> {
+            String error = RideRules.check(db, uid, updates);
+            if (error == null) {
+                writes[kind.ordinal()]++;
+                db.updateChildren(updates, null);
+                indexDriverPositions(updates);
+            } else {
+                rejected++;
+            }
+            if (callback != null) loop.after(inOrder(lastDownlink, uid), () -> callback.onComplete(error));
+        });
+    }
+
+    /** Like a ValueEventListener on a node that starts out empty: every change, after a network delay. */
+    void listen(String uid, String path, InMemoryDatabase.ValueListener listener) {
+        db.addValueListener(path, value -> loop.after(inOrder(lastDownlink, uid), () -> {
+            deliveries++;
+            listener.onValue(value);
+        }));
+    }
+
+    /** A GeoFire query as seen by the client: answered from current positions one round trip later. */
+    void queryDrivers(Runnable onReady) {
+        loop.after(latency() + latency(), onReady);
+    }
+
+    DriverSpatialIndex drivers() {
+        return drivers;
+    }
+
+    long writes(Kind kind) {
+        return writes[kind.ordinal()];
+    }
+
+    long totalWrites() {
+        long total = 0;
+        for (long count : writes) total += count;
+        return total;
+    }
+
+    long rejectedWrites() {
+        return rejected;
+    }
+
+    long deliveries() {
+        return deliveries;
+    }
+
+    /** A random delay that doesn't overtake the previous message on the same user's link. */
+    private long inOrder(Map<String, Long> link, String uid) {
+        long arrival = loop.now() + latency();
+        Long previous = link.get(uid);
+        if (previous != null && previous > arrival) arrival = previous;
+        link.put(uid, arrival);
+        return arrival - loop.now();
+    }
+
+    private long latency() {
+        return minLatencyMillis + (long) (loop.random().nextDouble() * (maxLatencyMillis - minLatencyMillis));
+    }
+
+    private void indexDriverPositions(Map<String, Object> updates) {
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            String path = entry.getKey();
+            if (path.startsWith("locations/Drivers/") && path.endsWith("/l")) {
+                DriverLocation location = DriverLocation.fromValue(
+                        db.get(path.substring(0, path.length() - 2)));
+                if (location != null) {
+                    drivers.update(path.substring("locations/Drivers/".length(), path.length() - 2),
+                            location.lat, location.lng);
+                }
+            }
+        }
+    }
+}
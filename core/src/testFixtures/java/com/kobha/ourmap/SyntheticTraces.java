@@ -0,0 +1,55 @@
+package com.kobha.ourmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Generated routes and noisy GPS traces along them, for tests and benchmarks. */
+final class SyntheticTraces {
+
+    static final double SEGMENT_METERS = 50;
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private SyntheticTraces() {
+    }
+
+    /** A meandering route of {@code points} vertices, {@link #SEGMENT_METERS} apart. */
+    static PolylinePath route(long seed, int points) {
+        Random random = new Random(seed);
+        PolylinePath route = new PolylinePath(points);
+        double lat = 12.9716, lng = 77.5946, heading = 0;
+        for (int i = 0; i < points; i++) {
+            route.add(lat, lng);
+            heading += (random.nextDouble() - 0.5) * 0.6;
+            lat += Math.cos(heading) * SEGMENT_METERS / METERS_PER_DEGREE;
+            lng += Math.sin(heading) * SEGMENT_METERS / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+        }
+        return route;
+    }
+
+    /**
+     * One fix per second along {@code route}, looping at its end: 30 s driving at 12 m/s, then
+     * 30 s stopped, with Gaussian noise of {@code noiseMeters} and accuracy reported as such.
+     */
+    static LocationTrace stopAndGo(PolylinePath route, int fixes, double noiseMeters, long seed) {
+        Random random = new Random(seed);
+        List<LocationTrace.Fix> list = new ArrayList<>(fixes);
+        int segment = 0;
+        double along = 0;
+        for (int i = 0; i < fixes; i++) {
+            boolean driving = (i / 30) % 2 == 0;
+            if (driving) along += 12;
+            while (along >= SEGMENT_METERS) {
+                along -= SEGMENT_METERS;
+                segment = (segment + 1) % (route.size() - 1);
+            }
+            double t = along / SEGMENT_METERS;
+            double lat = route.lat(segment) + t * (route.lat(segment + 1) - route.lat(segment));
+            double lng = route.lng(segment) + t * (route.lng(segment + 1) - route.lng(segment));
+            lat += random.nextGaussian() * noiseMeters / METERS_PER_DEGREE;
+            lng += random.nextGaussian() * noiseMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+            list.add(new LocationTrace.Fix(i * 1_000L, lat, lng, noiseMeters, driving ? 12 : 0));
+        }
+        return new LocationTrace(list);
+    }
+}
@@ -0,0 +1,24 @@
+package com.kobha.ourmap;
+
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.Map;
+
+/** {@link MultiPathWriter} over the Admin SDK; same contract as the app's FirebaseMultiPathWriter. */
+public class AdminMultiPathWriter implements MultiPathWriter {
+
+    private final DatabaseReference rootRef;
+
+    public AdminMultiPathWriter(DatabaseReference rootRef) {
+        this.rootRef = rootRef;
+    }
+
+    @Override
+    public void updateChildren(Map<String, Object> updates, Callback callback) {
+        rootRef.updateChildren(updates, (error, ref) -> {
+            if (callback != null) {
+                callback.onComplete(error != null ? error.getMessage() : null);
+            }
+        });
+    }
+}
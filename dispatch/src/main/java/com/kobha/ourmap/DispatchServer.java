@@ -0,0 +1,157 @@
+package com.kobha.ourmap;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a {@link DispatchWorker} against the Realtime Database: streams locations/Drivers,
+ * rideRequests and the drivers' ratings under Users/Driver into it, and writes its offers
+ * through the Admin SDK. The app hands dispatch over to it when {@code server_dispatch} is set.
+ *
+ * The worker authenticates as {@link #DISPATCHER_UID} rather than with admin rights, so its
+ * writes go through the same database rules as the phones'; an offer for a request that was
+ * cancelled or taken in the meantime is rejected as a whole.
+ *
+ * Configured from the environment:
+ * <pre>
+ *   FIREBASE_DATABASE_URL            required, e.g. http://127.0.0.1:9000?ns=demo-ourmap for the emulator
+ *   FIREBASE_DATABASE_EMULATOR_HOST  set by {@code firebase emulators:exec}; no credentials are needed then
+ *   GOOGLE_APPLICATION_CREDENTIALS   service account key for a real project
+ *   DISPATCH_BATCH_WINDOW_MILLIS     optional, e.g. 2000 to match requests in batches during surge
+ * </pre>
+ */
+public class DispatchServer {
+
+    static final String DISPATCHER_UID = "dispatch-server";
+
+    private static final Logger log = Logger.getLogger("dispatch");
+    private static final long TICK_MILLIS = 250;
+    private static final long STATS_MINUTES = 1;
+
+    private final DatabaseReference root;
+    private final DispatchWorker worker;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    public DispatchServer(DatabaseReference root, DispatchWorker worker) {
+        this.root = root;
+        this.worker = worker;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String url = System.getenv("FIREBASE_DATABASE_URL");
+        if (url == null) {
+            System.err.println("FIREBASE_DATABASE_URL is not set");
+            System.exit(2);
+        }
+        boolean emulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST") != null;
+        FirebaseOptions options = FirebaseOptions.builder()
+                .setDatabaseUrl(url)
+                .setCredentials(emulator
+                        ? GoogleCredentials.create(new AccessToken("owner", null))
+                        : GoogleCredentials.getApplicationDefault())
+                .setDatabaseAuthVariableOverride(Collections.<String, Object>singletonMap("uid", DISPATCHER_UID))
+                .build();
+        DatabaseReference root = FirebaseDatabase.getInstance(FirebaseApp.initializeApp(options)).getReference();
+
+        String window = System.getenv("DISPATCH_BATCH_WINDOW_MILLIS");
+        DispatchWorker worker = new DispatchWorker(new AdminMultiPathWriter(root), DriverScorer.DEFAULT,
+                window != null ? Long.parseLong(window) : 0);
+        new DispatchServer(root, worker).start();
+        log.info("Dispatching for " + url);
+        new CountDownLatch(1).await();
+    }
+
+    public void start() {
+        root.child("locations/Drivers").addChildEventListener(new Children() {
+            @Override
+            void onValue(String driverId, Object value) {
+                DriverLocation location = DriverLocation.fromValue(value);
+                if (location != null) worker.onDriverLocation(driverId, location.lat, location.lng);
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                worker.onDriverRemoved(snapshot.getKey());
+            }
+        });
+
+        root.child("Users/Driver").addChildEventListener(new Children() {
+            @Override
+            void onValue(String driverId, Object value) {
+                Map<String, Object> driver = ModelMaps.asMap(value);
+                Object rating = driver != null ? driver.get("rating") : null;
+                if (rating instanceof Number) worker.onDriverRating(driverId, ((Number) rating).doubleValue());
+            }
+        });
+
+        root.child("rideRequests").addChildEventListener(new Children() {
+            @Override
+            void onValue(String customerId, Object value) {
+                worker.onRideRequest(customerId, RideRequest.fromValue(value), System.currentTimeMillis());
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                worker.onRideRequest(snapshot.getKey(), null, System.currentTimeMillis());
+            }
+        });
+
+        // An exception would cancel the schedule and stop every timeout and retry for good.
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                worker.tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Dispatch tick failed", e);
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(() -> log.info(worker.toString()),
+                STATS_MINUTES, STATS_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /** Added and changed children both carry the child's whole new value. */
+    private abstract static class Children implements ChildEventListener {
+
+        abstract void onValue(String key, Object value);
+
+        @Override
+        public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+            onValue(snapshot.getKey(), snapshot.getValue());
+        }
+
+        @Override
+        public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+            onValue(snapshot.getKey(), snapshot.getValue());
+        }
+
+        @Override
+        public void onChildRemoved(DataSnapshot snapshot) {
+        }
+
+        @Override
+        public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            log.severe("Listener cancelled: " + error.getMessage());
+            System.exit(1);
+        }
+    }
+}